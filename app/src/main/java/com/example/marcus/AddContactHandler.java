@@ -0,0 +1,108 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.content.ContentProviderOperation;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates contacts, one from a spoken "add" command or many from a bulk-add frame. Each contact's
+ * raw contact, name and numbers are written in one provider batch, so they land atomically and
+ * a whole chunk of contacts costs a single IPC.
+ */
+class AddContactHandler implements CommandHandler {
+
+    private static final String TAG = "AddContactHandler";
+
+    private final AssistantService service;
+
+    AddContactHandler(AssistantService service) {
+        this.service = service;
+    }
+
+    @Override
+    public CommandResult handle(Command command, CommandTrace trace) {
+        // Check if permissions are granted
+        if (!service.hasPermission(Manifest.permission.WRITE_CONTACTS)) {
+            return service.requestPermission(Manifest.permission.WRITE_CONTACTS,
+                    "Write contacts permission is required to add a contact.");
+        }
+
+        if (command instanceof Command.AddContacts) {
+            return addAll(((Command.AddContacts) command).getContacts(), trace);
+        }
+
+        Command.AddContact contact = (Command.AddContact) command;
+        String contactName = contact.getContactName();
+        try {
+            apply(Collections.singletonList(contact));
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(TAG, "Failed to add contact " + contactName, e);
+            service.showNotification(NotificationDispatcher.Category.CONTACTS,
+                    "Failed to add contact " + contactName + ".");
+            return CommandResult.failed("Failed to add contact " + contactName + ": " + e.getMessage());
+        }
+        trace.mark(CommandTrace.Checkpoint.FIRED);
+
+        service.showNotification(NotificationDispatcher.Category.CONTACTS, "Contact " + contactName + " added.");
+        Log.d(TAG, "Contact " + contactName + " added.");
+        return CommandResult.ok("Contact " + contactName + " added");
+    }
+
+    private CommandResult addAll(List<Command.AddContact> contacts, CommandTrace trace) {
+        List<List<Command.AddContact>> chunks = ContactBatch.chunk(contacts, ContactBatch.MAX_OPERATIONS_PER_BATCH);
+        int added = 0;
+        int failedChunks = 0;
+        for (List<Command.AddContact> chunk : chunks) {
+            try {
+                apply(chunk);
+                added += chunk.size();
+            } catch (RemoteException | OperationApplicationException e) {
+                // Each chunk is one transaction: this one is rolled back, the others stand.
+                Log.e(TAG, "Failed to add a batch of " + chunk.size() + " contacts", e);
+                failedChunks++;
+            }
+        }
+        trace.mark(CommandTrace.Checkpoint.FIRED);
+
+        String message = "Added " + added + " of " + contacts.size() + " contacts in " + chunks.size() + " batches";
+        Log.d(TAG, message);
+        service.showNotification(NotificationDispatcher.Category.CONTACTS, added + " contacts added.");
+        return failedChunks == 0 ? CommandResult.ok(message) : CommandResult.failed(message);
+    }
+
+    private void apply(List<Command.AddContact> contacts) throws RemoteException, OperationApplicationException {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Command.AddContact contact : contacts) {
+            int rawContactIndex = operations.size();
+            // No yield points: a yield commits what came before it, and a chunk must fail as a whole.
+            operations.add(ContentProviderOperation.newInsert(ContactsContract.RawContacts.CONTENT_URI)
+                    .withValue(ContactsContract.RawContacts.ACCOUNT_TYPE, "com.google")
+                    .withValue(ContactsContract.RawContacts.ACCOUNT_NAME, "Google")
+                    .build());
+            operations.add(ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                    .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
+                    .withValue(ContactsContract.Data.MIMETYPE,
+                            ContactsContract.CommonDataKinds.StructuredName.CONTENT_ITEM_TYPE)
+                    .withValue(ContactsContract.CommonDataKinds.StructuredName.DISPLAY_NAME, contact.getContactName())
+                    .build());
+            for (String number : contact.getNumbers()) {
+                operations.add(ContentProviderOperation.newInsert(ContactsContract.Data.CONTENT_URI)
+                        .withValueBackReference(ContactsContract.Data.RAW_CONTACT_ID, rawContactIndex)
+                        .withValue(ContactsContract.Data.MIMETYPE,
+                                ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE)
+                        .withValue(ContactsContract.CommonDataKinds.Phone.NUMBER, number)
+                        .withValue(ContactsContract.CommonDataKinds.Phone.TYPE,
+                                ContactsContract.CommonDataKinds.Phone.TYPE_MOBILE)
+                        .build());
+            }
+        }
+        service.getContentResolver().applyBatch(ContactsContract.AUTHORITY, operations);
+    }
+}
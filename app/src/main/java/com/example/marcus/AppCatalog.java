@@ -0,0 +1,220 @@
+package com.example.marcus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The launchable-app catalog as the server knows it, and the diffs that keep it that way:
+ *
+ * <pre>
+ * {"mode": "diff", "base": "6f1c...", "hash": "93a0...",
+ *  "apps": [{"package": "com.whatsapp", "label": "WhatsApp",
+ *            "version": 241017, "versionName": "2.24.10"}],
+ *  "removed": ["com.example.old"]}
+ * </pre>
+ *
+ * Every app has a content hash over its label and version, and the catalog hash is an
+ * order-independent sum of those, so it is updated in O(1) per change. A diff lists only apps
+ * whose hash differs from what was last sent, and names the catalog hash it applies to
+ * ({@code base}); a server whose copy does not match asks for a {@code full} catalog instead.
+ *
+ * <p>Not thread-safe; {@link AppCatalogSync} confines it to its worker thread.
+ */
+public final class AppCatalog {
+
+    public static final String MODE_FULL = "full";
+    public static final String MODE_DIFF = "diff";
+
+    /** Where catalog frames go; returns {@code false} if the frame could not be queued. */
+    public interface Sink {
+        boolean send(String frame);
+    }
+
+    public static final class App {
+        private final String packageName;
+        private final String label;
+        private final long versionCode;
+        private final String versionName;
+        private final long hash;
+
+        public App(String packageName, String label, long versionCode, String versionName) {
+            this.packageName = packageName;
+            this.label = label;
+            this.versionCode = versionCode;
+            this.versionName = versionName;
+            this.hash = computeHash();
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public long getVersionCode() {
+            return versionCode;
+        }
+
+        public String getVersionName() {
+            return versionName;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        // 64-bit FNV-1a over every field the server sees.
+        private long computeHash() {
+            long h = 0xcbf29ce484222325L;
+            h = mix(h, packageName);
+            h = mix(h, label);
+            for (int shift = 0; shift < 64; shift += 8) {
+                h = (h ^ ((versionCode >>> shift) & 0xff)) * 0x100000001b3L;
+            }
+            return mix(h, versionName);
+        }
+
+        private static long mix(long h, String value) {
+            if (value == null) {
+                return (h ^ 0xff) * 0x100000001b3L;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                h = (h ^ (c & 0xff)) * 0x100000001b3L;
+                h = (h ^ (c >>> 8)) * 0x100000001b3L;
+            }
+            // Separator, so ("ab", "c") and ("a", "bc") differ.
+            return (h ^ 0xfe) * 0x100000001b3L;
+        }
+    }
+
+    private final Map<String, App> current = new HashMap<>();
+    private final Map<String, Long> synced = new HashMap<>();
+    private long currentHash;
+    private long syncedHash;
+    private boolean everSynced;
+
+    /** Adds or replaces an app in the local catalog. */
+    public void put(App app) {
+        App previous = current.put(app.packageName, app);
+        if (previous != null) {
+            currentHash -= spread(previous.hash);
+        }
+        currentHash += spread(app.hash);
+    }
+
+    public void remove(String packageName) {
+        App previous = current.remove(packageName);
+        if (previous != null) {
+            currentHash -= spread(previous.hash);
+        }
+    }
+
+    /** Replaces the local catalog with {@code apps}, e.g. after a full rescan. */
+    public void replaceAll(List<App> apps) {
+        current.clear();
+        currentHash = 0;
+        for (App app : apps) {
+            put(app);
+        }
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    public String getHash() {
+        return hex(currentHash);
+    }
+
+    /** Whether a frame was accepted since the catalog was created or last refused. */
+    public boolean hasSynced() {
+        return everSynced;
+    }
+
+    /**
+     * Sends the whole catalog when {@code full} or nothing was sent yet, otherwise the changes
+     * since the last frame the sink accepted. An empty diff is only sent if {@code sendIfUnchanged},
+     * which lets a reconnecting server check its copy against the hash. Returns the frame's length
+     * in characters, 0 if nothing was sent, or -1 if the sink refused it; after a refusal the
+     * next call sends the full catalog.
+     */
+    public int sync(Sink sink, boolean full, boolean sendIfUnchanged) {
+        full |= !everSynced;
+        List<App> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (App app : current.values()) {
+            Long syncedAppHash = synced.get(app.packageName);
+            if (full || syncedAppHash == null || syncedAppHash != app.hash) {
+                changed.add(app);
+            }
+        }
+        if (!full) {
+            for (String packageName : synced.keySet()) {
+                if (!current.containsKey(packageName)) {
+                    removed.add(packageName);
+                }
+            }
+            if (changed.isEmpty() && removed.isEmpty() && !sendIfUnchanged) {
+                return 0;
+            }
+        }
+
+        JsonStreamWriter args = new JsonStreamWriter(new StringBuilder(128 + 96 * changed.size()));
+        args.beginObject()
+                .name("mode").value(full ? MODE_FULL : MODE_DIFF);
+        if (!full) {
+            args.name("base").value(hex(syncedHash));
+        }
+        args.name("hash").value(hex(currentHash))
+                .name("apps").beginArray();
+        for (App app : changed) {
+            args.beginObject()
+                    .name("package").value(app.packageName)
+                    .name("label").value(app.label)
+                    .name("version").value(app.versionCode)
+                    .name("versionName").value(app.versionName)
+                    .endObject();
+        }
+        args.endArray();
+        if (!full) {
+            args.name("removed").beginArray();
+            for (String packageName : removed) {
+                args.value(packageName);
+            }
+            args.endArray();
+        }
+        args.endObject();
+
+        String frame = CommandEnvelope.encode(null, CommandEnvelope.TYPE_APP_CATALOG,
+                System.currentTimeMillis(), args.toString());
+        if (!sink.send(frame)) {
+            // The server may have the frame or not; only a full catalog is safe from here.
+            everSynced = false;
+            return -1;
+        }
+        synced.clear();
+        for (App app : current.values()) {
+            synced.put(app.packageName, app.hash);
+        }
+        syncedHash = currentHash;
+        everSynced = true;
+        return frame.length();
+    }
+
+    // Mixes each app hash (splitmix64 finalizer) before it goes into the catalog sum.
+    private static long spread(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    private static String hex(long value) {
+        return String.format(Locale.ROOT, "%016x", value);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.marcus;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the server's copy of the launchable-app {@link AppCatalog} current, so it can check an
+ * "open X" against what is installed and send an exact package name.
+ *
+ * <p>The catalog mirrors {@link AppIndex}, the launchable apps, which are also the only packages
+ * visible to this app; it adds their versions and follows the index's package updates instead of
+ * watching packages itself. Each connect sends a diff (possibly empty, so the server can compare
+ * hashes), or the full catalog on the first connect; a package change while connected sends a
+ * diff of just that package.
+ */
+public class AppCatalogSync {
+
+    private static final String TAG = "AppCatalogSync";
+    // An update reaches the index as REMOVED then ADDED in quick succession; send one diff for both.
+    private static final long CHANGE_DEBOUNCE_MS = 500;
+    private static AppCatalogSync instance;
+
+    private final PackageManager packageManager;
+    private final AppIndex appIndex;
+    private final Handler workerHandler;
+    private final AppCatalog catalog = new AppCatalog();
+    private final Runnable changeRunnable = () -> sync(false, false);
+    private WebSocketClientManager webSocketClientManager;
+    private EventBus.Subscription stateSubscription;
+    private boolean scanned = false;
+
+    private final AtomicLong fullSends = new AtomicLong();
+    private final AtomicLong diffSends = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private volatile int lastFrameChars = 0;
+    private volatile long scanMs = -1;
+
+    private final AppIndex.Listener indexListener = this::onPackageChanged;
+
+    private AppCatalogSync(Context context) {
+        this.packageManager = context.getApplicationContext().getPackageManager();
+        this.appIndex = AppIndex.getInstance(context);
+
+        HandlerThread workerThread = new HandlerThread(TAG);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+    }
+
+    public static synchronized AppCatalogSync getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppCatalogSync(context);
+        }
+        return instance;
+    }
+
+    /** Syncs every time {@code manager} connects, and after packages change while connected. */
+    public synchronized void start(WebSocketClientManager manager) {
+        if (stateSubscription != null) {
+            return;
+        }
+        webSocketClientManager = manager;
+        appIndex.addListener(indexListener);
+
+        stateSubscription = manager.subscribe(WebSocketClientManager.CONNECTION_STATE, workerHandler::post,
+                state -> {
+                    if (state == WebSocketClientManager.ConnectionState.CONNECTED) {
+                        sync(false, true);
+                    }
+                });
+    }
+
+    public synchronized void stop() {
+        if (stateSubscription == null) {
+            return;
+        }
+        stateSubscription.cancel();
+        stateSubscription = null;
+        appIndex.removeListener(indexListener);
+        workerHandler.removeCallbacks(changeRunnable);
+    }
+
+    /** Resends the whole catalog, for a server whose copy no longer matches. */
+    public void requestFullSync() {
+        workerHandler.post(() -> sync(true, true));
+    }
+
+    public String getStatsSummary() {
+        return "full=" + fullSends.get()
+                + " diffs=" + diffSends.get()
+                + " refused=" + refused.get()
+                + " lastChars=" + lastFrameChars
+                + " scanMs=" + scanMs;
+    }
+
+    private void sync(boolean full, boolean sendIfUnchanged) {
+        ensureScanned();
+        if (webSocketClientManager == null || webSocketClientManager.getConnectionState()
+                != WebSocketClientManager.ConnectionState.CONNECTED) {
+            // The next connect sends whatever changed meanwhile.
+            return;
+        }
+        boolean sendsFull = full || !catalog.hasSynced();
+        int chars = catalog.sync(webSocketClientManager::send, full, sendIfUnchanged);
+        if (chars < 0) {
+            refused.incrementAndGet();
+            Log.w(TAG, "Catalog frame refused; the next sync sends the full catalog");
+            return;
+        }
+        if (chars == 0) {
+            return;
+        }
+        lastFrameChars = chars;
+        if (sendsFull) {
+            fullSends.incrementAndGet();
+        } else {
+            diffSends.incrementAndGet();
+        }
+        Log.d(TAG, "Sent " + catalog.size() + " apps as " + chars + " chars, hash " + catalog.getHash());
+    }
+
+    private void ensureScanned() {
+        if (scanned) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        // One call for every version, rather than one per indexed app.
+        Map<String, PackageInfo> packages = new HashMap<>();
+        for (PackageInfo info : packageManager.getInstalledPackages(0)) {
+            packages.put(info.packageName, info);
+        }
+        List<AppCatalog.App> apps = new ArrayList<>();
+        for (AppIndex.Entry entry : appIndex.getEntries()) {
+            apps.add(createApp(entry, packages.get(entry.getPackageName())));
+        }
+        catalog.replaceAll(apps);
+        scanned = true;
+        scanMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "Scanned " + apps.size() + " apps in " + scanMs + " ms");
+    }
+
+    // Called on the index's thread; the catalog belongs to the worker.
+    private void onPackageChanged(String packageName) {
+        workerHandler.post(() -> {
+            updatePackage(packageName);
+            workerHandler.removeCallbacks(changeRunnable);
+            workerHandler.postDelayed(changeRunnable, CHANGE_DEBOUNCE_MS);
+        });
+    }
+
+    private void updatePackage(String packageName) {
+        if (!scanned) {
+            // The pending initial scan will pick the change up.
+            return;
+        }
+        AppIndex.Entry entry = appIndex.getByPackage(packageName);
+        if (entry == null) {
+            catalog.remove(packageName);
+            return;
+        }
+        PackageInfo info;
+        try {
+            info = packageManager.getPackageInfo(packageName, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            info = null;
+        }
+        catalog.put(createApp(entry, info));
+    }
+
+    // An app whose package info is gone (uninstalled meanwhile) goes out without a version.
+    private static AppCatalog.App createApp(AppIndex.Entry entry, PackageInfo info) {
+        if (info == null) {
+            return new AppCatalog.App(entry.getPackageName(), entry.getLabel(), 0, null);
+        }
+        long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? info.getLongVersionCode() : info.versionCode;
+        return new AppCatalog.App(entry.getPackageName(), entry.getLabel(), versionCode, info.versionName);
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.marcus;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory index of launchable apps, keyed by normalized label.
+ *
+ * <p>The index is built once on a background thread and then kept up to date from
+ * PACKAGE_ADDED/REMOVED/CHANGED broadcasts, re-querying only the package that changed. Resolving
+ * an app name is a map lookup, falling back to a {@link FuzzyMatcher} over all labels, and never
+ * touches PackageManager. A {@link Listener} hears about each package the index re-reads.
+ */
+public class AppIndex {
+
+    private static final String TAG = "AppIndex";
+    private static AppIndex instance;
+
+    private final Context context;
+    private final PackageManager packageManager;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, Entry> byPackage = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byLabel = new ConcurrentHashMap<>();
+    private volatile FuzzyMatcher<Entry> matcher = FuzzyMatcher.<Entry>builder().build();
+    private volatile boolean built = false;
+    private boolean started = false;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Called on the index's thread after it has re-read a package, whether or not it is still launchable. */
+    public interface Listener {
+        void onPackageChanged(String packageName);
+    }
+
+    public static final class Entry {
+        private final String packageName;
+        private final String label;
+        private final String normalizedLabel;
+        private final Intent launchIntent;
+
+        Entry(String packageName, String label, ComponentName launchComponent) {
+            this.packageName = packageName;
+            this.label = label;
+            this.normalizedLabel = NameNormalizer.normalize(label);
+            this.launchIntent = new Intent(Intent.ACTION_MAIN);
+            this.launchIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+            this.launchIntent.setComponent(launchComponent);
+            this.launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getNormalizedLabel() {
+            return normalizedLabel;
+        }
+
+        /** Returns a copy of the cached launch Intent, so callers may add extras freely. */
+        public Intent createLaunchIntent() {
+            return new Intent(launchIntent);
+        }
+    }
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null) {
+                return;
+            }
+            String packageName = data.getSchemeSpecificPart();
+            Log.d(TAG, intent.getAction() + ": " + packageName);
+            executor.execute(() -> {
+                updatePackage(packageName);
+                for (Listener listener : listeners) {
+                    listener.onPackageChanged(packageName);
+                }
+            });
+        }
+    };
+
+    private AppIndex(Context context) {
+        this.context = context.getApplicationContext();
+        this.packageManager = this.context.getPackageManager();
+    }
+
+    public static synchronized AppIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppIndex(context);
+        }
+        return instance;
+    }
+
+    /** Starts the background build and begins listening for package changes. Safe to call repeatedly. */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        context.registerReceiver(packageReceiver, filter);
+
+        executor.execute(this::ensureBuilt);
+    }
+
+    /** Starts the index and blocks until the initial build has finished. */
+    public void warmUp() {
+        start();
+        ensureBuilt();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Finds the app whose label best matches {@code appName}. Blocks only if the initial build is
+     * still running.
+     */
+    public Entry resolve(String appName) {
+        ensureBuilt();
+        String key = NameNormalizer.normalize(appName);
+        if (key.isEmpty()) {
+            return null;
+        }
+        Entry entry = byLabel.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        // Fall back to ranked fuzzy matching to absorb speech transcription slips.
+        FuzzyMatcher.Match<Entry> match = matcher.best(appName);
+        if (match != null) {
+            Log.d(TAG, "Fuzzy matched '" + appName + "' to " + match);
+            return match.getValue();
+        }
+        return null;
+    }
+
+    public Entry getByPackage(String packageName) {
+        ensureBuilt();
+        return byPackage.get(packageName);
+    }
+
+    public List<Entry> getEntries() {
+        ensureBuilt();
+        return new ArrayList<>(byPackage.values());
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            build();
+        }
+    }
+
+    private synchronized void build() {
+        if (built) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        Intent launcherIntent = new Intent(Intent.ACTION_MAIN);
+        launcherIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        List<ResolveInfo> activities = packageManager.queryIntentActivities(launcherIntent, 0);
+        for (ResolveInfo info : activities) {
+            put(createEntry(info));
+        }
+        rebuildMatcher();
+        built = true;
+        Log.d(TAG, "Indexed " + byPackage.size() + " launchable apps in "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private synchronized void updatePackage(String packageName) {
+        if (!built) {
+            // The pending initial build will pick the change up.
+            return;
+        }
+        Intent launcherIntent = new Intent(Intent.ACTION_MAIN);
+        launcherIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        launcherIntent.setPackage(packageName);
+        List<ResolveInfo> activities = packageManager.queryIntentActivities(launcherIntent, 0);
+
+        remove(packageName);
+        if (!activities.isEmpty()) {
+            put(createEntry(activities.get(0)));
+        }
+        rebuildMatcher();
+    }
+
+    private void rebuildMatcher() {
+        FuzzyMatcher.Builder<Entry> builder = FuzzyMatcher.builder();
+        for (Entry entry : byPackage.values()) {
+            builder.add(entry.label, entry);
+        }
+        matcher = builder.build();
+    }
+
+    private Entry createEntry(ResolveInfo info) {
+        String packageName = info.activityInfo.packageName;
+        String label = info.loadLabel(packageManager).toString();
+        return new Entry(packageName, label, new ComponentName(packageName, info.activityInfo.name));
+    }
+
+    private void put(Entry entry) {
+        // Apps with several launcher activities keep the first one, like the launcher itself.
+        if (byPackage.putIfAbsent(entry.packageName, entry) != null) {
+            return;
+        }
+        if (!entry.normalizedLabel.isEmpty()) {
+            byLabel.putIfAbsent(entry.normalizedLabel, entry);
+        }
+    }
+
+    private void remove(String packageName) {
+        Entry removed = byPackage.remove(packageName);
+        if (removed == null || !byLabel.remove(removed.normalizedLabel, removed)) {
+            return;
+        }
+        // Another app may share the label; let it take over the key.
+        for (Entry other : byPackage.values()) {
+            if (other.normalizedLabel.equals(removed.normalizedLabel)) {
+                byLabel.putIfAbsent(other.normalizedLabel, other);
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.media.AudioManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Build;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.telephony.PhoneStateListener;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Foreground service that owns the WebSocket session and executes incoming commands, so the
+ * assistant stays connected and responsive without any Activity in memory.
+ *
+ * <p>Handlers are created lazily through a {@link CommandHandlerRegistry}. Runtime permissions
+ * can only be requested from an Activity: a handler that lacks one parks its command here and
+ * {@link MainActivity} is brought up to ask, reporting back with {@link #ACTION_PERMISSION_RESULT}.
+ */
+public class AssistantService extends Service {
+
+    private static final String TAG = "AssistantService";
+    static final String CHANNEL_ID = "MarcusChannel";
+    private static final String SERVICE_CHANNEL_ID = "MarcusServiceChannel";
+    private static final int FOREGROUND_NOTIFICATION_ID = 2;
+    private static final int COMMAND_THREADS = 2;
+    private static final int COMMAND_QUEUE_CAPACITY = 32;
+    private static final int DEFERRED_CAPACITY = 32;
+    private static final long DEFERRED_TTL_MS = 2 * 60 * 1000;
+
+    static final String ACTION_PERMISSION_RESULT = "com.example.marcus.action.PERMISSION_RESULT";
+    static final String EXTRA_PERMISSION = "com.example.marcus.extra.PERMISSION";
+    static final String EXTRA_GRANTED = "com.example.marcus.extra.GRANTED";
+    /** Shows {@link #EXTRA_MESSAGE} as a {@link NotificationDispatcher.Category#PERMISSION} status. */
+    static final String ACTION_NOTIFY_PERMISSION = "com.example.marcus.action.NOTIFY_PERMISSION";
+    static final String EXTRA_MESSAGE = "com.example.marcus.extra.MESSAGE";
+
+    private final CommandParser commandParser = CommandParser.getDefault();
+    private final CommandHandlerRegistry handlers = new CommandHandlerRegistry();
+    // Commands waiting for a permission prompt, in arrival order per permission.
+    private final DeferredCommandQueue<DeferredCommand> deferredCommands =
+            new DeferredCommandQueue<>(DEFERRED_CAPACITY, DEFERRED_TTL_MS);
+    private final CallStateMonitor callState = new CallStateMonitor();
+
+    private WebSocketClientManager webSocketClientManager;
+    private EventBus.Subscription commandSubscription;
+    private ConnectivityManager connectivityManager;
+    // A network coming up ends an outage early, and revives a connection that ran out of retries.
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            webSocketClientManager.connect();
+        }
+    };
+    private CommandExecutor commandExecutor;
+    private Handler mainHandler;
+    private NotificationManager notificationManager;
+    private NotificationDispatcher notificationDispatcher;
+    private TelephonyManager telephonyManager;
+    private PhoneStateListener phoneStateListener;
+    private AppIndex appIndex;
+    private ContactDirectory contactDirectory;
+    private ContactSync contactSync;
+    private AppCatalogSync appCatalogSync;
+    private AudioRouteController audioRouteController;
+
+    private static final class DeferredCommand {
+        // Null for pipeline steps, which have no result frame of their own.
+        final CommandEnvelope envelope;
+        final Command command;
+        final String deniedMessage;
+
+        DeferredCommand(CommandEnvelope envelope, Command command, String deniedMessage) {
+            this.envelope = envelope;
+            this.command = command;
+            this.deniedMessage = deniedMessage;
+        }
+    }
+
+    /** Starts the service, or delivers nothing new if it is already running. */
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, AssistantService.class));
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        telephonyManager = (TelephonyManager) getSystemService(Context.TELEPHONY_SERVICE);
+        createNotificationChannels();
+        startInForeground();
+        notificationDispatcher = new NotificationDispatcher(this, notificationManager, CHANNEL_ID);
+
+        mainHandler = new Handler(Looper.getMainLooper());
+        commandExecutor = new CommandExecutor(COMMAND_THREADS, COMMAND_QUEUE_CAPACITY,
+                mainHandler::post, Looper.getMainLooper().getThread());
+        registerHandlers();
+
+        appIndex = AppIndex.getInstance(this);
+        appIndex.start();
+        contactDirectory = ContactDirectory.getInstance(this);
+        contactDirectory.start();
+        registerPhoneStateListener();
+        AudioManager audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager != null) {
+            audioRouteController = new AudioRouteController(this, audioManager, mainHandler, callState);
+        }
+
+        webSocketClientManager = WebSocketClientManager.getInstance();
+        // Decoding is cheap and execution is handed to the worker pool, so deliver on the socket thread.
+        commandSubscription = webSocketClientManager.subscribe(WebSocketClientManager.COMMANDS,
+                EventBus.DIRECT, this::onCommandReceived);
+        webSocketClientManager.setJournalDirectory(getNoBackupFilesDir());
+        contactSync = ContactSync.getInstance(this);
+        contactSync.start(webSocketClientManager);
+        appCatalogSync = AppCatalogSync.getInstance(this);
+        appCatalogSync.start(webSocketClientManager);
+        webSocketClientManager.connect();
+        connectivityManager = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivityManager != null) {
+            connectivityManager.registerDefaultNetworkCallback(networkCallback);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_PERMISSION_RESULT.equals(intent.getAction())) {
+            onPermissionResult(intent.getStringExtra(EXTRA_PERMISSION), intent.getBooleanExtra(EXTRA_GRANTED, false));
+        } else if (intent != null && ACTION_NOTIFY_PERMISSION.equals(intent.getAction())) {
+            String message = intent.getStringExtra(EXTRA_MESSAGE);
+            if (message != null) {
+                showNotification(NotificationDispatcher.Category.PERMISSION, message);
+            }
+        }
+        // Opening the app retries at once, even after the reconnect budget ran out.
+        webSocketClientManager.connect();
+        return START_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        commandSubscription.cancel();
+        contactSync.stop();
+        appCatalogSync.stop();
+        if (connectivityManager != null) {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        }
+        webSocketClientManager.disconnect();
+        commandExecutor.shutdown();
+        notificationDispatcher.shutdown();
+        if (audioRouteController != null) {
+            audioRouteController.shutdown();
+        }
+        if (telephonyManager != null && phoneStateListener != null) {
+            telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_NONE);
+        }
+    }
+
+    private void registerHandlers() {
+        handlers.register(Command.Type.CALL, () -> new CallHandler(this))
+                .register(Command.Type.SMS, () -> new SmsHandler(this))
+                .register(Command.Type.ADD_CONTACT, () -> new AddContactHandler(this))
+                .register(Command.Type.ADD_CONTACTS, () -> new AddContactHandler(this))
+                .register(Command.Type.END_CALL, () -> new EndCallHandler(this))
+                .register(Command.Type.SPEAKER, () -> new SpeakerHandler(this))
+                .register(Command.Type.OPEN_APP, () -> new OpenAppHandler(this));
+    }
+
+    private void onCommandReceived(String command) {
+        CommandTrace trace = CommandTrace.start();
+        Log.d(TAG, "Command received: " + command);
+        CommandEnvelope envelope;
+        try {
+            envelope = CommandEnvelope.decode(command);
+        } catch (IOException e) {
+            Log.e(TAG, "Malformed command frame: " + command, e);
+            return;
+        }
+        trace.setSentAtMs(envelope.getTimestamp());
+        if (CommandEnvelope.TYPE_DIAGNOSTICS.equals(envelope.getType())) {
+            webSocketClientManager.send(CommandEnvelope.encode(envelope.getId(), CommandEnvelope.TYPE_DIAGNOSTICS,
+                    System.currentTimeMillis(), CommandMetrics.getInstance().toJson()));
+            return;
+        }
+        if (CommandEnvelope.TYPE_CONTACT_SYNC.equals(envelope.getType())) {
+            handleContactSyncRequest(envelope);
+            return;
+        }
+        if (CommandEnvelope.TYPE_APP_CATALOG.equals(envelope.getType())) {
+            appCatalogSync.requestFullSync();
+            return;
+        }
+        if (CommandEnvelope.TYPE_PIPELINE.equals(envelope.getType())) {
+            handlePipeline(envelope, trace);
+            return;
+        }
+        if (CommandEnvelope.TYPE_ADD_CONTACTS.equals(envelope.getType())) {
+            handleAddContacts(envelope, trace);
+            return;
+        }
+        if (!CommandEnvelope.TYPE_COMMAND.equals(envelope.getType())) {
+            Log.w(TAG, "Ignoring frame of type " + envelope.getType());
+            sendResult(envelope, null, CommandResult.failed("Unsupported frame type: " + envelope.getType()), trace);
+            return;
+        }
+        handleCommand(envelope, trace);
+    }
+
+    private void handleCommand(CommandEnvelope envelope, CommandTrace trace) {
+        String command;
+        try {
+            command = envelope.getText();
+        } catch (IOException e) {
+            command = null;
+        }
+        if (command == null) {
+            sendResult(envelope, null, CommandResult.failed("Command has no text"), trace);
+            return;
+        }
+        Command parsed = commandParser.parse(command.trim());
+        trace.mark(CommandTrace.Checkpoint.PARSED);
+        dispatch(envelope, parsed, trace);
+    }
+
+    private void handleContactSyncRequest(CommandEnvelope envelope) {
+        String mode;
+        long ack;
+        try {
+            mode = envelope.getStringArg("mode");
+            ack = envelope.getLongArg("ack", -1);
+        } catch (IOException e) {
+            Log.e(TAG, "Malformed contact sync frame", e);
+            mode = null;
+            ack = -1;
+        }
+        if (ack >= 0) {
+            contactSync.onAcknowledged(ack);
+            return;
+        }
+        if (ContactSyncBatcher.MODE_FULL.equals(mode)) {
+            contactSync.requestFullSync();
+        } else {
+            contactSync.requestSync();
+        }
+    }
+
+    private void handleAddContacts(CommandEnvelope envelope, CommandTrace trace) {
+        Command.AddContacts contacts;
+        try {
+            contacts = ContactBatch.decode(envelope);
+        } catch (IOException e) {
+            Log.e(TAG, "Malformed contact list: " + envelope, e);
+            sendResult(envelope, Command.Type.ADD_CONTACTS,
+                    CommandResult.failed("Malformed contact list: " + e.getMessage()), trace);
+            return;
+        }
+        trace.mark(CommandTrace.Checkpoint.PARSED);
+        dispatch(envelope, contacts, trace);
+    }
+
+    private void dispatch(CommandEnvelope envelope, Command parsed, CommandTrace trace) {
+        boolean queued = commandExecutor.execute(() -> {
+            trace.mark(CommandTrace.Checkpoint.DISPATCHED);
+            CommandResult result;
+            try {
+                result = execute(parsed, trace);
+            } catch (Exception e) {
+                Log.e(TAG, "Error handling command: " + parsed, e);
+                result = CommandResult.failed("Error handling command: " + e.getMessage());
+            }
+            result = deferIfNeeded(envelope, parsed, result);
+            sendResult(envelope, parsed.getType(), result, trace);
+        });
+        if (!queued) {
+            Log.w(TAG, "Command queue full, dropping: " + parsed);
+            sendResult(envelope, parsed.getType(), CommandResult.failed("Too many pending commands"), trace);
+        }
+    }
+
+    private void handlePipeline(CommandEnvelope envelope, CommandTrace trace) {
+        CommandPipeline pipeline;
+        try {
+            pipeline = CommandPipeline.decode(envelope);
+        } catch (IOException e) {
+            Log.e(TAG, "Malformed pipeline: " + envelope, e);
+            sendResult(envelope, null, CommandResult.failed("Malformed pipeline: " + e.getMessage()), trace);
+            return;
+        }
+        trace.mark(CommandTrace.Checkpoint.PARSED);
+        // Steps run one at a time on the workers; a step waiting for the call to connect holds
+        // none of them, so a pending pipeline cannot starve other commands such as "end call".
+        boolean queued = commandExecutor.execute(() -> {
+            trace.mark(CommandTrace.Checkpoint.DISPATCHED);
+            pipeline.start(commandParser, this::executeStep, callState, this::resumePipeline,
+                    (task, delayMs) -> {
+                        mainHandler.postDelayed(task, delayMs);
+                        return () -> mainHandler.removeCallbacks(task);
+                    },
+                    outcomes -> {
+                        CommandResult result = CommandPipeline.summarize(outcomes);
+                        trace.mark(CommandTrace.Checkpoint.COMPLETED);
+                        Log.d(TAG, "Pipeline " + envelope.getId() + " finished: " + result);
+                        if (envelope.getId() != null) {
+                            webSocketClientManager.send(CommandEnvelope.encodePipelineResult(
+                                    envelope.getId(), result, outcomes, trace));
+                        }
+                    });
+        });
+        if (!queued) {
+            Log.w(TAG, "Command queue full, dropping pipeline " + envelope.getId());
+            sendResult(envelope, null, CommandResult.failed("Too many pending commands"), trace);
+        }
+    }
+
+    private void resumePipeline(Runnable task) {
+        if (!commandExecutor.execute(task)) {
+            throw new RejectedExecutionException("Command queue full");
+        }
+    }
+
+    // Each step is traced and recorded like a standalone command; the wait before it is not.
+    private CommandResult executeStep(Command command) {
+        CommandTrace trace = CommandTrace.start();
+        trace.mark(CommandTrace.Checkpoint.DISPATCHED);
+        CommandResult result;
+        try {
+            result = execute(command, trace);
+        } catch (Exception e) {
+            Log.e(TAG, "Error handling pipeline step " + command, e);
+            result = CommandResult.failed("Error handling command: " + e.getMessage());
+        }
+        result = deferIfNeeded(null, command, result);
+        trace.mark(CommandTrace.Checkpoint.COMPLETED);
+        CommandMetrics.getInstance().record(trace, result.getStatus());
+        return result;
+    }
+
+    private CommandResult execute(Command parsed, CommandTrace trace) {
+        CommandHandler handler = handlers.get(parsed.getType());
+        if (handler != null) {
+            return handler.handle(parsed, trace);
+        }
+        String reason = parsed instanceof Command.Invalid
+                ? ((Command.Invalid) parsed).getReason()
+                : "No handler for " + parsed.getType();
+        Log.e(TAG, "Invalid command: " + reason);
+        showNotification(NotificationDispatcher.Category.ERROR, reason);
+        return CommandResult.failed(reason);
+    }
+
+    // Records the stage latencies and replies to the server; legacy frames carry no ID and get no reply.
+    private void sendResult(CommandEnvelope envelope, Command.Type type, CommandResult result, CommandTrace trace) {
+        trace.mark(CommandTrace.Checkpoint.COMPLETED);
+        CommandMetrics.getInstance().record(trace, result.getStatus());
+        Log.d(TAG, "Command " + envelope.getId() + " finished: " + result);
+        if (envelope.getId() == null) {
+            return;
+        }
+        webSocketClientManager.send(CommandEnvelope.encodeResult(envelope.getId(), type, result, trace));
+    }
+
+    boolean hasPermission(String permission) {
+        return ContextCompat.checkSelfPermission(this, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /** What a handler returns when {@code permission} is missing; the command is parked until it is answered. */
+    CommandResult requestPermission(String permission, String deniedMessage) {
+        return CommandResult.needsPermission(permission, deniedMessage);
+    }
+
+    /**
+     * Parks the command if {@code result} asks for a permission, prompting for it unless a prompt
+     * is already pending. Returns the result to report for now.
+     */
+    private CommandResult deferIfNeeded(CommandEnvelope envelope, Command command, CommandResult result) {
+        String permission = result.getPermission();
+        if (permission == null) {
+            return result;
+        }
+        DeferredCommand deferred = new DeferredCommand(envelope, command, result.getMessage());
+        switch (deferredCommands.add(permission, deferred, System.currentTimeMillis())) {
+            case REJECTED:
+                Log.w(TAG, "Too many commands waiting for permissions, dropping " + command);
+                return CommandResult.failed("Too many commands waiting for permissions");
+            case FIRST:
+                promptForPermission(permission);
+                mainHandler.postDelayed(() -> commandExecutor.execute(this::expireDeferred),
+                        deferredCommands.getTtlMs());
+                break;
+            default:
+                Log.d(TAG, command + " queued behind " + permission + " prompt");
+                break;
+        }
+        return result;
+    }
+
+    private void promptForPermission(String permission) {
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.putExtra(MainActivity.EXTRA_REQUEST_PERMISSION, permission);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        fireOnMain(null, () -> startActivity(intent));
+    }
+
+    private void onPermissionResult(String permission, boolean granted) {
+        if (permission == null) {
+            return;
+        }
+        if (Manifest.permission.READ_PHONE_STATE.equals(permission) && granted) {
+            registerPhoneStateListener();
+        }
+        if (Manifest.permission.READ_CONTACTS.equals(permission) && granted) {
+            contactSync.requestSync();
+        }
+        List<DeferredCommand> waiting = deferredCommands.drain(permission, System.currentTimeMillis());
+        if (waiting.isEmpty()) {
+            return;
+        }
+        if (!granted) {
+            showNotification(NotificationDispatcher.Category.PERMISSION, waiting.get(0).deniedMessage);
+        }
+        // One task for the whole queue keeps the commands in arrival order.
+        boolean queued = commandExecutor.execute(() -> {
+            for (DeferredCommand deferred : waiting) {
+                if (granted) {
+                    resume(deferred);
+                } else {
+                    finish(deferred, CommandResult.failed(deferred.deniedMessage), CommandTrace.start());
+                }
+            }
+        });
+        if (!queued) {
+            for (DeferredCommand deferred : waiting) {
+                finish(deferred, CommandResult.failed("Too many pending commands"), CommandTrace.start());
+            }
+        }
+    }
+
+    private void resume(DeferredCommand deferred) {
+        CommandTrace trace = CommandTrace.start();
+        trace.mark(CommandTrace.Checkpoint.DISPATCHED);
+        CommandResult result;
+        try {
+            result = execute(deferred.command, trace);
+        } catch (Exception e) {
+            Log.e(TAG, "Error resuming " + deferred.command, e);
+            result = CommandResult.failed("Error handling command: " + e.getMessage());
+        }
+        // A command may need a second permission, e.g. contacts and then calling.
+        finish(deferred, deferIfNeeded(deferred.envelope, deferred.command, result), trace);
+    }
+
+    private void expireDeferred() {
+        for (DeferredCommand deferred : deferredCommands.expire(System.currentTimeMillis())) {
+            finish(deferred, CommandResult.failed("Permission request timed out"), CommandTrace.start());
+        }
+        if (deferredCommands.size() > 0) {
+            // Commands queued behind the first one expire on a later pass.
+            mainHandler.postDelayed(() -> commandExecutor.execute(this::expireDeferred), deferredCommands.getTtlMs());
+        }
+    }
+
+    // Reports the final result of a deferred command under its original ID.
+    private void finish(DeferredCommand deferred, CommandResult result, CommandTrace trace) {
+        Log.d(TAG, "Deferred " + deferred.command + " finished: " + result);
+        if (deferred.envelope != null) {
+            sendResult(deferred.envelope, deferred.command.getType(), result, trace);
+        } else {
+            trace.mark(CommandTrace.Checkpoint.COMPLETED);
+            CommandMetrics.getInstance().record(trace, result.getStatus());
+        }
+    }
+
+    /**
+     * Runs the final platform call on the main thread, recording how long it waited for it when
+     * {@code trace} is given.
+     */
+    void fireOnMain(CommandTrace trace, Runnable action) {
+        commandExecutor.runOnMain(() -> {
+            if (trace != null) {
+                trace.mark(CommandTrace.Checkpoint.ON_MAIN);
+            }
+            action.run();
+            if (trace != null) {
+                trace.mark(CommandTrace.Checkpoint.FIRED);
+            }
+        });
+    }
+
+    Handler getMainHandler() {
+        return mainHandler;
+    }
+
+    AppIndex getAppIndex() {
+        return appIndex;
+    }
+
+    ContactDirectory getContactDirectory() {
+        return contactDirectory;
+    }
+
+    /** Null if the device has no AudioManager. */
+    AudioRouteController getAudioRouteController() {
+        return audioRouteController;
+    }
+
+    CallStateMonitor.State getCallState() {
+        return callState.getState();
+    }
+
+    /** Shows {@code message} as the latest status for {@code category}; rapid updates are coalesced. */
+    void showNotification(NotificationDispatcher.Category category, String message) {
+        notificationDispatcher.post(category, message);
+    }
+
+    private void startInForeground() {
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, OptionsActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        Notification notification = new NotificationCompat.Builder(this, SERVICE_CHANNEL_ID)
+                .setContentTitle("Marcus is listening")
+                .setContentText("Connected to your assistant server")
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentIntent(contentIntent)
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            startForeground(FOREGROUND_NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+        } else {
+            startForeground(FOREGROUND_NOTIFICATION_ID, notification);
+        }
+    }
+
+    private void createNotificationChannels() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Marcus Channel",
+                    NotificationManager.IMPORTANCE_HIGH);
+            channel.setDescription("Channel for Marcus notifications");
+            notificationManager.createNotificationChannel(channel);
+
+            NotificationChannel serviceChannel = new NotificationChannel(SERVICE_CHANNEL_ID, "Marcus Service",
+                    NotificationManager.IMPORTANCE_LOW);
+            serviceChannel.setDescription("Shown while Marcus stays connected in the background");
+            notificationManager.createNotificationChannel(serviceChannel);
+        }
+    }
+
+    private void registerPhoneStateListener() {
+        if (telephonyManager == null || phoneStateListener != null || !hasPermission(Manifest.permission.READ_PHONE_STATE)) {
+            return;
+        }
+        phoneStateListener = new PhoneStateListener() {
+            @Override
+            public void onCallStateChanged(int state, String phoneNumber) {
+                switch (state) {
+                    case TelephonyManager.CALL_STATE_RINGING:
+                        Log.d(TAG, "Incoming call ringing: " + phoneNumber);
+                        callState.update(CallStateMonitor.State.RINGING);
+                        break;
+                    case TelephonyManager.CALL_STATE_OFFHOOK:
+                        Log.d(TAG, "Call off-hook");
+                        callState.update(CallStateMonitor.State.OFFHOOK);
+                        break;
+                    case TelephonyManager.CALL_STATE_IDLE:
+                        Log.d(TAG, "Call idle");
+                        callState.update(CallStateMonitor.State.IDLE);
+                        break;
+                }
+            }
+        };
+        telephonyManager.listen(phoneStateListener, PhoneStateListener.LISTEN_CALL_STATE);
+    }
+}
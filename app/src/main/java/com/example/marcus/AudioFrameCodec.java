@@ -0,0 +1,158 @@
+package com.example.marcus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary WebSocket frames carrying one chunk of an audio stream. Layout, big-endian:
+ *
+ * <pre>
+ *   byte 0     version (1)
+ *   byte 1     flags: 1 = payload is raw deflate, 2 = last chunk of the stream
+ *   bytes 2-5  stream id
+ *   bytes 6-9  chunk sequence number, from 0
+ *   bytes 10-  payload: 16-bit little-endian mono PCM, possibly deflated
+ * </pre>
+ *
+ * Each chunk is compressed on its own so the server can decode chunks as they arrive. A chunk
+ * that does not shrink is sent uncompressed.
+ */
+public final class AudioFrameCodec {
+
+    public static final int VERSION = 1;
+    public static final int FLAG_DEFLATE = 1;
+    public static final int FLAG_LAST = 2;
+    public static final int HEADER_BYTES = 10;
+
+    private final boolean deflate;
+    private final Deflater deflater;
+    private byte[] compressed;
+
+    public AudioFrameCodec(boolean deflate) {
+        this.deflate = deflate;
+        this.deflater = deflate ? new Deflater(Deflater.BEST_SPEED, true) : null;
+    }
+
+    /** Builds the frame for {@code length} bytes of {@code pcm}. */
+    public byte[] encode(int streamId, int sequence, boolean last, byte[] pcm, int offset, int length) {
+        int flags = last ? FLAG_LAST : 0;
+        byte[] payload = pcm;
+        int payloadOffset = offset;
+        int payloadLength = length;
+        if (deflate && length > 0) {
+            if (compressed == null || compressed.length < length) {
+                compressed = new byte[length];
+            }
+            deflater.reset();
+            deflater.setInput(pcm, offset, length);
+            deflater.finish();
+            int size = deflater.deflate(compressed, 0, compressed.length);
+            if (deflater.finished() && size < length) {
+                flags |= FLAG_DEFLATE;
+                payload = compressed;
+                payloadOffset = 0;
+                payloadLength = size;
+            }
+        }
+        byte[] frame = new byte[HEADER_BYTES + payloadLength];
+        frame[0] = VERSION;
+        frame[1] = (byte) flags;
+        writeInt(frame, 2, streamId);
+        writeInt(frame, 6, sequence);
+        System.arraycopy(payload, payloadOffset, frame, HEADER_BYTES, payloadLength);
+        return frame;
+    }
+
+    public void close() {
+        if (deflater != null) {
+            deflater.end();
+        }
+    }
+
+    /** A decoded frame, as the server sees it. */
+    public static final class Frame {
+        private final int streamId;
+        private final int sequence;
+        private final boolean last;
+        private final boolean compressed;
+        private final byte[] pcm;
+
+        Frame(int streamId, int sequence, boolean last, boolean compressed, byte[] pcm) {
+            this.streamId = streamId;
+            this.sequence = sequence;
+            this.last = last;
+            this.compressed = compressed;
+            this.pcm = pcm;
+        }
+
+        public int getStreamId() {
+            return streamId;
+        }
+
+        public int getSequence() {
+            return sequence;
+        }
+
+        public boolean isLast() {
+            return last;
+        }
+
+        public boolean isCompressed() {
+            return compressed;
+        }
+
+        public byte[] getPcm() {
+            return pcm;
+        }
+    }
+
+    public static Frame decode(byte[] frame) throws IOException {
+        if (frame.length < HEADER_BYTES || frame[0] != VERSION) {
+            throw new IOException("Not an audio frame");
+        }
+        int flags = frame[1];
+        int streamId = readInt(frame, 2);
+        int sequence = readInt(frame, 6);
+        int length = frame.length - HEADER_BYTES;
+        byte[] pcm;
+        if ((flags & FLAG_DEFLATE) != 0) {
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(frame, HEADER_BYTES, length);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(length * 2);
+                byte[] block = new byte[4096];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(block);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated audio frame");
+                    }
+                    out.write(block, 0, n);
+                }
+                pcm = out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt audio frame", e);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            pcm = new byte[length];
+            System.arraycopy(frame, HEADER_BYTES, pcm, 0, length);
+        }
+        return new Frame(streamId, sequence, (flags & FLAG_LAST) != 0, (flags & FLAG_DEFLATE) != 0, pcm);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) << 24 | (buffer[offset + 1] & 0xff) << 16
+                | (buffer[offset + 2] & 0xff) << 8 | (buffer[offset + 3] & 0xff);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.marcus;
+
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Android side of {@link AudioRouteStateMachine}. Call state comes from the service's
+ * {@link CallStateMonitor}; on Android 12+ the route is set with {@code setCommunicationDevice}
+ * and confirmed by the communication-device listener, older releases fall back to
+ * {@code setSpeakerphoneOn}. Every event is handled on the main thread.
+ */
+class AudioRouteController implements AudioRouteStateMachine.Listener, AudioRouteStateMachine.Router {
+
+    private static final String TAG = "AudioRouteController";
+
+    private final AssistantService service;
+    private final AudioManager audioManager;
+    private final Handler mainHandler;
+    private final CallStateMonitor callState;
+    private final AudioRouteStateMachine stateMachine = new AudioRouteStateMachine(this, this);
+    private final CallStateMonitor.Listener callListener;
+    private final Runnable deadline = this::onDeadline;
+    private AudioManager.OnCommunicationDeviceChangedListener deviceListener;
+    // Completed by the state machine's outcome; only touched on the main thread.
+    private CompletableFuture<CommandResult> pending;
+
+    AudioRouteController(AssistantService service, AudioManager audioManager, Handler mainHandler,
+                         CallStateMonitor callState) {
+        this.service = service;
+        this.audioManager = audioManager;
+        this.mainHandler = mainHandler;
+        this.callState = callState;
+        this.callListener = state -> mainHandler.post(() -> {
+            stateMachine.onCallStateChanged(state, SystemClock.uptimeMillis());
+            scheduleDeadline();
+        });
+        callState.addListener(callListener);
+        mainHandler.post(() -> stateMachine.onCallStateChanged(callState.getState(), SystemClock.uptimeMillis()));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            deviceListener = device -> {
+                boolean speaker = device != null && device.getType() == AudioDeviceInfo.TYPE_BUILTIN_SPEAKER;
+                stateMachine.onRouteChanged(speaker);
+                scheduleDeadline();
+            };
+            audioManager.addOnCommunicationDeviceChangedListener(service.getMainExecutor(), deviceListener);
+        }
+    }
+
+    /** Asks for the speakerphone on or off; the future completes when the route is confirmed or fails. */
+    CompletableFuture<CommandResult> request(boolean speaker) {
+        CompletableFuture<CommandResult> result = new CompletableFuture<>();
+        mainHandler.post(() -> {
+            CompletableFuture<CommandResult> previous = pending;
+            pending = result;
+            if (previous != null) {
+                previous.complete(CommandResult.failed("Superseded by a newer request"));
+            }
+            stateMachine.request(speaker, SystemClock.uptimeMillis());
+            scheduleDeadline();
+        });
+        return result;
+    }
+
+    void shutdown() {
+        callState.removeListener(callListener);
+        mainHandler.removeCallbacks(deadline);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && deviceListener != null) {
+            audioManager.removeOnCommunicationDeviceChangedListener(deviceListener);
+        }
+    }
+
+    @Override
+    public boolean apply(boolean speaker) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            if (!speaker) {
+                audioManager.clearCommunicationDevice();
+                return true;
+            }
+            for (AudioDeviceInfo device : audioManager.getAvailableCommunicationDevices()) {
+                if (device.getType() == AudioDeviceInfo.TYPE_BUILTIN_SPEAKER) {
+                    return audioManager.setCommunicationDevice(device);
+                }
+            }
+            return false;
+        }
+        audioManager.setSpeakerphoneOn(speaker);
+        return true;
+    }
+
+    @Override
+    public boolean isSpeakerActive() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            AudioDeviceInfo device = audioManager.getCommunicationDevice();
+            return device != null && device.getType() == AudioDeviceInfo.TYPE_BUILTIN_SPEAKER;
+        }
+        return audioManager.isSpeakerphoneOn();
+    }
+
+    @Override
+    public void release() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            audioManager.clearCommunicationDevice();
+        }
+    }
+
+    @Override
+    public void onRouted(boolean speaker) {
+        String message = "Speakerphone " + (speaker ? "enabled" : "disabled");
+        Log.d(TAG, message);
+        service.showNotification(NotificationDispatcher.Category.AUDIO, message + ".");
+        complete(CommandResult.ok(message));
+    }
+
+    @Override
+    public void onFailed(boolean speaker, String reason) {
+        Log.e(TAG, "Speakerphone " + (speaker ? "on" : "off") + " failed: " + reason);
+        service.showNotification(NotificationDispatcher.Category.AUDIO,
+                "Failed to set speakerphone: " + reason + ".");
+        complete(CommandResult.failed("Failed to set speakerphone: " + reason));
+    }
+
+    private void complete(CommandResult result) {
+        if (pending != null) {
+            pending.complete(result);
+            pending = null;
+        }
+    }
+
+    private void onDeadline() {
+        stateMachine.onDeadline(SystemClock.uptimeMillis());
+        scheduleDeadline();
+    }
+
+    private void scheduleDeadline() {
+        mainHandler.removeCallbacks(deadline);
+        long deadlineMs = stateMachine.getDeadlineMs();
+        if (deadlineMs >= 0) {
+            mainHandler.postAtTime(deadline, deadlineMs);
+        }
+    }
+}
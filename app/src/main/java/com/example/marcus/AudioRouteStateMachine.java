@@ -0,0 +1,138 @@
+package com.example.marcus;
+
+/**
+ * Speakerphone routing driven by call state and route-change events. A request made before the
+ * call is off-hook waits for it; once the call is active the route is applied and the request
+ * succeeds when the platform reports the new route. The only timer is a single deadline per
+ * request that turns a missing event into a failure.
+ *
+ * <p>Not thread-safe: the owner feeds every event from one thread.
+ */
+public final class AudioRouteStateMachine {
+
+    public static final long CALL_WAIT_MS = 60_000;
+    public static final long ROUTE_CONFIRM_MS = 1500;
+
+    public enum State {
+        IDLE,
+        WAITING_FOR_CALL,
+        SWITCHING,
+        ROUTED
+    }
+
+    /** Applies and reads the actual audio route. */
+    public interface Router {
+        /** Starts switching the route; returns false if the switch could not be issued. */
+        boolean apply(boolean speaker);
+
+        boolean isSpeakerActive();
+
+        /** Gives routing back to the system once the call is over. */
+        void release();
+    }
+
+    public interface Listener {
+        void onRouted(boolean speaker);
+
+        void onFailed(boolean speaker, String reason);
+    }
+
+    private final Router router;
+    private final Listener listener;
+    private State state = State.IDLE;
+    private CallStateMonitor.State callState = CallStateMonitor.State.IDLE;
+    private boolean target;
+    private long deadlineMs = -1;
+
+    public AudioRouteStateMachine(Router router, Listener listener) {
+        this.router = router;
+        this.listener = listener;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /** When {@link #onDeadline} should be called, or -1 if no request is outstanding. */
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    /** Replaces any outstanding request; the replaced one gets no outcome. */
+    public void request(boolean speaker, long nowMs) {
+        target = speaker;
+        deadlineMs = -1;
+        if (callState == CallStateMonitor.State.OFFHOOK) {
+            switchRoute(nowMs);
+        } else if (!speaker) {
+            // Nothing to undo without a call; the system routes the next call normally.
+            state = State.IDLE;
+            listener.onRouted(false);
+        } else {
+            state = State.WAITING_FOR_CALL;
+            deadlineMs = nowMs + CALL_WAIT_MS;
+        }
+    }
+
+    public void onCallStateChanged(CallStateMonitor.State callState, long nowMs) {
+        this.callState = callState;
+        if (callState == CallStateMonitor.State.OFFHOOK) {
+            if (state == State.WAITING_FOR_CALL) {
+                switchRoute(nowMs);
+            }
+        } else if (callState == CallStateMonitor.State.IDLE) {
+            if (state == State.SWITCHING) {
+                fail("Call ended before the route changed");
+            }
+            if (state == State.ROUTED) {
+                router.release();
+                state = State.IDLE;
+            }
+        }
+    }
+
+    public void onRouteChanged(boolean speakerActive) {
+        if (state == State.SWITCHING && speakerActive == target) {
+            routed();
+        }
+    }
+
+    public void onDeadline(long nowMs) {
+        if (deadlineMs < 0 || nowMs < deadlineMs) {
+            return;
+        }
+        if (state == State.WAITING_FOR_CALL) {
+            fail("No active call");
+        } else if (state == State.SWITCHING) {
+            // One last look in case the platform changed the route without telling us.
+            if (router.isSpeakerActive() == target) {
+                routed();
+            } else {
+                fail("Audio route did not change");
+            }
+        }
+    }
+
+    private void switchRoute(long nowMs) {
+        state = State.SWITCHING;
+        deadlineMs = nowMs + ROUTE_CONFIRM_MS;
+        if (!router.apply(target)) {
+            fail("Audio route unavailable");
+        } else if (router.isSpeakerActive() == target) {
+            // Already there, or applied synchronously: no change event will follow.
+            routed();
+        }
+    }
+
+    private void routed() {
+        state = State.ROUTED;
+        deadlineMs = -1;
+        listener.onRouted(target);
+    }
+
+    private void fail(String reason) {
+        state = State.IDLE;
+        deadlineMs = -1;
+        listener.onFailed(target, reason);
+    }
+}
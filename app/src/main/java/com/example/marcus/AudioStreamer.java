@@ -0,0 +1,128 @@
+package com.example.marcus;
+
+/**
+ * Streams one push-to-talk recording to the server while it is still being captured. PCM goes into
+ * a {@link PcmRingBuffer} as the microphone delivers it, and every full chunk is sent straight
+ * away as an {@link AudioFrameCodec} binary frame. The stream is bracketed by
+ * {@link CommandEnvelope#TYPE_AUDIO_START} and {@link CommandEnvelope#TYPE_AUDIO_END} text frames,
+ * so the server can start recognition before the user stops talking.
+ *
+ * <p>{@link #write} and {@link #finish} must be called from one thread, the capture thread.
+ */
+public final class AudioStreamer {
+
+    public static final String ENCODING = "pcm_s16le";
+
+    /** Where frames go; {@link WebSocketClientManager} in the app, a test server in tests. */
+    public interface Sink {
+        boolean sendText(String frame);
+
+        boolean sendBinary(byte[] frame);
+    }
+
+    private final Sink sink;
+    private final int streamId;
+    private final int sampleRate;
+    private final boolean deflate;
+    private final PcmRingBuffer ring;
+    private final AudioFrameCodec codec;
+    private final byte[] chunk;
+    private int sequence;
+    private long bytesIn;
+    private long bytesOut;
+    private int framesRefused;
+    private boolean finished;
+
+    public AudioStreamer(Sink sink, int streamId, int sampleRate, int chunkBytes, int ringBytes, boolean deflate) {
+        this(sink, streamId, sampleRate, chunkBytes, new PcmRingBuffer(ringBytes), deflate);
+    }
+
+    /** Streams through {@code ring}, which must be empty and is not used by anyone else meanwhile. */
+    public AudioStreamer(Sink sink, int streamId, int sampleRate, int chunkBytes, PcmRingBuffer ring, boolean deflate) {
+        if (chunkBytes <= 0 || chunkBytes % 2 != 0 || ring.capacity() < chunkBytes) {
+            throw new IllegalArgumentException("Invalid chunk or ring size");
+        }
+        this.sink = sink;
+        this.streamId = streamId;
+        this.sampleRate = sampleRate;
+        this.deflate = deflate;
+        this.ring = ring;
+        this.codec = new AudioFrameCodec(deflate);
+        this.chunk = new byte[chunkBytes];
+    }
+
+    /** Announces the stream; returns false if the server cannot be reached right now. */
+    public boolean start() {
+        JsonStreamWriter args = new JsonStreamWriter();
+        args.beginObject()
+                .name("stream").value(streamId)
+                .name("sampleRate").value(sampleRate)
+                .name("channels").value(1)
+                .name("encoding").value(ENCODING)
+                .name("compression").value(deflate ? "deflate" : "none")
+                .endObject();
+        return sink.sendText(CommandEnvelope.encode(null, CommandEnvelope.TYPE_AUDIO_START,
+                System.currentTimeMillis(), args.toString()));
+    }
+
+    /** Takes freshly captured PCM and sends every chunk that is now complete. */
+    public void write(byte[] pcm, int offset, int length) {
+        bytesIn += length;
+        int written = 0;
+        while (written < length) {
+            written += ring.write(pcm, offset + written, length - written);
+            while (ring.available() >= chunk.length) {
+                sendChunk(chunk.length, false);
+            }
+        }
+    }
+
+    /** Sends what is left as the last chunk and closes the stream. */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        sendChunk(ring.available(), true);
+        codec.close();
+        JsonStreamWriter args = new JsonStreamWriter();
+        args.beginObject()
+                .name("stream").value(streamId)
+                .name("chunks").value(sequence)
+                .name("bytes").value(bytesIn)
+                .endObject();
+        sink.sendText(CommandEnvelope.encode(null, CommandEnvelope.TYPE_AUDIO_END,
+                System.currentTimeMillis(), args.toString()));
+    }
+
+    private void sendChunk(int length, boolean last) {
+        int read = ring.read(chunk, 0, length);
+        byte[] frame = codec.encode(streamId, sequence++, last, chunk, 0, read);
+        bytesOut += frame.length;
+        if (!sink.sendBinary(frame)) {
+            framesRefused++;
+        }
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public int getChunksSent() {
+        return sequence;
+    }
+
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /** Frame bytes produced, headers included; against {@link #getBytesIn()} this is the compression ratio. */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /** Frames the sink would not take, typically because the socket was down. */
+    public int getFramesRefused() {
+        return framesRefused;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+
+/** Places a call to a contact looked up by name. */
+class CallHandler implements CommandHandler {
+
+    private static final String TAG = "CallHandler";
+
+    private final AssistantService service;
+
+    CallHandler(AssistantService service) {
+        this.service = service;
+    }
+
+    @Override
+    public CommandResult handle(Command command, CommandTrace trace) {
+        String contactName = ((Command.Call) command).getContactName();
+
+        // Check if permissions are granted
+        if (!service.hasPermission(Manifest.permission.READ_CONTACTS)) {
+            return service.requestPermission(Manifest.permission.READ_CONTACTS,
+                    "Contacts permission is required to make a call.");
+        }
+        if (!service.hasPermission(Manifest.permission.CALL_PHONE)) {
+            return service.requestPermission(Manifest.permission.CALL_PHONE,
+                    "Phone call permission is required to make a call.");
+        }
+
+        // Look the phone number up in the shared contact index
+        ContactIndex.Contact contact = service.getContactDirectory().resolve(contactName);
+        trace.mark(CommandTrace.Checkpoint.LOOKED_UP);
+        if (contact != null && contact.getPrimaryNumber() != null) {
+            // Make the call
+            Intent callIntent = new Intent(Intent.ACTION_CALL);
+            callIntent.setData(Uri.parse("tel:" + contact.getPrimaryNumber()));
+            callIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            service.fireOnMain(trace, () -> service.startActivity(callIntent));
+            Log.d(TAG, "Calling " + contact.getDisplayName() + "...");
+            return CommandResult.ok("Calling " + contact.getDisplayName());
+        } else {
+            Log.e(TAG, "Contact not found: " + contactName);
+            service.showNotification(NotificationDispatcher.Category.CALL, "Contact not found: " + contactName);
+            return CommandResult.failed("Contact not found: " + contactName);
+        }
+    }
+}
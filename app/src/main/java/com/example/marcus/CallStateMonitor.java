@@ -0,0 +1,49 @@
+package com.example.marcus;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Last known telephony call state, fed by the service's phone state listener. Pipeline steps
+ * that must wait for a call to connect listen for the change instead of guessing with delays.
+ */
+public final class CallStateMonitor {
+
+    public enum State {
+        IDLE,
+        RINGING,
+        OFFHOOK
+    }
+
+    /** Told about every change, on the thread that reported it. */
+    public interface Listener {
+        void onCallStateChanged(State state);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private State state = State.IDLE;
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public void update(State state) {
+        synchronized (this) {
+            if (this.state == state) {
+                return;
+            }
+            this.state = state;
+        }
+        for (Listener listener : listeners) {
+            listener.onCallStateChanged(state);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
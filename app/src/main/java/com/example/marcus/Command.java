@@ -0,0 +1,192 @@
+package com.example.marcus;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parsed assistant command. Instances are produced by {@link CommandParser} and are immutable.
+ */
+public abstract class Command {
+
+    public enum Type {
+        CALL,
+        SMS,
+        ADD_CONTACT,
+        ADD_CONTACTS,
+        END_CALL,
+        SPEAKER,
+        OPEN_APP,
+        INVALID
+    }
+
+    private final Type type;
+
+    Command(Type type) {
+        this.type = type;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public static final class Call extends Command {
+        private final String contactName;
+
+        public Call(String contactName) {
+            super(Type.CALL);
+            this.contactName = contactName;
+        }
+
+        public String getContactName() {
+            return contactName;
+        }
+
+        @Override
+        public String toString() {
+            return "Call{" + contactName + "}";
+        }
+    }
+
+    public static final class Sms extends Command {
+        private final String contactName;
+        private final String message;
+
+        public Sms(String contactName, String message) {
+            super(Type.SMS);
+            this.contactName = contactName;
+            this.message = message;
+        }
+
+        public String getContactName() {
+            return contactName;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Sms{" + contactName + ", " + message + "}";
+        }
+    }
+
+    public static final class AddContact extends Command {
+        private static final String[] NO_NUMBERS = new String[0];
+
+        private final String contactName;
+        private final String[] numbers;
+
+        public AddContact(String contactName) {
+            this(contactName, NO_NUMBERS);
+        }
+
+        public AddContact(String contactName, String[] numbers) {
+            super(Type.ADD_CONTACT);
+            this.contactName = contactName;
+            this.numbers = numbers;
+        }
+
+        public String getContactName() {
+            return contactName;
+        }
+
+        public String[] getNumbers() {
+            return numbers;
+        }
+
+        @Override
+        public String toString() {
+            return "AddContact{" + contactName + (numbers.length > 0 ? ", " + String.join(", ", numbers) : "") + "}";
+        }
+    }
+
+    /** Several contacts created together, from a {@link CommandEnvelope#TYPE_ADD_CONTACTS} frame. */
+    public static final class AddContacts extends Command {
+        private final List<AddContact> contacts;
+
+        public AddContacts(List<AddContact> contacts) {
+            super(Type.ADD_CONTACTS);
+            this.contacts = Collections.unmodifiableList(contacts);
+        }
+
+        public List<AddContact> getContacts() {
+            return contacts;
+        }
+
+        @Override
+        public String toString() {
+            return "AddContacts{" + contacts.size() + "}";
+        }
+    }
+
+    public static final class EndCall extends Command {
+        public static final EndCall INSTANCE = new EndCall();
+
+        private EndCall() {
+            super(Type.END_CALL);
+        }
+
+        @Override
+        public String toString() {
+            return "EndCall";
+        }
+    }
+
+    public static final class Speaker extends Command {
+        public static final Speaker ON = new Speaker(true);
+        public static final Speaker OFF = new Speaker(false);
+
+        private final boolean on;
+
+        private Speaker(boolean on) {
+            super(Type.SPEAKER);
+            this.on = on;
+        }
+
+        public boolean isOn() {
+            return on;
+        }
+
+        @Override
+        public String toString() {
+            return "Speaker{" + (on ? "on" : "off") + "}";
+        }
+    }
+
+    public static final class OpenApp extends Command {
+        private final String appName;
+
+        public OpenApp(String appName) {
+            super(Type.OPEN_APP);
+            this.appName = appName;
+        }
+
+        public String getAppName() {
+            return appName;
+        }
+
+        @Override
+        public String toString() {
+            return "OpenApp{" + appName + "}";
+        }
+    }
+
+    public static final class Invalid extends Command {
+        private final String reason;
+
+        public Invalid(String reason) {
+            super(Type.INVALID);
+            this.reason = reason;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return "Invalid{" + reason + "}";
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.marcus;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A protocol frame exchanged with the server:
+ * {@code {"id": "...", "type": "command", "ts": 1700000000000, "args": {"text": "call mom"}}}.
+ *
+ * <p>Frames are decoded with {@link JsonPullParser}; {@code args} is kept as raw JSON and only
+ * read once the type is known, so field order does not matter and no tree is built. Frames that
+ * are not JSON objects are treated as legacy bare-string commands without a correlation ID.
+ */
+public final class CommandEnvelope {
+
+    public static final String TYPE_COMMAND = "command";
+    public static final String TYPE_RESULT = "result";
+    /** Ordered list of commands executed locally, see {@link CommandPipeline}. */
+    public static final String TYPE_PIPELINE = "pipeline";
+    /** Bulk contact creation, see {@link ContactBatch}. */
+    public static final String TYPE_ADD_CONTACTS = "addContacts";
+    /** Request for (and reply carrying) the {@link CommandMetrics} export. */
+    public static final String TYPE_DIAGNOSTICS = "diagnostics";
+    /** Opens and closes a push-to-talk audio stream, see {@link AudioStreamer}. */
+    public static final String TYPE_AUDIO_START = "audioStart";
+    public static final String TYPE_AUDIO_END = "audioEnd";
+    /**
+     * A chunk of the contact directory, see {@link ContactSyncBatcher}. Sent by the server with
+     * {@code "ack": <sync>}, it confirms that sync arrived whole; otherwise it asks for a resync,
+     * and {@code "mode": "full"} drops the device's high-water marks first.
+     */
+    public static final String TYPE_CONTACT_SYNC = "contactSync";
+    /** The installed-app catalog or a diff of it, see {@link AppCatalog}; from the server, a resync request. */
+    public static final String TYPE_APP_CATALOG = "appCatalog";
+
+    private static final String EMPTY_ARGS = "{}";
+
+    private final String id;
+    private final String type;
+    private final long timestamp;
+    private final String argsJson;
+
+    private CommandEnvelope(String id, String type, long timestamp, String argsJson) {
+        this.id = id;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.argsJson = argsJson;
+    }
+
+    /** Decodes one frame. Throws if a JSON frame is malformed or has no type. */
+    public static CommandEnvelope decode(String frame) throws IOException {
+        String trimmed = frame.trim();
+        if (!trimmed.startsWith("{")) {
+            return legacy(trimmed);
+        }
+        String id = null;
+        String type = null;
+        long timestamp = 0;
+        String argsJson = EMPTY_ARGS;
+
+        JsonPullParser parser = new JsonPullParser(trimmed);
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String name = parser.nextName();
+            if (parser.peek() == JsonPullParser.Token.NULL) {
+                parser.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = parser.nextString();
+                    break;
+                case "type":
+                    type = parser.nextString();
+                    break;
+                case "ts":
+                    timestamp = parser.nextLong();
+                    break;
+                case "args":
+                    if (parser.peek() != JsonPullParser.Token.BEGIN_OBJECT) {
+                        throw new JsonPullParser.MalformedJsonException("args must be an object");
+                    }
+                    argsJson = parser.skipValueRaw();
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
+            }
+        }
+        parser.endObject();
+        // Rejects trailing data after the object.
+        parser.peek();
+        if (type == null) {
+            throw new JsonPullParser.MalformedJsonException("Frame has no type");
+        }
+        return new CommandEnvelope(id, type, timestamp, argsJson);
+    }
+
+    /** Wraps a bare-string command from a server that predates the envelope. */
+    public static CommandEnvelope legacy(String text) {
+        String args = new JsonStreamWriter().beginObject().name("text").value(text).endObject().toString();
+        return new CommandEnvelope(null, TYPE_COMMAND, 0, args);
+    }
+
+    /** Correlation ID, or {@code null} for legacy frames, which get no result reply. */
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /** Sender timestamp in epoch milliseconds, or 0 if the frame had none. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getArgsJson() {
+        return argsJson;
+    }
+
+    /** Returns a parser positioned before the args object. */
+    public JsonPullParser openArgs() {
+        return new JsonPullParser(argsJson);
+    }
+
+    /** Returns the top-level string argument {@code name}, or {@code null} if absent. */
+    public String getStringArg(String name) throws IOException {
+        JsonPullParser parser = openArgs();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (name.equals(parser.nextName()) && parser.peek() != JsonPullParser.Token.NULL) {
+                return parser.nextString();
+            }
+            parser.skipValue();
+        }
+        return null;
+    }
+
+    /** Returns the top-level numeric argument {@code name}, or {@code fallback} if absent. */
+    public long getLongArg(String name, long fallback) throws IOException {
+        JsonPullParser parser = openArgs();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (name.equals(parser.nextName()) && parser.peek() != JsonPullParser.Token.NULL) {
+                return parser.nextLong();
+            }
+            parser.skipValue();
+        }
+        return fallback;
+    }
+
+    /** The spoken command text of a {@link #TYPE_COMMAND} frame. */
+    public String getText() throws IOException {
+        return getStringArg("text");
+    }
+
+    public static String encode(String id, String type, long timestamp, String argsJson) {
+        JsonStreamWriter writer = new JsonStreamWriter();
+        writer.beginObject();
+        if (id != null) {
+            writer.name("id").value(id);
+        }
+        writer.name("type").value(type)
+                .name("ts").value(timestamp)
+                .name("args").rawValue(argsJson != null ? argsJson : EMPTY_ARGS)
+                .endObject();
+        return writer.toString();
+    }
+
+    /**
+     * Encodes the result frame for command {@code id}, with the time spent in each stage the
+     * command reached, in microseconds.
+     */
+    public static String encodeResult(String id, Command.Type command, CommandResult result, CommandTrace trace) {
+        JsonStreamWriter args = new JsonStreamWriter();
+        args.beginObject()
+                .name("status").value(result.getStatus().name().toLowerCase(Locale.ROOT))
+                .name("message").value(result.getMessage());
+        if (command != null) {
+            args.name("command").value(command.name());
+        }
+        args.name("timing").beginObject().name("receivedAt").value(trace.getReceivedAtMs());
+        writeMicros(args, "parseUs", trace.stageNanos(CommandTrace.Checkpoint.PARSED));
+        writeMicros(args, "queueUs", trace.stageNanos(CommandTrace.Checkpoint.DISPATCHED));
+        writeMicros(args, "lookupUs", trace.stageNanos(CommandTrace.Checkpoint.LOOKED_UP));
+        writeMicros(args, "mainQueueUs", trace.stageNanos(CommandTrace.Checkpoint.ON_MAIN));
+        writeMicros(args, "actionUs", trace.stageNanos(CommandTrace.Checkpoint.FIRED));
+        writeMicros(args, "totalUs",
+                trace.elapsedNanos(CommandTrace.Checkpoint.RECEIVED, CommandTrace.Checkpoint.COMPLETED));
+        args.endObject().endObject();
+        return encode(id, TYPE_RESULT, System.currentTimeMillis(), args.toString());
+    }
+
+    /**
+     * Encodes the aggregated result frame for pipeline {@code id}: the overall status plus one
+     * entry per step with the time it waited for its condition and the time it ran.
+     */
+    public static String encodePipelineResult(String id, CommandResult result,
+                                              List<CommandPipeline.StepOutcome> steps, CommandTrace trace) {
+        JsonStreamWriter args = new JsonStreamWriter();
+        args.beginObject()
+                .name("status").value(result.getStatus().name().toLowerCase(Locale.ROOT))
+                .name("message").value(result.getMessage())
+                .name("steps").beginArray();
+        for (CommandPipeline.StepOutcome step : steps) {
+            args.beginObject()
+                    .name("text").value(step.getStep().getText())
+                    .name("command").value(step.getType().name());
+            if (step.isSkipped()) {
+                args.name("status").value("skipped");
+            } else {
+                args.name("status").value(step.getResult().getStatus().name().toLowerCase(Locale.ROOT))
+                        .name("message").value(step.getResult().getMessage());
+            }
+            writeMicros(args, "waitUs", step.getWaitNanos());
+            writeMicros(args, "runUs", step.getRunNanos());
+            args.endObject();
+        }
+        args.endArray();
+        args.name("timing").beginObject().name("receivedAt").value(trace.getReceivedAtMs());
+        writeMicros(args, "parseUs", trace.stageNanos(CommandTrace.Checkpoint.PARSED));
+        writeMicros(args, "queueUs", trace.stageNanos(CommandTrace.Checkpoint.DISPATCHED));
+        writeMicros(args, "totalUs",
+                trace.elapsedNanos(CommandTrace.Checkpoint.RECEIVED, CommandTrace.Checkpoint.COMPLETED));
+        args.endObject().endObject();
+        return encode(id, TYPE_RESULT, System.currentTimeMillis(), args.toString());
+    }
+
+    private static void writeMicros(JsonStreamWriter writer, String name, long nanos) {
+        if (nanos >= 0) {
+            writer.name(name).value(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CommandEnvelope{" + id + ", " + type + ", " + argsJson + "}";
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.marcus;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs command handlers on a small bounded worker pool, so lookups and provider I/O stay off the
+ * UI thread. Handlers hop to the main thread with {@link #runOnMain} only for the calls that need
+ * it, such as {@code startActivity}.
+ */
+public final class CommandExecutor {
+
+    private final ThreadPoolExecutor workers;
+    private final Executor mainExecutor;
+    private final Thread mainThread;
+
+    public CommandExecutor(int threads, int queueCapacity, Executor mainExecutor, Thread mainThread) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "command-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.workers.allowCoreThreadTimeOut(true);
+        this.mainExecutor = mainExecutor;
+        this.mainThread = mainThread;
+    }
+
+    /** Queues {@code task} on the worker pool. Returns {@code false} if the queue is full. */
+    public boolean execute(Runnable task) {
+        try {
+            workers.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /** Number of tasks waiting for a worker. */
+    public int getQueuedCount() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Runs {@code action} on the main thread and waits for it. Runs inline when already called on
+     * the main thread. Exceptions thrown by {@code action} are rethrown to the caller.
+     */
+    public <T> T runOnMain(Callable<T> action) {
+        if (Thread.currentThread() == mainThread) {
+            try {
+                return action.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        FutureTask<T> task = new FutureTask<>(action);
+        mainExecutor.execute(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(false);
+            throw new IllegalStateException("Interrupted waiting for the main thread", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public void runOnMain(Runnable action) {
+        runOnMain(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
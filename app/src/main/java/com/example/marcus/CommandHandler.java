@@ -0,0 +1,10 @@
+package com.example.marcus;
+
+/**
+ * Executes commands of one {@link Command.Type}. Handlers are called on a worker thread of the
+ * {@link CommandExecutor} and must hop to the main thread themselves for calls that need it.
+ */
+public interface CommandHandler {
+
+    CommandResult handle(Command command, CommandTrace trace);
+}
@@ -0,0 +1,41 @@
+package com.example.marcus;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps command types to handler factories. A handler is only created the first time a command of
+ * its type arrives, so system services and caches it needs are not touched at startup.
+ */
+public final class CommandHandlerRegistry {
+
+    public interface Factory {
+        CommandHandler create();
+    }
+
+    private final Map<Command.Type, Factory> factories = new EnumMap<>(Command.Type.class);
+    private final ConcurrentHashMap<Command.Type, CommandHandler> handlers = new ConcurrentHashMap<>();
+
+    /** Registers the factory for {@code type}. Registration must finish before the first {@link #get}. */
+    public CommandHandlerRegistry register(Command.Type type, Factory factory) {
+        if (factories.containsKey(type)) {
+            throw new IllegalArgumentException("Handler already registered for " + type);
+        }
+        factories.put(type, factory);
+        return this;
+    }
+
+    /** Returns the handler for {@code type}, creating it on first use, or {@code null} if none is registered. */
+    public CommandHandler get(Command.Type type) {
+        Factory factory = factories.get(type);
+        if (factory == null) {
+            return null;
+        }
+        return handlers.computeIfAbsent(type, key -> factory.create());
+    }
+
+    public boolean isCreated(Command.Type type) {
+        return handlers.containsKey(type);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.marcus;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide latency histograms for each stage of command handling, fed from finished
+ * {@link CommandTrace}s. Shown in {@link DiagnosticsActivity} and exported to the server on request.
+ */
+public final class CommandMetrics {
+
+    public enum Stage {
+        /** Server send timestamp to frame receipt; only meaningful with synchronized clocks. */
+        NETWORK,
+        /** Receipt to parsed command. */
+        PARSE,
+        /** Parsed to execution start, i.e. time spent waiting for a worker thread. */
+        DISPATCH,
+        /** Contact or app lookup. */
+        LOOKUP,
+        /** Time spent waiting for the main thread to pick up the platform call. */
+        MAIN_QUEUE,
+        /** Firing the platform action. */
+        ACTION,
+        /** Receipt to result. */
+        TOTAL
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final CommandResult.Status[] STATUSES = CommandResult.Status.values();
+    private static final CommandMetrics instance = new CommandMetrics();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final AtomicLongArray statusCounts = new AtomicLongArray(STATUSES.length);
+    private volatile long sinceMs = System.currentTimeMillis();
+
+    CommandMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static CommandMetrics getInstance() {
+        return instance;
+    }
+
+    public void record(CommandTrace trace, CommandResult.Status status) {
+        statusCounts.incrementAndGet(status.ordinal());
+        if (trace.getSentAtMs() > 0 && trace.getReceivedAtMs() >= trace.getSentAtMs()) {
+            get(Stage.NETWORK).recordMicros(
+                    TimeUnit.MILLISECONDS.toMicros(trace.getReceivedAtMs() - trace.getSentAtMs()));
+        }
+        recordIfReached(Stage.PARSE, trace.stageNanos(CommandTrace.Checkpoint.PARSED));
+        recordIfReached(Stage.DISPATCH, trace.stageNanos(CommandTrace.Checkpoint.DISPATCHED));
+        recordIfReached(Stage.LOOKUP, trace.stageNanos(CommandTrace.Checkpoint.LOOKED_UP));
+        recordIfReached(Stage.MAIN_QUEUE, trace.stageNanos(CommandTrace.Checkpoint.ON_MAIN));
+        recordIfReached(Stage.ACTION, trace.stageNanos(CommandTrace.Checkpoint.FIRED));
+        recordIfReached(Stage.TOTAL,
+                trace.elapsedNanos(CommandTrace.Checkpoint.RECEIVED, CommandTrace.Checkpoint.COMPLETED));
+    }
+
+    private void recordIfReached(Stage stage, long nanos) {
+        if (nanos >= 0) {
+            get(stage).recordNanos(nanos);
+        }
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public long getCount(CommandResult.Status status) {
+        return statusCounts.get(status.ordinal());
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            statusCounts.set(i, 0);
+        }
+        sinceMs = System.currentTimeMillis();
+    }
+
+    /** Encodes counts and per-stage percentiles (microseconds) as a JSON object. */
+    public String toJson() {
+        JsonStreamWriter writer = new JsonStreamWriter();
+        writer.beginObject().name("since").value(sinceMs);
+        writer.name("commands").beginObject();
+        for (CommandResult.Status status : STATUSES) {
+            writer.name(status.name().toLowerCase(Locale.ROOT)).value(getCount(status));
+        }
+        writer.endObject();
+        writer.name("stages").beginObject();
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = get(stage);
+            writer.name(stage.name().toLowerCase(Locale.ROOT)).beginObject()
+                    .name("count").value(histogram.getCount())
+                    .name("meanUs").value(Math.round(histogram.getMean()))
+                    .name("p50Us").value(histogram.getPercentile(50))
+                    .name("p90Us").value(histogram.getPercentile(90))
+                    .name("p99Us").value(histogram.getPercentile(99))
+                    .name("p999Us").value(histogram.getPercentile(99.9))
+                    .name("maxUs").value(histogram.getMax())
+                    .endObject();
+        }
+        writer.endObject().endObject();
+        return writer.toString();
+    }
+
+    /** Human-readable table of per-stage percentiles in milliseconds. */
+    public String formatTable() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%-10s %6s %8s %8s %8s %8s%n",
+                "stage", "count", "p50", "p90", "p99", "max"));
+        for (Stage stage : STAGES) {
+            LatencyHistogram histogram = get(stage);
+            out.append(String.format(Locale.ROOT, "%-10s %6d %8s %8s %8s %8s%n",
+                    stage.name().toLowerCase(Locale.ROOT), histogram.getCount(),
+                    millis(histogram.getPercentile(50)), millis(histogram.getPercentile(90)),
+                    millis(histogram.getPercentile(99)), millis(histogram.getMax())));
+        }
+        out.append('\n');
+        for (CommandResult.Status status : STATUSES) {
+            out.append(status.name().toLowerCase(Locale.ROOT)).append(": ").append(getCount(status)).append("  ");
+        }
+        return out.toString().trim();
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+}
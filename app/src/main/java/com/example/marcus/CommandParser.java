@@ -0,0 +1,283 @@
+package com.example.marcus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Parses raw command text into typed {@link Command}s.
+ *
+ * <p>The grammar is compiled once into a character trie. Parsing walks the input a single time,
+ * folding case and collapsing whitespace on the fly, so matching a keyword never allocates; the
+ * only allocations are the argument substrings of the command that finally matches.
+ *
+ * <p>This class has no Android dependencies and is safe to share between threads once built.
+ */
+public final class CommandParser {
+
+    /** Builds the typed command for a keyword phrase from the argument range {@code [start, end)}. */
+    public interface Production {
+        Command produce(String input, int start, int end);
+    }
+
+    private static final CommandParser DEFAULT = new Builder()
+            .prefix("call", (input, start, end) -> new Command.Call(input.substring(start, end)))
+            .prefix("sms", CommandParser::parseSms)
+            .prefix("add", CommandParser::parseAddContact)
+            .exact("end call", Command.EndCall.INSTANCE)
+            .exact("cut the call", Command.EndCall.INSTANCE)
+            .exact("speaker on", Command.Speaker.ON)
+            .exact("speaker off", Command.Speaker.OFF)
+            .prefix("open", (input, start, end) -> new Command.OpenApp(input.substring(start, end)))
+            .prefix("launch", (input, start, end) -> new Command.OpenApp(input.substring(start, end)))
+            .prefix("start", (input, start, end) -> new Command.OpenApp(input.substring(start, end)))
+            .build();
+
+    private static final String SMS_SEPARATOR = "that";
+    private static final int MIN_PHONE_DIGITS = 3;
+    private static final Command.Invalid INVALID_SMS = new Command.Invalid(
+            "Invalid SMS command format. Use 'sms <contact_name> that <message>'.");
+
+    // Flattened trie: node i has outgoing edges edgeChars[i][k] -> edgeTargets[i][k].
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final Command[] exactCommands;
+    private final Production[] prefixProductions;
+
+    private CommandParser(char[][] edgeChars, int[][] edgeTargets, Command[] exactCommands,
+                          Production[] prefixProductions) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.exactCommands = exactCommands;
+        this.prefixProductions = prefixProductions;
+    }
+
+    /** Returns the parser for the assistant's built-in command grammar. */
+    public static CommandParser getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Parses {@code input}. Never returns {@code null}: unrecognised or malformed text yields a
+     * {@link Command.Invalid} describing the problem.
+     */
+    public Command parse(String input) {
+        if (input == null) {
+            return new Command.Invalid("Empty command.");
+        }
+        int end = input.length();
+        while (end > 0 && Character.isWhitespace(input.charAt(end - 1))) {
+            end--;
+        }
+        int i = 0;
+        while (i < end && Character.isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        if (i == end) {
+            return new Command.Invalid("Empty command.");
+        }
+
+        int node = 0;
+        Production lastProduction = null;
+        int lastProductionEnd = -1;
+        while (i < end) {
+            char c = input.charAt(i);
+            if (Character.isWhitespace(c)) {
+                c = ' ';
+                while (i + 1 < end && Character.isWhitespace(input.charAt(i + 1))) {
+                    i++;
+                }
+            } else {
+                c = Character.toLowerCase(c);
+            }
+            int next = step(node, c);
+            if (next < 0) {
+                break;
+            }
+            node = next;
+            i++;
+            if (prefixProductions[node] != null) {
+                lastProduction = prefixProductions[node];
+                lastProductionEnd = i;
+            }
+        }
+
+        if (i == end && exactCommands[node] != null) {
+            return exactCommands[node];
+        }
+        if (lastProduction != null && lastProductionEnd < end) {
+            return lastProduction.produce(input, lastProductionEnd, end);
+        }
+        return new Command.Invalid("Unknown command: " + input.substring(0, end).trim());
+    }
+
+    private int step(int node, char c) {
+        char[] chars = edgeChars[node];
+        for (int k = 0; k < chars.length; k++) {
+            if (chars[k] == c) {
+                return edgeTargets[node][k];
+            }
+        }
+        return -1;
+    }
+
+    // "add Sanika 98765 43210": a trailing run of digits and phone punctuation is the number.
+    private static Command parseAddContact(String input, int start, int end) {
+        int numberStart = end;
+        int digits = 0;
+        while (numberStart > start && isPhoneChar(input.charAt(numberStart - 1))) {
+            numberStart--;
+            if (Character.isDigit(input.charAt(numberStart))) {
+                digits++;
+            }
+        }
+        while (numberStart < end && Character.isWhitespace(input.charAt(numberStart))) {
+            numberStart++;
+        }
+        int nameEnd = numberStart;
+        while (nameEnd > start && Character.isWhitespace(input.charAt(nameEnd - 1))) {
+            nameEnd--;
+        }
+        if (digits < MIN_PHONE_DIGITS || nameEnd == start || nameEnd == numberStart) {
+            return new Command.AddContact(input.substring(start, end));
+        }
+        return new Command.AddContact(input.substring(start, nameEnd), new String[]{dialable(input, numberStart, end)});
+    }
+
+    /**
+     * Returns {@code target} as a dialable number if it is one, e.g. an exact number the server
+     * resolved from the synced contacts, or {@code null} if it should be looked up as a name.
+     */
+    static String phoneNumberOrNull(String target) {
+        int digits = 0;
+        for (int i = 0; i < target.length(); i++) {
+            char c = target.charAt(i);
+            if (!isPhoneChar(c)) {
+                return null;
+            }
+            if (Character.isDigit(c)) {
+                digits++;
+            }
+        }
+        return digits < MIN_PHONE_DIGITS ? null : dialable(target, 0, target.length());
+    }
+
+    // Digits only, keeping a leading '+'.
+    private static String dialable(String input, int start, int end) {
+        StringBuilder number = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (Character.isDigit(c) || (c == '+' && number.length() == 0)) {
+                number.append(c);
+            }
+        }
+        return number.toString();
+    }
+
+    private static boolean isPhoneChar(char c) {
+        return Character.isDigit(c) || c == '+' || c == '-' || c == '(' || c == ')' || Character.isWhitespace(c);
+    }
+
+    // "sms <contact_name> that <message>", splitting on the first standalone "that".
+    private static Command parseSms(String input, int start, int end) {
+        int last = end - SMS_SEPARATOR.length();
+        for (int j = start + 1; j < last; j++) {
+            if (Character.isWhitespace(input.charAt(j - 1))
+                    && Character.isWhitespace(input.charAt(j + SMS_SEPARATOR.length()))
+                    && input.regionMatches(true, j, SMS_SEPARATOR, 0, SMS_SEPARATOR.length())) {
+                int nameEnd = j - 1;
+                while (nameEnd > start && Character.isWhitespace(input.charAt(nameEnd - 1))) {
+                    nameEnd--;
+                }
+                int messageStart = j + SMS_SEPARATOR.length() + 1;
+                while (messageStart < end && Character.isWhitespace(input.charAt(messageStart))) {
+                    messageStart++;
+                }
+                if (messageStart == end) {
+                    return INVALID_SMS;
+                }
+                return new Command.Sms(input.substring(start, nameEnd), input.substring(messageStart, end));
+            }
+        }
+        return INVALID_SMS;
+    }
+
+    public static final class Builder {
+        private final List<String> phrases = new ArrayList<>();
+        private final List<Object> targets = new ArrayList<>();
+
+        /** The whole command must equal {@code phrase}; parsing it always yields {@code command}. */
+        public Builder exact(String phrase, Command command) {
+            phrases.add(normalize(phrase));
+            targets.add(command);
+            return this;
+        }
+
+        /** {@code phrase} followed by whitespace and an argument handed to {@code production}. */
+        public Builder prefix(String phrase, Production production) {
+            phrases.add(normalize(phrase) + ' ');
+            targets.add(production);
+            return this;
+        }
+
+        public CommandParser build() {
+            List<TreeMap<Character, Integer>> edges = new ArrayList<>();
+            List<Object> terminals = new ArrayList<>();
+            edges.add(new TreeMap<>());
+            terminals.add(null);
+
+            for (int p = 0; p < phrases.size(); p++) {
+                String phrase = phrases.get(p);
+                int node = 0;
+                for (int k = 0; k < phrase.length(); k++) {
+                    Integer next = edges.get(node).get(phrase.charAt(k));
+                    if (next == null) {
+                        next = edges.size();
+                        edges.get(node).put(phrase.charAt(k), next);
+                        edges.add(new TreeMap<>());
+                        terminals.add(null);
+                    }
+                    node = next;
+                }
+                if (terminals.get(node) != null) {
+                    throw new IllegalArgumentException("Duplicate command phrase: '" + phrase.trim() + "'");
+                }
+                terminals.set(node, targets.get(p));
+            }
+
+            int count = edges.size();
+            char[][] edgeChars = new char[count][];
+            int[][] edgeTargets = new int[count][];
+            Command[] exactCommands = new Command[count];
+            Production[] prefixProductions = new Production[count];
+            for (int n = 0; n < count; n++) {
+                TreeMap<Character, Integer> out = edges.get(n);
+                edgeChars[n] = new char[out.size()];
+                edgeTargets[n] = new int[out.size()];
+                int k = 0;
+                for (Map.Entry<Character, Integer> e : out.entrySet()) {
+                    edgeChars[n][k] = e.getKey();
+                    edgeTargets[n][k] = e.getValue();
+                    k++;
+                }
+                Object terminal = terminals.get(n);
+                if (terminal instanceof Command) {
+                    exactCommands[n] = (Command) terminal;
+                } else if (terminal instanceof Production) {
+                    prefixProductions[n] = (Production) terminal;
+                }
+            }
+            return new CommandParser(edgeChars, edgeTargets, exactCommands, prefixProductions);
+        }
+
+        private static String normalize(String phrase) {
+            String normalized = phrase.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+            if (normalized.isEmpty()) {
+                throw new IllegalArgumentException("Command phrase must not be empty");
+            }
+            return normalized;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.marcus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An ordered list of commands carried by one {@link CommandEnvelope#TYPE_PIPELINE} frame:
+ * {@code {"steps": [{"text": "call mom"}, {"text": "speaker on", "after": "offhook", "timeoutMs": 20000}]}}.
+ *
+ * <p>Steps run one after another. Each step after the first names the condition it waits for; a
+ * step whose condition is not met is skipped, and so are the steps that depend on it. Waiting for a
+ * call to connect holds no thread: the pipeline listens on the {@link CallStateMonitor} and resumes
+ * on its executor once the call is off-hook or the step times out. The whole pipeline is answered
+ * with one aggregated result, so the server no longer pays a round trip between dependent commands.
+ */
+public final class CommandPipeline {
+
+    /** What a step waits for before it runs. */
+    public enum Condition {
+        /** Run whatever happened to the previous step. */
+        ANY,
+        /** Run only if the previous step succeeded. The default. */
+        SUCCESS,
+        /** Run once the previous step succeeded and a call is off-hook. */
+        OFFHOOK
+    }
+
+    public static final int MAX_STEPS = 8;
+    static final long DEFAULT_TIMEOUT_MS = 30_000;
+    static final long MAX_TIMEOUT_MS = 60_000;
+
+    /** Executes one parsed step, typically by handing it to the command handlers. */
+    public interface StepRunner {
+        CommandResult run(Command command);
+    }
+
+    /** Schedules {@code task} after {@code delayMs}; running the returned handle cancels it. */
+    public interface Timer {
+        Runnable schedule(Runnable task, long delayMs);
+    }
+
+    /** Receives every step's outcome once the pipeline has finished. */
+    public interface Callback {
+        void onFinished(List<StepOutcome> outcomes);
+    }
+
+    public static final class Step {
+        private final String text;
+        private final Condition after;
+        private final long timeoutMs;
+
+        Step(String text, Condition after, long timeoutMs) {
+            this.text = text;
+            this.after = after;
+            this.timeoutMs = timeoutMs;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Condition getAfter() {
+            return after;
+        }
+
+        /** How long an {@link Condition#OFFHOOK} step waits for the call to connect. */
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+    }
+
+    /** Result of one step; {@link #getResult()} is {@code null} if the step was skipped. */
+    public static final class StepOutcome {
+        private final Step step;
+        private final Command.Type type;
+        private final CommandResult result;
+        private final long waitNanos;
+        private final long runNanos;
+
+        StepOutcome(Step step, Command.Type type, CommandResult result, long waitNanos, long runNanos) {
+            this.step = step;
+            this.type = type;
+            this.result = result;
+            this.waitNanos = waitNanos;
+            this.runNanos = runNanos;
+        }
+
+        public Step getStep() {
+            return step;
+        }
+
+        public Command.Type getType() {
+            return type;
+        }
+
+        public CommandResult getResult() {
+            return result;
+        }
+
+        public boolean isSkipped() {
+            return result == null;
+        }
+
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        public long getRunNanos() {
+            return runNanos;
+        }
+    }
+
+    private final List<Step> steps;
+
+    private CommandPipeline(List<Step> steps) {
+        this.steps = steps;
+    }
+
+    /** Reads the steps from a pipeline frame's args. */
+    public static CommandPipeline decode(CommandEnvelope envelope) throws IOException {
+        List<Step> steps = new ArrayList<>();
+        JsonPullParser parser = envelope.openArgs();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (!parser.nextName().equals("steps")) {
+                parser.skipValue();
+                continue;
+            }
+            parser.beginArray();
+            while (parser.hasNext()) {
+                if (steps.size() == MAX_STEPS) {
+                    throw new JsonPullParser.MalformedJsonException("Pipeline has more than " + MAX_STEPS + " steps");
+                }
+                steps.add(readStep(parser, steps.isEmpty()));
+            }
+            parser.endArray();
+        }
+        parser.endObject();
+        if (steps.isEmpty()) {
+            throw new JsonPullParser.MalformedJsonException("Pipeline has no steps");
+        }
+        return new CommandPipeline(Collections.unmodifiableList(steps));
+    }
+
+    private static Step readStep(JsonPullParser parser, boolean first) throws IOException {
+        String text = null;
+        Condition after = first ? Condition.ANY : Condition.SUCCESS;
+        long timeoutMs = DEFAULT_TIMEOUT_MS;
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String name = parser.nextName();
+            if (parser.peek() == JsonPullParser.Token.NULL) {
+                parser.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "text":
+                    text = parser.nextString().trim();
+                    break;
+                case "after":
+                    after = parseCondition(parser.nextString());
+                    break;
+                case "timeoutMs":
+                    timeoutMs = Math.max(0, Math.min(MAX_TIMEOUT_MS, parser.nextLong()));
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
+            }
+        }
+        parser.endObject();
+        if (text == null || text.isEmpty()) {
+            throw new JsonPullParser.MalformedJsonException("Pipeline step has no text");
+        }
+        if (first && after == Condition.SUCCESS) {
+            // Nothing precedes the first step.
+            after = Condition.ANY;
+        }
+        return new Step(text, after, timeoutMs);
+    }
+
+    private static Condition parseCondition(String value) throws IOException {
+        try {
+            return Condition.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new JsonPullParser.MalformedJsonException("Unknown step condition: " + value);
+        }
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Runs the steps in order, starting on the calling thread. A step that waits for the call to
+     * connect resumes the pipeline through {@code executor}; if that rejects it, the remaining
+     * steps are skipped. {@code callback} runs on whichever thread ran the last step.
+     */
+    public void start(CommandParser parser, StepRunner runner, CallStateMonitor callState,
+                      Executor executor, Timer timer, Callback callback) {
+        new Execution(parser, runner, callState, executor, timer, callback).advance();
+    }
+
+    /** One run of the pipeline; only one thread touches it at a time. */
+    private final class Execution {
+        private final CommandParser parser;
+        private final StepRunner runner;
+        private final CallStateMonitor callState;
+        private final Executor executor;
+        private final Timer timer;
+        private final Callback callback;
+        private final List<StepOutcome> outcomes = new ArrayList<>(steps.size());
+        private boolean previousOk = true;
+        private boolean abandoned;
+
+        Execution(CommandParser parser, StepRunner runner, CallStateMonitor callState,
+                  Executor executor, Timer timer, Callback callback) {
+            this.parser = parser;
+            this.runner = runner;
+            this.callState = callState;
+            this.executor = executor;
+            this.timer = timer;
+            this.callback = callback;
+        }
+
+        // Runs steps until one has to wait for the call, or none are left.
+        void advance() {
+            while (outcomes.size() < steps.size()) {
+                Step step = steps.get(outcomes.size());
+                Command command = parser.parse(step.getText());
+                if (abandoned || (step.getAfter() != Condition.ANY && !previousOk)) {
+                    record(step, command, null, 0, 0);
+                    continue;
+                }
+                if (step.getAfter() == Condition.OFFHOOK && callState.getState() != CallStateMonitor.State.OFFHOOK) {
+                    new OffhookWait(step, command).begin();
+                    return;
+                }
+                runStep(step, command, 0);
+            }
+            callback.onFinished(outcomes);
+        }
+
+        private void runStep(Step step, Command command, long waitNanos) {
+            long runStart = System.nanoTime();
+            CommandResult result;
+            try {
+                result = runner.run(command);
+            } catch (RuntimeException e) {
+                result = CommandResult.failed("Error handling command: " + e.getMessage());
+            }
+            record(step, command, result, waitNanos, System.nanoTime() - runStart);
+        }
+
+        private void record(Step step, Command command, CommandResult result, long waitNanos, long runNanos) {
+            outcomes.add(new StepOutcome(step, command.getType(), result, waitNanos, runNanos));
+            previousOk = result != null && result.isOk();
+        }
+
+        /** Settles once, on whichever comes first: the call connecting or the step's timeout. */
+        private final class OffhookWait implements CallStateMonitor.Listener, Runnable {
+            private final Step step;
+            private final Command command;
+            private final long waitStart = System.nanoTime();
+            private final AtomicBoolean settled = new AtomicBoolean();
+            private volatile Runnable cancelTimeout;
+
+            OffhookWait(Step step, Command command) {
+                this.step = step;
+                this.command = command;
+            }
+
+            void begin() {
+                callState.addListener(this);
+                cancelTimeout = timer.schedule(this, step.getTimeoutMs());
+                // The call may have connected before the listener was in place.
+                if (callState.getState() == CallStateMonitor.State.OFFHOOK) {
+                    settle(true);
+                }
+            }
+
+            @Override
+            public void onCallStateChanged(CallStateMonitor.State state) {
+                if (state == CallStateMonitor.State.OFFHOOK) {
+                    settle(true);
+                }
+            }
+
+            @Override
+            public void run() {
+                settle(false);
+            }
+
+            private void settle(boolean connected) {
+                if (!settled.compareAndSet(false, true)) {
+                    return;
+                }
+                callState.removeListener(this);
+                Runnable cancel = cancelTimeout;
+                if (cancel != null) {
+                    cancel.run();
+                }
+                long waitNanos = System.nanoTime() - waitStart;
+                try {
+                    executor.execute(() -> {
+                        if (connected) {
+                            runStep(step, command, waitNanos);
+                        } else {
+                            record(step, command, CommandResult.failed(
+                                    "Call did not connect within " + step.getTimeoutMs() + " ms"), waitNanos, 0);
+                        }
+                        advance();
+                    });
+                } catch (RejectedExecutionException e) {
+                    record(step, command, CommandResult.failed("Too many pending commands"), waitNanos, 0);
+                    abandoned = true;
+                    advance();
+                }
+            }
+        }
+    }
+
+    /**
+     * Folds step outcomes into the pipeline's overall result: OK if every step succeeded,
+     * otherwise the status and message of the first step that did not.
+     */
+    public static CommandResult summarize(List<StepOutcome> outcomes) {
+        for (int i = 0; i < outcomes.size(); i++) {
+            StepOutcome outcome = outcomes.get(i);
+            CommandResult result = outcome.getResult();
+            if (result == null) {
+                return CommandResult.failed("Step " + (i + 1) + " (" + outcome.getStep().getText() + ") was skipped");
+            }
+            if (!result.isOk()) {
+                String message = "Step " + (i + 1) + " (" + outcome.getStep().getText() + "): " + result.getMessage();
+                return result.getStatus() == CommandResult.Status.DEFERRED
+                        ? CommandResult.deferred(message)
+                        : CommandResult.failed(message);
+            }
+        }
+        return CommandResult.ok(outcomes.size() + " steps completed");
+    }
+}
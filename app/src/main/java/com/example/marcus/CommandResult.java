@@ -0,0 +1,66 @@
+package com.example.marcus;
+
+/**
+ * Outcome of executing one command, reported back to the server in a result frame.
+ */
+public final class CommandResult {
+
+    public enum Status {
+        OK,
+        FAILED,
+        // Accepted but waiting on something, usually a runtime permission prompt.
+        DEFERRED
+    }
+
+    private final Status status;
+    private final String message;
+    private final String permission;
+
+    private CommandResult(Status status, String message, String permission) {
+        this.status = status;
+        this.message = message;
+        this.permission = permission;
+    }
+
+    public static CommandResult ok(String message) {
+        return new CommandResult(Status.OK, message, null);
+    }
+
+    public static CommandResult failed(String message) {
+        return new CommandResult(Status.FAILED, message, null);
+    }
+
+    public static CommandResult deferred(String message) {
+        return new CommandResult(Status.DEFERRED, message, null);
+    }
+
+    /**
+     * Deferred until {@code permission} is granted; the runtime parks the command and fails it
+     * with {@code deniedMessage} if the permission is refused.
+     */
+    public static CommandResult needsPermission(String permission, String deniedMessage) {
+        return new CommandResult(Status.DEFERRED, deniedMessage, permission);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /** The permission a deferred command waits on, or {@code null}. */
+    public String getPermission() {
+        return permission;
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    @Override
+    public String toString() {
+        return status + (message != null ? ": " + message : "");
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.marcus;
+
+/**
+ * Timestamps of one command as it moves through the pipeline. Checkpoints are marked with
+ * {@link System#nanoTime()} by whichever thread reaches them; a checkpoint that a command never
+ * reaches (e.g. no provider lookup for "end call") stays unset.
+ */
+public final class CommandTrace {
+
+    public enum Checkpoint {
+        /** Frame handed over by the socket's {@code onMessage}. */
+        RECEIVED,
+        /** Envelope decoded and command text parsed. */
+        PARSED,
+        /** Execution started on a worker thread. */
+        DISPATCHED,
+        /** Contact or app lookup finished. */
+        LOOKED_UP,
+        /** The main thread picked up the final platform call. */
+        ON_MAIN,
+        /** The platform action (startActivity, SmsManager, ...) was fired. */
+        FIRED,
+        /** Result known. */
+        COMPLETED
+    }
+
+    private static final Checkpoint[] CHECKPOINTS = Checkpoint.values();
+
+    private final long[] nanos = new long[CHECKPOINTS.length];
+    private final long receivedAtMs;
+    private volatile long sentAtMs;
+
+    private CommandTrace(long receivedNanos, long receivedAtMs) {
+        this.receivedAtMs = receivedAtMs;
+        nanos[Checkpoint.RECEIVED.ordinal()] = receivedNanos;
+    }
+
+    /** Starts a trace for a frame received now. */
+    public static CommandTrace start() {
+        return new CommandTrace(System.nanoTime(), System.currentTimeMillis());
+    }
+
+    public void mark(Checkpoint checkpoint) {
+        synchronized (nanos) {
+            nanos[checkpoint.ordinal()] = System.nanoTime();
+        }
+    }
+
+    public boolean has(Checkpoint checkpoint) {
+        synchronized (nanos) {
+            return nanos[checkpoint.ordinal()] != 0;
+        }
+    }
+
+    /** Nanoseconds from {@code from} to {@code to}, or -1 if either was not reached. */
+    public long elapsedNanos(Checkpoint from, Checkpoint to) {
+        synchronized (nanos) {
+            long start = nanos[from.ordinal()];
+            long end = nanos[to.ordinal()];
+            return start == 0 || end == 0 ? -1 : end - start;
+        }
+    }
+
+    /**
+     * Nanoseconds spent reaching {@code checkpoint} from the closest earlier checkpoint that was
+     * reached, or -1 if {@code checkpoint} itself was not.
+     */
+    public long stageNanos(Checkpoint checkpoint) {
+        synchronized (nanos) {
+            int index = checkpoint.ordinal();
+            if (index == 0 || nanos[index] == 0) {
+                return -1;
+            }
+            for (int previous = index - 1; previous >= 0; previous--) {
+                if (nanos[previous] != 0) {
+                    return nanos[index] - nanos[previous];
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Wall-clock receive time in epoch milliseconds. */
+    public long getReceivedAtMs() {
+        return receivedAtMs;
+    }
+
+    /** Sender timestamp from the envelope, or 0 if unknown. */
+    public long getSentAtMs() {
+        return sentAtMs;
+    }
+
+    public void setSentAtMs(long sentAtMs) {
+        this.sentAtMs = sentAtMs;
+    }
+}
@@ -2,4 +2,20 @@ package com.example.marcus;
 
 public class Config {
     public static final String WEBSOCKET_SERVER_URI = "ws://192.168.0.106:8765";
-}
\ No newline at end of file
+    // Offer permessage-deflate; messages shorter than the threshold are still sent uncompressed.
+    public static final boolean WEBSOCKET_DEFLATE = true;
+    public static final int WEBSOCKET_DEFLATE_THRESHOLD_BYTES = 512;
+
+    // Outbound messages kept while offline: in memory first, then in an on-disk journal.
+    public static final long OUTBOUND_QUEUE_MEMORY_BYTES = 256 * 1024;
+    public static final long OUTBOUND_QUEUE_JOURNAL_BYTES = 2 * 1024 * 1024;
+    public static final OutboundQueue.BackpressurePolicy OUTBOUND_QUEUE_POLICY =
+            OutboundQueue.BackpressurePolicy.DROP_OLDEST;
+    public static final long OUTBOUND_QUEUE_BLOCK_TIMEOUT_MS = 2000;
+
+    // Apply overlay drags once per display frame; false moves the window on every touch event.
+    public static final boolean OVERLAY_FRAME_ALIGNED_DRAG = true;
+
+    // Deflate push-to-talk audio chunks; speech PCM shrinks little, so off unless bandwidth is tight.
+    public static final boolean AUDIO_STREAM_DEFLATE = false;
+}
@@ -0,0 +1,118 @@
+package com.example.marcus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoding and chunking for bulk contact creation. A {@link CommandEnvelope#TYPE_ADD_CONTACTS}
+ * frame carries {@code {"contacts": [{"name": "Mom", "numbers": ["+919876543210"]}, ...]}}.
+ *
+ * <p>Each contact becomes one raw-contact insert, one name row and one row per number, all applied
+ * in a single provider batch with back-references. Large lists are split into chunks so no batch
+ * holds the provider's transaction for too long; a contact is never split across chunks.
+ */
+public final class ContactBatch {
+
+    public static final int MAX_CONTACTS = 500;
+    public static final int MAX_NUMBERS_PER_CONTACT = 8;
+    /** Operations per applyBatch call; large enough to amortize IPC, small enough to hold the provider lock briefly. */
+    public static final int MAX_OPERATIONS_PER_BATCH = 200;
+
+    private ContactBatch() {
+    }
+
+    /** Provider operations needed to create {@code contact}. */
+    public static int operationCount(Command.AddContact contact) {
+        return 2 + contact.getNumbers().length;
+    }
+
+    /** Reads the contact list from a bulk-add frame's args. */
+    public static Command.AddContacts decode(CommandEnvelope envelope) throws IOException {
+        List<Command.AddContact> contacts = new ArrayList<>();
+        JsonPullParser parser = envelope.openArgs();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (!parser.nextName().equals("contacts")) {
+                parser.skipValue();
+                continue;
+            }
+            parser.beginArray();
+            while (parser.hasNext()) {
+                if (contacts.size() == MAX_CONTACTS) {
+                    throw new JsonPullParser.MalformedJsonException("More than " + MAX_CONTACTS + " contacts");
+                }
+                contacts.add(readContact(parser));
+            }
+            parser.endArray();
+        }
+        parser.endObject();
+        if (contacts.isEmpty()) {
+            throw new JsonPullParser.MalformedJsonException("No contacts to add");
+        }
+        return new Command.AddContacts(contacts);
+    }
+
+    private static Command.AddContact readContact(JsonPullParser parser) throws IOException {
+        String name = null;
+        List<String> numbers = new ArrayList<>();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String field = parser.nextName();
+            if (parser.peek() == JsonPullParser.Token.NULL) {
+                parser.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "name":
+                    name = parser.nextString().trim();
+                    break;
+                case "numbers":
+                    parser.beginArray();
+                    while (parser.hasNext()) {
+                        String number = parser.nextString().trim();
+                        if (!number.isEmpty() && !numbers.contains(number)) {
+                            numbers.add(number);
+                        }
+                    }
+                    parser.endArray();
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
+            }
+        }
+        parser.endObject();
+        if (name == null || name.isEmpty()) {
+            throw new JsonPullParser.MalformedJsonException("Contact has no name");
+        }
+        if (numbers.size() > MAX_NUMBERS_PER_CONTACT) {
+            throw new JsonPullParser.MalformedJsonException("Too many numbers for " + name);
+        }
+        return new Command.AddContact(name, numbers.toArray(new String[0]));
+    }
+
+    /**
+     * Splits {@code contacts} into consecutive chunks of at most {@code maxOperations} provider
+     * operations each, keeping every contact whole.
+     */
+    public static List<List<Command.AddContact>> chunk(List<Command.AddContact> contacts, int maxOperations) {
+        List<List<Command.AddContact>> chunks = new ArrayList<>();
+        List<Command.AddContact> current = new ArrayList<>();
+        int operations = 0;
+        for (Command.AddContact contact : contacts) {
+            int needed = operationCount(contact);
+            if (!current.isEmpty() && operations + needed > maxOperations) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                operations = 0;
+            }
+            current.add(contact);
+            operations += needed;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared contact resolver for the call and SMS commands.
+ *
+ * <p>Loads every phone number once into a {@link ContactIndex} and then refreshes only the
+ * contacts whose {@code CONTACT_LAST_UPDATED_TIMESTAMP} moved past the last seen value, plus
+ * deletions from {@link ContactsContract.DeletedContacts}, whenever a ContentObserver reports a
+ * change. Bursts of change notifications are coalesced into one refresh.
+ */
+public class ContactDirectory {
+
+    private static final String TAG = "ContactDirectory";
+    private static final long REFRESH_DEBOUNCE_MS = 1000;
+    private static ContactDirectory instance;
+
+    private static final String[] PHONE_PROJECTION = new String[]{
+            ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+            ContactsContract.CommonDataKinds.Phone.DISPLAY_NAME,
+            ContactsContract.CommonDataKinds.Phone.NUMBER,
+            ContactsContract.CommonDataKinds.Phone.CONTACT_LAST_UPDATED_TIMESTAMP
+    };
+
+    private final Context context;
+    private final ContentResolver contentResolver;
+    private final ContactIndex index = new ContactIndex();
+    private final Handler workerHandler;
+    private final Runnable refreshRunnable = this::refresh;
+
+    private volatile boolean loaded = false;
+    private boolean started = false;
+    private long updatedHighWaterMark = 0;
+    private long deletedHighWaterMark = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong exactNumbers = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private volatile long lastFullLoadMs = -1;
+    private volatile long lastRefreshMs = -1;
+
+    private final ContentObserver contactsObserver;
+
+    private ContactDirectory(Context context) {
+        this.context = context.getApplicationContext();
+        this.contentResolver = this.context.getContentResolver();
+
+        HandlerThread workerThread = new HandlerThread(TAG);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+
+        contactsObserver = new ContentObserver(workerHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                // Coalesce bursts (e.g. an account sync) into a single incremental refresh.
+                workerHandler.removeCallbacks(refreshRunnable);
+                workerHandler.postDelayed(refreshRunnable, REFRESH_DEBOUNCE_MS);
+            }
+        };
+    }
+
+    public static synchronized ContactDirectory getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactDirectory(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts the background load and change tracking. Returns {@code false} without doing anything
+     * if READ_CONTACTS has not been granted yet; call again once it has.
+     */
+    public synchronized boolean start() {
+        if (started) {
+            return true;
+        }
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CONTACTS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        started = true;
+        contentResolver.registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true, contactsObserver);
+        workerHandler.post(this::ensureLoaded);
+        return true;
+    }
+
+    /**
+     * Starts the directory and blocks until the initial load has finished. Returns {@code false}
+     * right away if READ_CONTACTS has not been granted yet.
+     */
+    public boolean warmUp() {
+        if (!start()) {
+            return false;
+        }
+        ensureLoaded();
+        return true;
+    }
+
+    /**
+     * Resolves a spoken name to a contact. Blocks only if the initial load is still running. A
+     * target that is already a phone number, as the server sends once it has the synced
+     * directory, resolves to itself without a lookup.
+     */
+    public ContactIndex.Contact resolve(String name) {
+        String number = CommandParser.phoneNumberOrNull(name.trim());
+        if (number != null) {
+            exactNumbers.incrementAndGet();
+            return new ContactIndex.Contact(-1, number, new String[]{number});
+        }
+        start();
+        ensureLoaded();
+        ContactIndex.Contact contact = index.find(name);
+        if (contact != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return contact;
+    }
+
+    public String getStatsSummary() {
+        return "contacts=" + index.size()
+                + " hits=" + hits.get()
+                + " misses=" + misses.get()
+                + " exactNumbers=" + exactNumbers.get()
+                + " refreshes=" + refreshes.get()
+                + " fullLoadMs=" + lastFullLoadMs
+                + " lastRefreshMs=" + lastRefreshMs;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            loadAll();
+        }
+    }
+
+    private synchronized void loadAll() {
+        if (loaded) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        long now = System.currentTimeMillis();
+        Map<Long, ContactIndex.Contact> contacts = queryPhones(null, null);
+        index.replaceAll(contacts.values());
+        deletedHighWaterMark = Math.max(deletedHighWaterMark, now);
+        loaded = true;
+        lastFullLoadMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "Loaded " + index.size() + " contacts in " + lastFullLoadMs + " ms");
+    }
+
+    private synchronized void refresh() {
+        if (!loaded) {
+            loadAll();
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+
+        // Contacts touched since the last refresh: drop them, then re-add whatever numbers remain.
+        String since = String.valueOf(updatedHighWaterMark);
+        List<Long> changedIds = new ArrayList<>();
+        Cursor changed = contentResolver.query(ContactsContract.Contacts.CONTENT_URI,
+                new String[]{ContactsContract.Contacts._ID, ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP},
+                ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " > ?", new String[]{since}, null);
+        if (changed != null) {
+            try {
+                while (changed.moveToNext()) {
+                    changedIds.add(changed.getLong(0));
+                    updatedHighWaterMark = Math.max(updatedHighWaterMark, changed.getLong(1));
+                }
+            } finally {
+                changed.close();
+            }
+        }
+        for (long id : changedIds) {
+            index.remove(id);
+        }
+        Map<Long, ContactIndex.Contact> updated = queryPhones(
+                ContactsContract.CommonDataKinds.Phone.CONTACT_LAST_UPDATED_TIMESTAMP + " > ?", new String[]{since});
+        for (ContactIndex.Contact contact : updated.values()) {
+            index.put(contact);
+        }
+
+        // Contacts deleted since the last refresh.
+        int deletedCount = 0;
+        Cursor deleted = contentResolver.query(ContactsContract.DeletedContacts.CONTENT_URI,
+                new String[]{ContactsContract.DeletedContacts.CONTACT_ID,
+                        ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP},
+                ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " > ?",
+                new String[]{String.valueOf(deletedHighWaterMark)}, null);
+        if (deleted != null) {
+            try {
+                while (deleted.moveToNext()) {
+                    index.remove(deleted.getLong(0));
+                    deletedHighWaterMark = Math.max(deletedHighWaterMark, deleted.getLong(1));
+                    deletedCount++;
+                }
+            } finally {
+                deleted.close();
+            }
+        }
+
+        refreshes.incrementAndGet();
+        lastRefreshMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "Refreshed " + changedIds.size() + " changed and " + deletedCount
+                + " deleted contacts in " + lastRefreshMs + " ms");
+    }
+
+    // Groups phone rows by contact and advances the update high-water mark.
+    private Map<Long, ContactIndex.Contact> queryPhones(String selection, String[] selectionArgs) {
+        Map<Long, String> names = new LinkedHashMap<>();
+        Map<Long, List<String>> numbers = new LinkedHashMap<>();
+        Cursor cursor = contentResolver.query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
+                PHONE_PROJECTION, selection, selectionArgs, null);
+        if (cursor == null) {
+            Log.e(TAG, "Cursor is null");
+            return new LinkedHashMap<>();
+        }
+        try {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                String name = cursor.getString(1);
+                String number = cursor.getString(2);
+                updatedHighWaterMark = Math.max(updatedHighWaterMark, cursor.getLong(3));
+                if (name == null || number == null) {
+                    continue;
+                }
+                names.put(id, name);
+                List<String> list = numbers.get(id);
+                if (list == null) {
+                    list = new ArrayList<>(1);
+                    numbers.put(id, list);
+                }
+                list.add(number);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Map<Long, ContactIndex.Contact> contacts = new LinkedHashMap<>();
+        for (Map.Entry<Long, String> e : names.entrySet()) {
+            List<String> list = numbers.get(e.getKey());
+            contacts.put(e.getKey(), new ContactIndex.Contact(e.getKey(), e.getValue(),
+                    list.toArray(new String[0])));
+        }
+        return contacts;
+    }
+}
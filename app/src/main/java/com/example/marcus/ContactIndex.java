@@ -0,0 +1,213 @@
+package com.example.marcus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory name to phone number index for the device contacts.
+ *
+ * <p>Contacts are stored once per contact id with their numbers packed into an array, plus maps
+ * from the space-free normalized name and from {@link PhoneticEncoder} keys (whole name and each
+ * word) to contacts. Keys are computed once when a contact is indexed, so a spoken name that only
+ * sounds like the stored one costs a hash lookup and a short edit-distance rescoring. All methods
+ * are synchronized; lookups are short and never touch the ContactsProvider.
+ */
+public final class ContactIndex {
+
+    public static final class Contact {
+        private final long id;
+        private final String displayName;
+        private final String normalizedName;
+        private final String compactName;
+        private final String[] nameTokens;
+        private final String[] phoneticKeys;
+        private final String[] numbers;
+
+        public Contact(long id, String displayName, String[] numbers) {
+            this.id = id;
+            this.displayName = displayName;
+            this.normalizedName = NameNormalizer.normalize(displayName);
+            this.compactName = normalizedName.replace(" ", "");
+            this.nameTokens = normalizedName.isEmpty() ? new String[0] : normalizedName.split(" ");
+            this.phoneticKeys = phoneticKeys(normalizedName, nameTokens);
+            this.numbers = numbers;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getNormalizedName() {
+            return normalizedName;
+        }
+
+        public String[] getNumbers() {
+            return numbers.clone();
+        }
+
+        public String getPrimaryNumber() {
+            return numbers.length > 0 ? numbers[0] : null;
+        }
+
+        @Override
+        public String toString() {
+            return displayName + " (" + numbers.length + " numbers)";
+        }
+    }
+
+    /** Minimum edit similarity for a phonetic candidate to be accepted. */
+    private static final double MIN_PHONETIC_SIMILARITY = 0.5;
+
+    private final Map<Long, Contact> byId = new HashMap<>();
+    private final Map<String, List<Contact>> byName = new HashMap<>();
+    private final Map<String, List<Contact>> byPhonetic = new HashMap<>();
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /** Replaces the whole index, as after a full reload. */
+    public synchronized void replaceAll(Collection<Contact> contacts) {
+        byId.clear();
+        byName.clear();
+        byPhonetic.clear();
+        for (Contact contact : contacts) {
+            putLocked(contact);
+        }
+    }
+
+    /** Adds or replaces a single contact. */
+    public synchronized void put(Contact contact) {
+        removeLocked(contact.id);
+        putLocked(contact);
+    }
+
+    public synchronized void remove(long contactId) {
+        removeLocked(contactId);
+    }
+
+    public synchronized Contact get(long contactId) {
+        return byId.get(contactId);
+    }
+
+    /**
+     * Finds the contact for a spoken name: an exact normalized match if there is one, then the
+     * shortest name containing it (which mirrors the old {@code LIKE '%name%'} query), and finally
+     * the closest name that sounds the same.
+     */
+    public synchronized Contact find(String name) {
+        String normalized = NameNormalizer.normalize(name);
+        String key = normalized.replace(" ", "");
+        if (key.isEmpty()) {
+            return null;
+        }
+        List<Contact> exact = byName.get(key);
+        if (exact != null) {
+            return exact.get(0);
+        }
+        Contact best = null;
+        for (Contact contact : byId.values()) {
+            if (contact.compactName.contains(key) && isBetter(contact, best)) {
+                best = contact;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        return findPhonetic(normalized, key);
+    }
+
+    private Contact findPhonetic(String normalized, String compactQuery) {
+        List<Contact> candidates = byPhonetic.get(PhoneticEncoder.encode(normalized).replace(" ", ""));
+        if (candidates == null) {
+            return null;
+        }
+        Contact best = null;
+        double bestScore = MIN_PHONETIC_SIMILARITY;
+        for (Contact contact : candidates) {
+            // Compare against the whole name and each word, since "Sonika" may mean "Sanika Sarode".
+            double score = EditDistance.similarity(compactQuery, contact.compactName);
+            for (String token : contact.nameTokens) {
+                score = Math.max(score, EditDistance.similarity(compactQuery, token));
+            }
+            if (score > bestScore || score == bestScore && best != null && isBetter(contact, best)) {
+                best = contact;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    public synchronized List<Contact> snapshot() {
+        return new ArrayList<>(byId.values());
+    }
+
+    private static boolean isBetter(Contact candidate, Contact best) {
+        if (best == null) {
+            return true;
+        }
+        int byLength = Integer.compare(candidate.compactName.length(), best.compactName.length());
+        return byLength != 0 ? byLength < 0 : candidate.id < best.id;
+    }
+
+    // The space-free key of the whole name followed by the key of each word, without duplicates.
+    private static String[] phoneticKeys(String normalizedName, String[] tokens) {
+        List<String> keys = new ArrayList<>(tokens.length + 1);
+        String whole = PhoneticEncoder.encode(normalizedName).replace(" ", "");
+        if (!whole.isEmpty()) {
+            keys.add(whole);
+        }
+        for (String token : tokens) {
+            String key = PhoneticEncoder.encodeWord(token);
+            if (!key.isEmpty() && !keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    private void putLocked(Contact contact) {
+        byId.put(contact.id, contact);
+        addTo(byName, contact.compactName, contact);
+        for (String key : contact.phoneticKeys) {
+            addTo(byPhonetic, key, contact);
+        }
+    }
+
+    private void removeLocked(long contactId) {
+        Contact removed = byId.remove(contactId);
+        if (removed == null) {
+            return;
+        }
+        removeFrom(byName, removed.compactName, removed);
+        for (String key : removed.phoneticKeys) {
+            removeFrom(byPhonetic, key, removed);
+        }
+    }
+
+    private static void addTo(Map<String, List<Contact>> map, String key, Contact contact) {
+        List<Contact> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            map.put(key, list);
+        }
+        list.add(contact);
+    }
+
+    private static void removeFrom(Map<String, List<Contact>> map, String key, Contact contact) {
+        List<Contact> list = map.get(key);
+        if (list != null) {
+            list.remove(contact);
+            if (list.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+}
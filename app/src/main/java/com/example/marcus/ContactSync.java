@@ -0,0 +1,320 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mirrors the contact directory to the server, so it can resolve names itself and send exact
+ * numbers. The first sync after install (or after the server asks for one) sends every contact
+ * with a phone number; later syncs, on each connect and after contacts change, send only contacts
+ * whose {@code CONTACT_LAST_UPDATED_TIMESTAMP} is past the persisted high-water mark, plus
+ * deletions from {@link ContactsContract.DeletedContacts}.
+ *
+ * <p>Contacts are read in keyset-paged queries of {@link #PAGE_SIZE} and each page goes out as
+ * one {@link ContactSyncBatcher} chunk, so memory stays flat however large the directory is. The
+ * high-water marks only move once the server acknowledges a sync, since a queued chunk can still
+ * be dropped or lost with the connection; until then every sync starts from the old marks and so
+ * repeats whatever is unconfirmed.
+ */
+public class ContactSync {
+
+    private static final String TAG = "ContactSync";
+    private static final String PREFS_NAME = "contact_sync";
+    private static final String KEY_UPDATED_HIGH_WATER = "updated_high_water";
+    private static final String KEY_DELETED_HIGH_WATER = "deleted_high_water";
+    private static final int PAGE_SIZE = 200;
+    private static final long CHANGE_DEBOUNCE_MS = 2000;
+    // Syncs sent but not yet acknowledged; older ones are forgotten and resent by a later sync.
+    private static final int MAX_UNACKED_SYNCS = 4;
+    private static ContactSync instance;
+
+    private static final String[] CONTACT_PROJECTION = new String[]{
+            ContactsContract.Contacts._ID,
+            ContactsContract.Contacts.DISPLAY_NAME,
+            ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP
+    };
+
+    private final Context context;
+    private final ContentResolver contentResolver;
+    private final SharedPreferences prefs;
+    private final Handler workerHandler;
+    private final Runnable syncRunnable = this::sync;
+    private final ContentObserver contactsObserver;
+    private WebSocketClientManager webSocketClientManager;
+    private EventBus.Subscription stateSubscription;
+    private boolean observing = false;
+    // Sync ids (each sync's start time) queued in full and awaiting the server's ack; worker thread only.
+    private final ArrayDeque<Long> unackedSyncs = new ArrayDeque<>();
+
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong acked = new AtomicLong();
+    private final AtomicLong aborted = new AtomicLong();
+    private volatile String lastSummary = "none";
+
+    private ContactSync(Context context) {
+        this.context = context.getApplicationContext();
+        this.contentResolver = this.context.getContentResolver();
+        this.prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        HandlerThread workerThread = new HandlerThread(TAG);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+
+        contactsObserver = new ContentObserver(workerHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                // An account sync touches many contacts at once; send them as one delta.
+                workerHandler.removeCallbacks(syncRunnable);
+                workerHandler.postDelayed(syncRunnable, CHANGE_DEBOUNCE_MS);
+            }
+        };
+    }
+
+    public static synchronized ContactSync getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactSync(context);
+        }
+        return instance;
+    }
+
+    /** Syncs every time {@code manager} connects, and after contacts change while connected. */
+    public synchronized void start(WebSocketClientManager manager) {
+        if (stateSubscription != null) {
+            return;
+        }
+        webSocketClientManager = manager;
+        stateSubscription = manager.subscribe(WebSocketClientManager.CONNECTION_STATE, workerHandler::post,
+                state -> {
+                    if (state == WebSocketClientManager.ConnectionState.CONNECTED) {
+                        requestSync();
+                    }
+                });
+    }
+
+    public synchronized void stop() {
+        if (stateSubscription != null) {
+            stateSubscription.cancel();
+            stateSubscription = null;
+        }
+        workerHandler.post(() -> {
+            workerHandler.removeCallbacks(syncRunnable);
+            if (observing) {
+                contentResolver.unregisterContentObserver(contactsObserver);
+                observing = false;
+            }
+        });
+    }
+
+    /** Sends whatever changed since the last completed sync, e.g. once READ_CONTACTS is granted. */
+    public void requestSync() {
+        workerHandler.removeCallbacks(syncRunnable);
+        workerHandler.post(syncRunnable);
+    }
+
+    /** Forgets the high-water marks and resends the whole directory, for a server that lost its copy. */
+    public void requestFullSync() {
+        workerHandler.post(() -> {
+            // An ack for an older sync must not bring the marks back.
+            unackedSyncs.clear();
+            prefs.edit().clear().apply();
+        });
+        requestSync();
+    }
+
+    /** Moves the high-water marks up to sync {@code syncId}, which the server received whole. */
+    public void onAcknowledged(long syncId) {
+        workerHandler.post(() -> {
+            if (!unackedSyncs.contains(syncId)) {
+                Log.w(TAG, "Ignoring ack for unknown sync " + syncId);
+                return;
+            }
+            // Ids are start times: a later sync covers everything an earlier one sent.
+            while (!unackedSyncs.isEmpty() && unackedSyncs.peekFirst() <= syncId) {
+                unackedSyncs.pollFirst();
+            }
+            prefs.edit()
+                    .putLong(KEY_UPDATED_HIGH_WATER, Math.max(prefs.getLong(KEY_UPDATED_HIGH_WATER, 0), syncId))
+                    .putLong(KEY_DELETED_HIGH_WATER, Math.max(prefs.getLong(KEY_DELETED_HIGH_WATER, 0), syncId))
+                    .apply();
+            acked.incrementAndGet();
+            Log.d(TAG, "Sync " + syncId + " acknowledged");
+        });
+    }
+
+    public String getStatsSummary() {
+        return "syncs=" + syncs.get() + " acked=" + acked.get() + " aborted=" + aborted.get()
+                + " last: " + lastSummary;
+    }
+
+    private boolean isConnected() {
+        return webSocketClientManager != null
+                && webSocketClientManager.getConnectionState() == WebSocketClientManager.ConnectionState.CONNECTED;
+    }
+
+    private void sync() {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CONTACTS)
+                != PackageManager.PERMISSION_GRANTED || !isConnected()) {
+            return;
+        }
+        if (!observing) {
+            contentResolver.registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true, contactsObserver);
+            observing = true;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        // Anything touched from here on is picked up by the next sync, even if this one misses it.
+        long syncStartMs = System.currentTimeMillis();
+        boolean full = !prefs.contains(KEY_UPDATED_HIGH_WATER);
+        long updatedHighWater = prefs.getLong(KEY_UPDATED_HIGH_WATER, 0);
+        long deletedHighWater = prefs.getLong(KEY_DELETED_HIGH_WATER, 0);
+
+        ContactSyncBatcher batcher = new ContactSyncBatcher(
+                frame -> isConnected() && webSocketClientManager.send(frame), syncStartMs, full, PAGE_SIZE);
+        boolean complete = sendContacts(batcher, full, updatedHighWater)
+                && (full || sendDeletes(batcher, deletedHighWater))
+                && batcher.finish();
+
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        lastSummary = (full ? ContactSyncBatcher.MODE_FULL : ContactSyncBatcher.MODE_DELTA)
+                + " upserts=" + batcher.getUpserts() + " deletes=" + batcher.getDeletes()
+                + " chunks=" + batcher.getChunksSent() + " chars=" + batcher.getBytesSent()
+                + " ms=" + elapsed + (complete ? "" : " (aborted)");
+        if (!complete) {
+            aborted.incrementAndGet();
+            Log.w(TAG, "Sync aborted, will retry on reconnect: " + lastSummary);
+            return;
+        }
+        // Queued is not delivered; the marks wait for the server's ack.
+        unackedSyncs.addLast(syncStartMs);
+        if (unackedSyncs.size() > MAX_UNACKED_SYNCS) {
+            unackedSyncs.pollFirst();
+        }
+        syncs.incrementAndGet();
+        Log.d(TAG, "Sent " + lastSummary);
+    }
+
+    // Pages through contacts by _ID; a full sync skips contacts without numbers, a delta cannot,
+    // since a contact whose last number was removed still has to reach the server.
+    private boolean sendContacts(ContactSyncBatcher batcher, boolean full, long updatedHighWater) {
+        Uri pageUri = ContactsContract.Contacts.CONTENT_URI.buildUpon()
+                .appendQueryParameter(ContactsContract.LIMIT_PARAM_KEY, String.valueOf(PAGE_SIZE))
+                .build();
+        String selection = ContactsContract.Contacts._ID + " > ? AND " + (full
+                ? ContactsContract.Contacts.HAS_PHONE_NUMBER + " = 1"
+                : ContactsContract.Contacts.CONTACT_LAST_UPDATED_TIMESTAMP + " > " + updatedHighWater);
+        long lastId = -1;
+        List<Long> ids = new ArrayList<>(PAGE_SIZE);
+        List<String> names = new ArrayList<>(PAGE_SIZE);
+        List<Long> updated = new ArrayList<>(PAGE_SIZE);
+        while (true) {
+            ids.clear();
+            names.clear();
+            updated.clear();
+            Cursor cursor = contentResolver.query(pageUri, CONTACT_PROJECTION, selection,
+                    new String[]{String.valueOf(lastId)}, ContactsContract.Contacts._ID + " ASC");
+            if (cursor == null) {
+                Log.e(TAG, "Cursor is null");
+                return false;
+            }
+            try {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                    names.add(cursor.getString(1));
+                    updated.add(cursor.getLong(2));
+                }
+            } finally {
+                cursor.close();
+            }
+            if (ids.isEmpty()) {
+                return true;
+            }
+            Map<Long, List<String>> numbers = queryNumbers(ids);
+            for (int i = 0; i < ids.size(); i++) {
+                List<String> list = numbers.get(ids.get(i));
+                String[] array = list == null ? new String[0] : list.toArray(new String[0]);
+                if (!batcher.upsert(ids.get(i), names.get(i), array, updated.get(i))) {
+                    return false;
+                }
+            }
+            lastId = ids.get(ids.size() - 1);
+            if (ids.size() < PAGE_SIZE) {
+                return true;
+            }
+        }
+    }
+
+    private Map<Long, List<String>> queryNumbers(List<Long> contactIds) {
+        Map<Long, List<String>> numbers = new LinkedHashMap<>();
+        String[] args = new String[contactIds.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = String.valueOf(contactIds.get(i));
+        }
+        String placeholders = TextUtils.join(",", Collections.nCopies(args.length, "?"));
+        Cursor cursor = contentResolver.query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI,
+                new String[]{ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+                        ContactsContract.CommonDataKinds.Phone.NUMBER},
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " IN (" + placeholders + ")", args, null);
+        if (cursor == null) {
+            return numbers;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String number = cursor.getString(1);
+                if (number == null) {
+                    continue;
+                }
+                List<String> list = numbers.get(cursor.getLong(0));
+                if (list == null) {
+                    list = new ArrayList<>(1);
+                    numbers.put(cursor.getLong(0), list);
+                }
+                list.add(number);
+            }
+        } finally {
+            cursor.close();
+        }
+        return numbers;
+    }
+
+    private boolean sendDeletes(ContactSyncBatcher batcher, long deletedHighWater) {
+        Cursor deleted = contentResolver.query(ContactsContract.DeletedContacts.CONTENT_URI,
+                new String[]{ContactsContract.DeletedContacts.CONTACT_ID},
+                ContactsContract.DeletedContacts.CONTACT_DELETED_TIMESTAMP + " > ?",
+                new String[]{String.valueOf(deletedHighWater)}, null);
+        if (deleted == null) {
+            return true;
+        }
+        try {
+            while (deleted.moveToNext()) {
+                if (!batcher.delete(deleted.getLong(0))) {
+                    return false;
+                }
+            }
+        } finally {
+            deleted.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.marcus;
+
+/**
+ * Packs one contact sync into {@link CommandEnvelope#TYPE_CONTACT_SYNC} frames of at most
+ * {@code maxEntriesPerChunk} entries each, so a sync of any size holds only one chunk in memory:
+ *
+ * <pre>
+ * {"sync": 1700000000000, "mode": "delta", "seq": 0, "last": false,
+ *  "upserts": [{"id": 42, "name": "Mom", "numbers": ["+15551234"], "updated": 1700000000000}],
+ *  "deletes": [17]}
+ * </pre>
+ *
+ * An upsert replaces everything the server holds for that contact; one without numbers means the
+ * contact can no longer be called. A {@code full} sync replaces the server's whole copy once its
+ * last chunk arrives; chunks of a sync that never completes should be discarded. The last chunk
+ * also carries the totals, so the server can check nothing was lost, and only then acknowledges
+ * the sync with a {@code {"ack": <sync>}} frame of the same type.
+ */
+public final class ContactSyncBatcher {
+
+    public static final String MODE_FULL = "full";
+    public static final String MODE_DELTA = "delta";
+
+    /** Where chunks go; returns {@code false} if the frame could not be queued. */
+    public interface Sink {
+        boolean send(String frame);
+    }
+
+    private final Sink sink;
+    private final long syncId;
+    private final boolean full;
+    private final int maxEntriesPerChunk;
+    private JsonStreamWriter upserts;
+    private JsonStreamWriter deletes;
+    private int pending;
+    private int sequence;
+    private int totalUpserts;
+    private int totalDeletes;
+    private long bytesSent;
+    private boolean failed;
+    private boolean finished;
+
+    public ContactSyncBatcher(Sink sink, long syncId, boolean full, int maxEntriesPerChunk) {
+        if (maxEntriesPerChunk <= 0) {
+            throw new IllegalArgumentException("maxEntriesPerChunk must be positive");
+        }
+        this.sink = sink;
+        this.syncId = syncId;
+        this.full = full;
+        this.maxEntriesPerChunk = maxEntriesPerChunk;
+        startChunk();
+    }
+
+    /** Adds a new or changed contact. Returns {@code false} once any chunk has been refused. */
+    public boolean upsert(long id, String name, String[] numbers, long updatedMs) {
+        if (failed) {
+            return false;
+        }
+        upserts.beginObject()
+                .name("id").value(id)
+                .name("name").value(name)
+                .name("numbers").beginArray();
+        for (String number : numbers) {
+            upserts.value(number);
+        }
+        upserts.endArray()
+                .name("updated").value(updatedMs)
+                .endObject();
+        totalUpserts++;
+        return added();
+    }
+
+    /** Adds a deleted contact. Returns {@code false} once any chunk has been refused. */
+    public boolean delete(long id) {
+        if (failed) {
+            return false;
+        }
+        deletes.value(id);
+        totalDeletes++;
+        return added();
+    }
+
+    /**
+     * Sends the last chunk, possibly empty. Returns {@code true} only if every chunk of the sync
+     * was accepted, which is when the caller may persist its high-water marks.
+     */
+    public boolean finish() {
+        if (!finished && !failed) {
+            finished = true;
+            sendChunk(true);
+        }
+        return !failed;
+    }
+
+    private boolean added() {
+        if (++pending >= maxEntriesPerChunk) {
+            sendChunk(false);
+        }
+        return !failed;
+    }
+
+    private void sendChunk(boolean last) {
+        JsonStreamWriter args = new JsonStreamWriter(new StringBuilder(256 + 64 * pending));
+        args.beginObject()
+                .name("sync").value(syncId)
+                .name("mode").value(full ? MODE_FULL : MODE_DELTA)
+                .name("seq").value(sequence++)
+                .name("last").value(last)
+                .name("upserts").rawValue(upserts.endArray().toString())
+                .name("deletes").rawValue(deletes.endArray().toString());
+        if (last) {
+            args.name("totalUpserts").value(totalUpserts)
+                    .name("totalDeletes").value(totalDeletes);
+        }
+        args.endObject();
+        String frame = CommandEnvelope.encode(null, CommandEnvelope.TYPE_CONTACT_SYNC,
+                System.currentTimeMillis(), args.toString());
+        if (sink.send(frame)) {
+            bytesSent += frame.length();
+        } else {
+            failed = true;
+        }
+        startChunk();
+    }
+
+    private void startChunk() {
+        upserts = new JsonStreamWriter().beginArray();
+        deletes = new JsonStreamWriter().beginArray();
+        pending = 0;
+    }
+
+    public long getSyncId() {
+        return syncId;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public int getChunksSent() {
+        return sequence;
+    }
+
+    public int getUpserts() {
+        return totalUpserts;
+    }
+
+    public int getDeletes() {
+        return totalDeletes;
+    }
+
+    /** Frame characters handed to the sink, before any compression on the wire. */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+}
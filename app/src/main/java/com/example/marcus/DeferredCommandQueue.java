@@ -0,0 +1,120 @@
+package com.example.marcus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Commands parked until a runtime permission is answered, one FIFO queue per permission.
+ *
+ * <p>Every command that arrives while a prompt is up is kept rather than replacing the previous
+ * one; when the permission is answered its whole queue is handed back in arrival order. Entries
+ * older than the time-to-live are expired so a prompt that is never answered does not hold
+ * commands forever, and the total size is bounded.
+ */
+public final class DeferredCommandQueue<T> {
+
+    /** Outcome of {@link #add}. */
+    public enum AddResult {
+        /** Queued and nothing else is waiting on this permission yet, so a prompt is needed. */
+        FIRST,
+        /** Queued behind commands already waiting on this permission. */
+        QUEUED,
+        /** The queue is full. */
+        REJECTED
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final long queuedAtMs;
+
+        Entry(T item, long queuedAtMs) {
+            this.item = item;
+            this.queuedAtMs = queuedAtMs;
+        }
+    }
+
+    private final Map<String, ArrayDeque<Entry<T>>> byPermission = new HashMap<>();
+    private final int capacity;
+    private final long ttlMs;
+    private int size;
+
+    public DeferredCommandQueue(int capacity, long ttlMs) {
+        if (capacity <= 0 || ttlMs <= 0) {
+            throw new IllegalArgumentException("Invalid deferred queue limits");
+        }
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+    }
+
+    public synchronized AddResult add(String permission, T item, long nowMs) {
+        if (size >= capacity) {
+            return AddResult.REJECTED;
+        }
+        ArrayDeque<Entry<T>> queue = byPermission.get(permission);
+        boolean first = queue == null;
+        if (first) {
+            queue = new ArrayDeque<>();
+            byPermission.put(permission, queue);
+        }
+        queue.addLast(new Entry<>(item, nowMs));
+        size++;
+        return first ? AddResult.FIRST : AddResult.QUEUED;
+    }
+
+    /**
+     * Removes and returns everything waiting on {@code permission}, oldest first. Entries that
+     * outlived the time-to-live are left for {@link #expire} instead.
+     */
+    public synchronized List<T> drain(String permission, long nowMs) {
+        ArrayDeque<Entry<T>> queue = byPermission.get(permission);
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+        List<T> items = new ArrayList<>(queue.size());
+        for (Iterator<Entry<T>> it = queue.iterator(); it.hasNext(); ) {
+            Entry<T> entry = it.next();
+            if (nowMs - entry.queuedAtMs < ttlMs) {
+                items.add(entry.item);
+                it.remove();
+                size--;
+            }
+        }
+        if (queue.isEmpty()) {
+            byPermission.remove(permission);
+        }
+        return items;
+    }
+
+    /** Removes and returns the entries that outlived the time-to-live, oldest first per permission. */
+    public synchronized List<T> expire(long nowMs) {
+        List<T> expired = new ArrayList<>();
+        for (Iterator<ArrayDeque<Entry<T>>> queues = byPermission.values().iterator(); queues.hasNext(); ) {
+            ArrayDeque<Entry<T>> queue = queues.next();
+            while (!queue.isEmpty() && nowMs - queue.peekFirst().queuedAtMs >= ttlMs) {
+                expired.add(queue.pollFirst().item);
+                size--;
+            }
+            if (queue.isEmpty()) {
+                queues.remove();
+            }
+        }
+        return expired;
+    }
+
+    public synchronized boolean isWaiting(String permission) {
+        return byPermission.containsKey(permission);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+}
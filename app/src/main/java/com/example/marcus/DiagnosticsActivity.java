@@ -0,0 +1,77 @@
+package com.example.marcus;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.Locale;
+
+/**
+ * Shows per-stage command latency percentiles and lets the user send them to the server.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    private TextView diagnosticsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        diagnosticsTextView = findViewById(R.id.diagnosticsTextView);
+        Button refreshButton = findViewById(R.id.refreshButton);
+        Button exportButton = findViewById(R.id.exportButton);
+        Button resetButton = findViewById(R.id.resetButton);
+
+        refreshButton.setOnClickListener(v -> refresh());
+
+        exportButton.setOnClickListener(v -> {
+            String frame = CommandEnvelope.encode(null, CommandEnvelope.TYPE_DIAGNOSTICS,
+                    System.currentTimeMillis(), CommandMetrics.getInstance().toJson());
+            boolean queued = WebSocketClientManager.getInstance().send(frame);
+            Toast.makeText(this, queued ? "Diagnostics queued for upload" : "Upload queue is full",
+                    Toast.LENGTH_SHORT).show();
+        });
+
+        resetButton.setOnClickListener(v -> {
+            CommandMetrics.getInstance().reset();
+            WebSocketClientManager.getInstance().getCompressionStats().reset();
+            FloatingService.getDragStats(false).reset();
+            FloatingService.getDragStats(true).reset();
+            refresh();
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        refresh();
+    }
+
+    private void refresh() {
+        String text = "Command latency (ms)\n\n"
+                + CommandMetrics.getInstance().formatTable()
+                + "\n\nConnection: " + WebSocketClientManager.getInstance().getConnectionState()
+                + "\nCompression: " + WebSocketClientManager.getInstance().getCompressionStats().format()
+                + "\n\nContacts: " + ContactDirectory.getInstance(this).getStatsSummary()
+                + "\nContact sync: " + ContactSync.getInstance(this).getStatsSummary()
+                + "\nApp catalog sync: " + AppCatalogSync.getInstance(this).getStatsSummary()
+                + "\n\nStartup: " + formatStartup()
+                + "\n\nOverlay drag, per event: " + FloatingService.getDragStats(false).format()
+                + "\nOverlay drag, per frame: " + FloatingService.getDragStats(true).format();
+        diagnosticsTextView.setText(text);
+    }
+
+    private static String formatStartup() {
+        LatencyHistogram timeToReady = StartupOrchestrator.getTimeToReady();
+        StartupOrchestrator.Trace trace = StartupOrchestrator.getLastTrace();
+        if (trace == null) {
+            return "no launch recorded";
+        }
+        return String.format(Locale.ROOT, "launches=%d p50=%.1f max=%.1f ms\nLast %s",
+                timeToReady.getCount(), timeToReady.getPercentile(50) / 1000.0,
+                timeToReady.getMax() / 1000.0, trace.format());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.marcus;
+
+/**
+ * A damped spring along one axis, stepped once per display frame. Used to carry the overlay bubble
+ * from where it was released to the nearest screen edge, keeping the fling velocity so the motion
+ * continues smoothly instead of jumping. Holds only primitives, so stepping never allocates.
+ */
+public final class EdgeSnapSpring {
+
+    private static final double MAX_STEP_SECONDS = 1.0 / 60;
+    private static final double REST_DISTANCE = 0.5;
+    private static final double REST_VELOCITY = 20;
+
+    private final double stiffness;
+    private final double damping;
+    private double position;
+    private double velocity;
+    private double target;
+    private boolean running;
+
+    /**
+     * @param stiffness    spring constant per unit mass, in 1/s^2
+     * @param dampingRatio 1 is critically damped; below 1 overshoots slightly
+     */
+    public EdgeSnapSpring(double stiffness, double dampingRatio) {
+        this.stiffness = stiffness;
+        this.damping = 2 * dampingRatio * Math.sqrt(stiffness);
+    }
+
+    public void start(double position, double velocity, double target) {
+        this.position = position;
+        this.velocity = velocity;
+        this.target = target;
+        this.running = true;
+    }
+
+    public void cancel() {
+        running = false;
+    }
+
+    /**
+     * Advances by {@code seconds}, split into small steps so a long frame stays stable. Returns
+     * true while the spring is still moving.
+     */
+    public boolean step(double seconds) {
+        if (!running) {
+            return false;
+        }
+        double remaining = Math.max(0, seconds);
+        while (remaining > 0) {
+            double dt = Math.min(remaining, MAX_STEP_SECONDS);
+            // Semi-implicit Euler: update velocity first, then position with the new velocity.
+            velocity += (-stiffness * (position - target) - damping * velocity) * dt;
+            position += velocity * dt;
+            remaining -= dt;
+        }
+        if (Math.abs(position - target) < REST_DISTANCE && Math.abs(velocity) < REST_VELOCITY) {
+            position = target;
+            velocity = 0;
+            running = false;
+        }
+        return running;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public double getPosition() {
+        return position;
+    }
+
+    public double getTarget() {
+        return target;
+    }
+
+    /**
+     * The edge a bubble of {@code width} at {@code x} should settle on, on a screen {@code screenWidth}
+     * wide. A fling counts for where it would carry the bubble over the next {@code projectSeconds}.
+     */
+    public static int nearestEdge(int x, int width, int screenWidth, double velocity, double projectSeconds) {
+        double projectedCenter = x + width / 2.0 + velocity * projectSeconds;
+        return projectedCenter < screenWidth / 2.0 ? 0 : Math.max(0, screenWidth - width);
+    }
+}
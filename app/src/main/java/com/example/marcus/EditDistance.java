@@ -0,0 +1,47 @@
+package com.example.marcus;
+
+/**
+ * Levenshtein distance helpers shared by the app and contact matchers.
+ */
+public final class EditDistance {
+
+    private EditDistance() {
+    }
+
+    public static int levenshtein(CharSequence a, CharSequence b) {
+        int n = a.length();
+        int m = b.length();
+        if (n == 0) {
+            return m;
+        }
+        if (m == 0) {
+            return n;
+        }
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    /** Returns 1.0 for identical strings down to 0.0 for completely different ones. */
+    public static double similarity(CharSequence a, CharSequence b) {
+        int longest = Math.max(a.length(), b.length());
+        if (longest == 0) {
+            return 1.0;
+        }
+        return 1.0 - (double) levenshtein(a, b) / longest;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.content.Context;
+import android.telecom.TelecomManager;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+
+/** Hangs up the current call. */
+class EndCallHandler implements CommandHandler {
+
+    private static final String TAG = "EndCallHandler";
+
+    private final AssistantService service;
+
+    EndCallHandler(AssistantService service) {
+        this.service = service;
+    }
+
+    @Override
+    public CommandResult handle(Command command, CommandTrace trace) {
+        // Check if permissions are granted
+        if (!service.hasPermission(Manifest.permission.ANSWER_PHONE_CALLS)) {
+            return service.requestPermission(Manifest.permission.ANSWER_PHONE_CALLS,
+                    "Call control permission is required to end a call.");
+        }
+
+        TelecomManager telecomManager = (TelecomManager) service.getSystemService(Context.TELECOM_SERVICE);
+        if (telecomManager != null) {
+            try {
+                Method endCallMethod = telecomManager.getClass().getDeclaredMethod("endCall");
+                endCallMethod.setAccessible(true);
+                endCallMethod.invoke(telecomManager);
+                trace.mark(CommandTrace.Checkpoint.FIRED);
+                Log.d(TAG, "Call ended successfully.");
+                return CommandResult.ok("Call ended");
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to end call.", e);
+                service.showNotification(NotificationDispatcher.Category.CALL, "Failed to end call.");
+                return CommandResult.failed("Failed to end call");
+            }
+        } else {
+            Log.e(TAG, "TelecomManager is null.");
+            service.showNotification(NotificationDispatcher.Category.CALL, "Failed to end call.");
+            return CommandResult.failed("Failed to end call");
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.marcus;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe publish/subscribe registry with typed topics.
+ *
+ * <p>Subscriber lists are copy-on-write, so publishing to a regular topic never locks and
+ * subscribers may come and go while events are delivered. Every subscriber names the
+ * {@link Executor} its events are delivered on: publishing only hands the event to that executor,
+ * so a slow subscriber holds up its own executor rather than the publishing thread or other
+ * subscribers. {@link #DIRECT} delivers on the publishing thread and is only meant for subscribers
+ * that return immediately.
+ */
+public final class EventBus {
+
+    private static final String TAG = "EventBus";
+
+    /** Delivers on the publishing thread. */
+    public static final Executor DIRECT = Runnable::run;
+
+    /**
+     * A typed topic. Sticky topics remember their last event and replay it to new subscribers,
+     * which suits state such as the connection status.
+     */
+    public static final class Topic<T> {
+        private final String name;
+        private final boolean sticky;
+
+        private Topic(String name, boolean sticky) {
+            this.name = name;
+            this.sticky = sticky;
+        }
+
+        public static <T> Topic<T> of(String name) {
+            return new Topic<>(name, false);
+        }
+
+        public static <T> Topic<T> sticky(String name) {
+            return new Topic<>(name, true);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public interface Subscriber<T> {
+        void onEvent(T event);
+    }
+
+    /** Handle returned by {@link #subscribe}; cancelling it stops further deliveries. */
+    public interface Subscription {
+        void cancel();
+    }
+
+    private static final class Registration<T> implements Subscription {
+        private final List<Registration<?>> owner;
+        private final Executor executor;
+        private final Subscriber<? super T> subscriber;
+        private volatile boolean cancelled;
+
+        Registration(List<Registration<?>> owner, Executor executor, Subscriber<? super T> subscriber) {
+            this.owner = owner;
+            this.executor = executor;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            owner.remove(this);
+        }
+    }
+
+    private final ConcurrentMap<Topic<?>, List<Registration<?>>> registrations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Topic<?>, Object> lastEvents = new ConcurrentHashMap<>();
+    private final AtomicLong failedDeliveries = new AtomicLong();
+
+    public <T> Subscription subscribe(Topic<T> topic, Executor executor, Subscriber<? super T> subscriber) {
+        List<Registration<?>> list = registrations.get(topic);
+        if (list == null) {
+            List<Registration<?>> created = new CopyOnWriteArrayList<>();
+            list = registrations.putIfAbsent(topic, created);
+            if (list == null) {
+                list = created;
+            }
+        }
+        Registration<T> registration = new Registration<>(list, executor, subscriber);
+        if (!topic.sticky) {
+            list.add(registration);
+            return registration;
+        }
+        // Replaying under the topic lock keeps the replayed event ordered before newer ones.
+        synchronized (topic) {
+            list.add(registration);
+            @SuppressWarnings("unchecked")
+            T last = (T) lastEvents.get(topic);
+            if (last != null) {
+                deliver(topic, registration, last);
+            }
+        }
+        return registration;
+    }
+
+    public <T> void publish(Topic<T> topic, T event) {
+        if (topic.sticky) {
+            synchronized (topic) {
+                lastEvents.put(topic, event);
+                deliverAll(topic, event);
+            }
+        } else {
+            deliverAll(topic, event);
+        }
+    }
+
+    private <T> void deliverAll(Topic<T> topic, T event) {
+        List<Registration<?>> list = registrations.get(topic);
+        if (list == null) {
+            return;
+        }
+        for (Registration<?> registration : list) {
+            @SuppressWarnings("unchecked")
+            Registration<T> typed = (Registration<T>) registration;
+            deliver(topic, typed, event);
+        }
+    }
+
+    public boolean hasSubscribers(Topic<?> topic) {
+        List<Registration<?>> list = registrations.get(topic);
+        return list != null && !list.isEmpty();
+    }
+
+    /** Deliveries lost because a subscriber threw or its executor rejected the event. */
+    public long getFailedDeliveries() {
+        return failedDeliveries.get();
+    }
+
+    private <T> void deliver(Topic<T> topic, Registration<T> registration, T event) {
+        try {
+            registration.executor.execute(() -> {
+                if (registration.cancelled) {
+                    return;
+                }
+                try {
+                    registration.subscriber.onEvent(event);
+                } catch (RuntimeException e) {
+                    failedDeliveries.incrementAndGet();
+                    Log.e(TAG, "Subscriber to " + topic + " failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failedDeliveries.incrementAndGet();
+            Log.e(TAG, "Executor rejected an event on " + topic, e);
+        }
+    }
+}
@@ -1,24 +1,80 @@
 package com.example.marcus;
 
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ServiceInfo;
 import android.graphics.PixelFormat;
+import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.ImageView;
+import android.widget.Toast;
 
+import androidx.core.app.NotificationCompat;
+
+/**
+ * The floating bubble overlay. Drag moves are applied at most once per display frame from a
+ * Choreographer callback, since each layout update is a WindowManager IPC and touch events can
+ * arrive faster than the display refreshes. On release the bubble springs to the nearest edge.
+ * Nothing on the move or animation path allocates.
+ *
+ * <p>A tap starts or stops a push-to-talk recording, streamed to the server as it is captured.
+ * The service runs in the foreground with the {@code microphone} type for as long as a recording
+ * lasts; without it, Android hands a backgrounded process silence, and the bubble is used over
+ * other apps.
+ */
 public class FloatingService extends Service {
 
+    private static final String TAG = "FloatingService";
+    private static final String RECORDING_CHANNEL_ID = "MarcusRecordingChannel";
+    private static final int RECORDING_NOTIFICATION_ID = 3;
+    private static final int TOUCH_SLOP_PX = 10;
+    private static final double SNAP_STIFFNESS = 400;
+    private static final double SNAP_DAMPING_RATIO = 0.85;
+    private static final double FLING_PROJECTION_SECONDS = 0.15;
+    private static final float RECORDING_ALPHA = 0.5f;
+
+    // Drag pacing, kept apart per mode so the two can be compared in diagnostics.
+    private static final FrameStats DIRECT_STATS = new FrameStats();
+    private static final FrameStats FRAME_ALIGNED_STATS = new FrameStats();
+
     private WindowManager windowManager;
     private View floatingView;
+    private WindowManager.LayoutParams params;
     private Handler handler;
     private Runnable runnable;
     private boolean isLongPress = false;
+    private ImageView floatingIcon;
+    private PushToTalkRecorder pushToTalk;
+
+    private final boolean frameAligned = Config.OVERLAY_FRAME_ALIGNED_DRAG;
+    private final FrameStats frameStats = frameAligned ? FRAME_ALIGNED_STATS : DIRECT_STATS;
+    private final EdgeSnapSpring snapSpring = new EdgeSnapSpring(SNAP_STIFFNESS, SNAP_DAMPING_RATIO);
+    private final Choreographer.FrameCallback frameCallback = this::doFrame;
+    private Choreographer choreographer;
+    private VelocityTracker velocityTracker;
+    private boolean dragging;
+    private boolean frameScheduled;
+    private long lastFrameNanos = -1;
+    private int targetX;
+    private int targetY;
+
+    static FrameStats getDragStats(boolean frameAligned) {
+        return frameAligned ? FRAME_ALIGNED_STATS : DIRECT_STATS;
+    }
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -29,10 +85,12 @@ public class FloatingService extends Service {
     public void onCreate() {
         super.onCreate();
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+        choreographer = Choreographer.getInstance();
+        frameStats.setExpectedFrameNanos((long) (1e9 / windowManager.getDefaultDisplay().getRefreshRate()));
 
         floatingView = LayoutInflater.from(this).inflate(R.layout.floating_widget, null);
 
-        final WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+        params = new WindowManager.LayoutParams(
                 WindowManager.LayoutParams.WRAP_CONTENT,
                 WindowManager.LayoutParams.WRAP_CONTENT,
                 WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
@@ -45,9 +103,11 @@ public class FloatingService extends Service {
 
         windowManager.addView(floatingView, params);
 
-        ImageView floatingIcon = floatingView.findViewById(R.id.floatingIcon);
+        floatingIcon = floatingView.findViewById(R.id.floatingIcon);
 
         handler = new Handler();
+        pushToTalk = new PushToTalkRecorder(this, WebSocketClientManager.getInstance(),
+                () -> handler.post(this::onRecordingStopped));
         runnable = new Runnable() {
             @Override
             public void run() {
@@ -59,7 +119,6 @@ public class FloatingService extends Service {
         };
 
         floatingIcon.setOnTouchListener(new View.OnTouchListener() {
-            private int lastAction;
             private int initialX, initialY;
             private float initialTouchX, initialTouchY;
 
@@ -67,28 +126,50 @@ public class FloatingService extends Service {
             public boolean onTouch(View v, MotionEvent event) {
                 switch (event.getAction()) {
                     case MotionEvent.ACTION_DOWN:
+                        snapSpring.cancel();
                         initialX = params.x;
                         initialY = params.y;
+                        targetX = initialX;
+                        targetY = initialY;
                         initialTouchX = event.getRawX();
                         initialTouchY = event.getRawY();
-                        lastAction = event.getAction();
                         isLongPress = false;
                         handler.postDelayed(runnable, 1000); // Post the runnable with 1 second delay
+                        if (velocityTracker == null) {
+                            velocityTracker = VelocityTracker.obtain();
+                        }
+                        velocityTracker.clear();
+                        velocityTracker.addMovement(event);
+                        dragging = true;
+                        frameStats.begin();
+                        lastFrameNanos = -1;
+                        scheduleFrame();
                         return true;
                     case MotionEvent.ACTION_MOVE:
-                        if (Math.abs(event.getRawX() - initialTouchX) > 10 || Math.abs(event.getRawY() - initialTouchY) > 10) {
+                        if (Math.abs(event.getRawX() - initialTouchX) > TOUCH_SLOP_PX
+                                || Math.abs(event.getRawY() - initialTouchY) > TOUCH_SLOP_PX) {
                             handler.removeCallbacks(runnable); // Remove the runnable if the icon is moved
                         }
-                        params.x = initialX + (int) (event.getRawX() - initialTouchX);
-                        params.y = initialY + (int) (event.getRawY() - initialTouchY);
-                        windowManager.updateViewLayout(floatingView, params);
-                        lastAction = event.getAction();
+                        velocityTracker.addMovement(event);
+                        targetX = initialX + (int) (event.getRawX() - initialTouchX);
+                        targetY = initialY + (int) (event.getRawY() - initialTouchY);
+                        frameStats.onMoveEvent();
+                        if (!frameAligned) {
+                            applyPosition(targetX, targetY);
+                        }
                         return true;
                     case MotionEvent.ACTION_UP:
+                    case MotionEvent.ACTION_CANCEL:
                         handler.removeCallbacks(runnable); // Remove the runnable if the touch is released
-                        if (!isLongPress && Math.abs(event.getRawX() - initialTouchX) < 10 && Math.abs(event.getRawY() - initialTouchY) < 10) {
-                            // Handle single tap (if needed)
+                        dragging = false;
+                        velocityTracker.addMovement(event);
+                        if (!isLongPress && Math.abs(event.getRawX() - initialTouchX) < TOUCH_SLOP_PX
+                                && Math.abs(event.getRawY() - initialTouchY) < TOUCH_SLOP_PX) {
+                            togglePushToTalk();
+                            return true;
                         }
+                        velocityTracker.computeCurrentVelocity(1000);
+                        startSnap(velocityTracker.getXVelocity());
                         return true;
                 }
                 return false;
@@ -96,9 +177,125 @@ public class FloatingService extends Service {
         });
     }
 
+    private void togglePushToTalk() {
+        if (pushToTalk.isRecording()) {
+            pushToTalk.stop();
+            return;
+        }
+        if (!pushToTalk.hasPermission()) {
+            Intent intent = new Intent(this, MainActivity.class);
+            intent.putExtra(MainActivity.EXTRA_REQUEST_PERMISSION, Manifest.permission.RECORD_AUDIO);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+            startActivity(intent);
+            return;
+        }
+        // Must be in the foreground before the recorder opens the microphone.
+        if (!startRecordingForeground()) {
+            Toast.makeText(this, "Can't use the microphone right now", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (pushToTalk.start()) {
+            floatingIcon.setAlpha(RECORDING_ALPHA);
+        } else {
+            stopForeground(STOP_FOREGROUND_REMOVE);
+            Toast.makeText(this, "Can't record: not connected, or still finishing the last recording",
+                    Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void onRecordingStopped() {
+        // A new recording may have started before this ran; it keeps the service in the foreground.
+        if (pushToTalk.isRecording()) {
+            return;
+        }
+        floatingIcon.setAlpha(1f);
+        stopForeground(STOP_FOREGROUND_REMOVE);
+    }
+
+    private boolean startRecordingForeground() {
+        NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(RECORDING_CHANNEL_ID, "Marcus Recording",
+                    NotificationManager.IMPORTANCE_LOW);
+            channel.setDescription("Shown while Marcus records from the bubble");
+            notificationManager.createNotificationChannel(channel);
+        }
+        Notification notification = new NotificationCompat.Builder(this, RECORDING_CHANNEL_ID)
+                .setContentTitle("Marcus is recording")
+                .setContentText("Tap the bubble again to stop")
+                .setSmallIcon(R.drawable.ic_notification)
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                startForeground(RECORDING_NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_MICROPHONE);
+            } else {
+                startForeground(RECORDING_NOTIFICATION_ID, notification);
+            }
+            return true;
+        } catch (IllegalStateException | SecurityException e) {
+            // Refused by the platform, e.g. a foreground start from the background.
+            Log.e(TAG, "Could not enter the foreground for recording", e);
+            return false;
+        }
+    }
+
+    private void startSnap(float velocityX) {
+        applyPosition(targetX, targetY);
+        int screenWidth = getResources().getDisplayMetrics().widthPixels;
+        int edge = EdgeSnapSpring.nearestEdge(params.x, floatingView.getWidth(), screenWidth,
+                velocityX, FLING_PROJECTION_SECONDS);
+        snapSpring.start(params.x, velocityX, edge);
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            choreographer.postFrameCallback(frameCallback);
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        frameStats.onFrame(frameTimeNanos);
+        if (dragging) {
+            if (frameAligned) {
+                applyPosition(targetX, targetY);
+            }
+            scheduleFrame();
+        } else if (snapSpring.isRunning()) {
+            double seconds = lastFrameNanos < 0 ? 0 : (frameTimeNanos - lastFrameNanos) / 1e9;
+            boolean moving = snapSpring.step(seconds);
+            applyPosition((int) Math.round(snapSpring.getPosition()), params.y);
+            if (moving) {
+                scheduleFrame();
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+    }
+
+    /** Updates the overlay's window position, skipping the IPC when nothing changed. */
+    private void applyPosition(int x, int y) {
+        if (params.x == x && params.y == y) {
+            return;
+        }
+        params.x = x;
+        params.y = y;
+        windowManager.updateViewLayout(floatingView, params);
+        frameStats.onLayoutUpdate();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
+        choreographer.removeFrameCallback(frameCallback);
+        pushToTalk.stop();
+        if (velocityTracker != null) {
+            velocityTracker.recycle();
+            velocityTracker = null;
+        }
         if (floatingView != null) windowManager.removeView(floatingView);
     }
-}
\ No newline at end of file
+}
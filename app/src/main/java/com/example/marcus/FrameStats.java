@@ -0,0 +1,80 @@
+package com.example.marcus;
+
+import java.util.Locale;
+
+/**
+ * Frame pacing for a stretch of on-screen motion, fed from Choreographer frame callbacks. A frame
+ * interval longer than one and a half refresh periods counts the periods it skipped as dropped.
+ * Also counts the touch events and layout updates behind the motion, which shows how well moves
+ * were batched per frame.
+ */
+public final class FrameStats {
+
+    private long expectedFrameNanos = 16_666_667L;
+    private long lastFrameNanos = -1;
+    private long sessions;
+    private long frames;
+    private long droppedFrames;
+    private long worstFrameNanos;
+    private long moveEvents;
+    private long layoutUpdates;
+
+    public synchronized void setExpectedFrameNanos(long expectedFrameNanos) {
+        if (expectedFrameNanos > 0) {
+            this.expectedFrameNanos = expectedFrameNanos;
+        }
+    }
+
+    /** Starts a new stretch of motion; the gap since the last one is not counted. */
+    public synchronized void begin() {
+        lastFrameNanos = -1;
+        sessions++;
+    }
+
+    public synchronized void onFrame(long frameTimeNanos) {
+        if (lastFrameNanos >= 0) {
+            long interval = frameTimeNanos - lastFrameNanos;
+            if (interval * 2 > expectedFrameNanos * 3) {
+                droppedFrames += Math.max(1, Math.round((double) interval / expectedFrameNanos) - 1);
+            }
+            worstFrameNanos = Math.max(worstFrameNanos, interval);
+            frames++;
+        }
+        lastFrameNanos = frameTimeNanos;
+    }
+
+    public synchronized void onMoveEvent() {
+        moveEvents++;
+    }
+
+    public synchronized void onLayoutUpdate() {
+        layoutUpdates++;
+    }
+
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized long getLayoutUpdates() {
+        return layoutUpdates;
+    }
+
+    public synchronized void reset() {
+        lastFrameNanos = -1;
+        sessions = frames = droppedFrames = worstFrameNanos = moveEvents = layoutUpdates = 0;
+    }
+
+    public synchronized String format() {
+        if (frames == 0) {
+            return "no frames recorded";
+        }
+        return String.format(Locale.ROOT,
+                "sessions=%d frames=%d dropped=%d (%.1f%%) worst=%.1f ms moves=%d layouts=%d",
+                sessions, frames, droppedFrames, 100.0 * droppedFrames / (frames + droppedFrames),
+                worstFrameNanos / 1e6, moveEvents, layoutUpdates);
+    }
+}
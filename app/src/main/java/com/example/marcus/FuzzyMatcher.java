@@ -0,0 +1,287 @@
+package com.example.marcus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ranked fuzzy lookup of spoken names against a fixed set of labels.
+ *
+ * <p>Labels are indexed by the character trigrams of their space-free form, so "you tube" and
+ * "YouTube" share every trigram. A query first counts shared trigrams through the posting lists,
+ * keeps the best {@link #RESCORE_LIMIT} candidates by Dice coefficient, and only rescores those
+ * with edit distance and a per-token score. The matcher is immutable; rebuild it when the label
+ * set changes.
+ */
+public final class FuzzyMatcher<T> {
+
+    /** Default minimum score for {@link #best(String)}. */
+    public static final double DEFAULT_MIN_SCORE = 0.6;
+    private static final int RESCORE_LIMIT = 32;
+
+    private static final double DICE_WEIGHT = 0.45;
+    private static final double EDIT_WEIGHT = 0.35;
+    private static final double TOKEN_WEIGHT = 0.20;
+
+    public static final class Match<T> {
+        private final T value;
+        private final String label;
+        private final double score;
+
+        Match(T value, String label, double score) {
+            this.value = value;
+            this.label = label;
+            this.score = score;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return label + "=" + String.format(Locale.ROOT, "%.3f", score);
+        }
+    }
+
+    private final Object[] values;
+    private final String[] labels;
+    private final String[] compactLabels;
+    private final String[][] labelTokens;
+    private final int[] gramCounts;
+    private final Map<Long, int[]> postings;
+
+    private FuzzyMatcher(List<Object> values, List<String> labels) {
+        int size = values.size();
+        this.values = values.toArray();
+        this.labels = new String[size];
+        this.compactLabels = new String[size];
+        this.labelTokens = new String[size][];
+        this.gramCounts = new int[size];
+
+        Map<Long, List<Integer>> lists = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String normalized = NameNormalizer.normalize(labels.get(i));
+            this.labels[i] = labels.get(i);
+            this.compactLabels[i] = compact(normalized);
+            this.labelTokens[i] = normalized.isEmpty() ? new String[0] : normalized.split(" ");
+            long[] grams = distinctGrams(compactLabels[i]);
+            gramCounts[i] = grams.length;
+            for (long gram : grams) {
+                List<Integer> list = lists.get(gram);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    lists.put(gram, list);
+                }
+                list.add(i);
+            }
+        }
+
+        postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Long, List<Integer>> e : lists.entrySet()) {
+            List<Integer> list = e.getValue();
+            int[] ids = new int[list.size()];
+            for (int k = 0; k < ids.length; k++) {
+                ids[k] = list.get(k);
+            }
+            postings.put(e.getKey(), ids);
+        }
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /** Returns the best match scoring at least {@link #DEFAULT_MIN_SCORE}, or {@code null}. */
+    public Match<T> best(String query) {
+        List<Match<T>> matches = search(query, 1, DEFAULT_MIN_SCORE);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    /** Returns up to {@code limit} matches scoring at least {@code minScore}, best first. */
+    @SuppressWarnings("unchecked")
+    public List<Match<T>> search(String query, int limit, double minScore) {
+        String normalized = NameNormalizer.normalize(query);
+        String compactQuery = compact(normalized);
+        if (compactQuery.isEmpty() || values.length == 0) {
+            return Collections.emptyList();
+        }
+        String[] queryTokens = normalized.split(" ");
+
+        // Count trigrams shared with every label through the posting lists.
+        long[] queryGrams = distinctGrams(compactQuery);
+        int[] shared = new int[values.length];
+        int[] candidates = new int[values.length];
+        int candidateCount = 0;
+        for (long gram : queryGrams) {
+            int[] ids = postings.get(gram);
+            if (ids == null) {
+                continue;
+            }
+            for (int id : ids) {
+                if (shared[id]++ == 0) {
+                    candidates[candidateCount++] = id;
+                }
+            }
+        }
+
+        // Keep the strongest candidates by Dice coefficient before the more expensive rescoring.
+        double[] dice = new double[candidateCount];
+        for (int k = 0; k < candidateCount; k++) {
+            int id = candidates[k];
+            dice[k] = 2.0 * shared[id] / (queryGrams.length + gramCounts[id]);
+        }
+        int rescoreCount = Math.min(candidateCount, RESCORE_LIMIT);
+        for (int k = 0; k < rescoreCount; k++) {
+            int best = k;
+            for (int j = k + 1; j < candidateCount; j++) {
+                if (dice[j] > dice[best]) {
+                    best = j;
+                }
+            }
+            swap(candidates, dice, k, best);
+        }
+
+        List<Match<T>> matches = new ArrayList<>(rescoreCount);
+        for (int k = 0; k < rescoreCount; k++) {
+            int id = candidates[k];
+            double score;
+            if (compactLabels[id].equals(compactQuery)) {
+                score = 1.0;
+            } else if (containsAllTokens(labelTokens[id], queryTokens)) {
+                // Whole words of the label ("maps" for "Google Maps"): rank by how much of it was said.
+                score = 0.7 + 0.3 * compactQuery.length() / compactLabels[id].length();
+            } else {
+                score = DICE_WEIGHT * dice[k]
+                        + EDIT_WEIGHT * EditDistance.similarity(compactQuery, compactLabels[id])
+                        + TOKEN_WEIGHT * tokenScore(queryTokens, labelTokens[id]);
+            }
+            if (score >= minScore) {
+                matches.add(new Match<>((T) values[id], labels[id], score));
+            }
+        }
+        Collections.sort(matches, (a, b) -> {
+            int byScore = Double.compare(b.score, a.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            int byLength = Integer.compare(a.label.length(), b.label.length());
+            return byLength != 0 ? byLength : a.label.compareTo(b.label);
+        });
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    // Average over the query tokens of how well each one is covered by some label token.
+    private static double tokenScore(String[] queryTokens, String[] tokens) {
+        if (tokens.length == 0) {
+            return 0;
+        }
+        double total = 0;
+        for (String queryToken : queryTokens) {
+            double best = 0;
+            for (String token : tokens) {
+                double score;
+                if (token.equals(queryToken)) {
+                    score = 1.0;
+                } else if (queryToken.length() >= 2 && token.startsWith(queryToken)) {
+                    score = 0.9;
+                } else {
+                    score = EditDistance.similarity(queryToken, token);
+                }
+                if (score > best) {
+                    best = score;
+                }
+            }
+            total += best;
+        }
+        return total / queryTokens.length;
+    }
+
+    private static boolean containsAllTokens(String[] tokens, String[] queryTokens) {
+        for (String queryToken : queryTokens) {
+            boolean found = false;
+            for (String token : tokens) {
+                if (token.equals(queryToken)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void swap(int[] ids, double[] scores, int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    private static String compact(String normalized) {
+        return normalized.indexOf(' ') < 0 ? normalized : normalized.replace(" ", "");
+    }
+
+    // Trigrams of "^" + text + "$", packed three chars to a long and de-duplicated.
+    private static long[] distinctGrams(String text) {
+        if (text.isEmpty()) {
+            return new long[0];
+        }
+        int length = text.length() + 2;
+        long[] grams = new long[Math.max(1, length - 2)];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = ((long) paddedChar(text, i) << 32) | ((long) paddedChar(text, i + 1) << 16)
+                    | paddedChar(text, i + 2);
+        }
+        Arrays.sort(grams);
+        int unique = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[unique++] = grams[i];
+            }
+        }
+        return unique == grams.length ? grams : Arrays.copyOf(grams, unique);
+    }
+
+    private static char paddedChar(String text, int index) {
+        if (index == 0) {
+            return '^';
+        }
+        return index <= text.length() ? text.charAt(index - 1) : '$';
+    }
+
+    public static final class Builder<T> {
+        private final List<Object> values = new ArrayList<>();
+        private final List<String> labels = new ArrayList<>();
+
+        public Builder<T> add(String label, T value) {
+            labels.add(label);
+            values.add(value);
+            return this;
+        }
+
+        public FuzzyMatcher<T> build() {
+            return new FuzzyMatcher<>(values, labels);
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.example.marcus;
+
+import java.io.IOException;
+
+/**
+ * Minimal streaming JSON reader over a string, modelled on {@code android.util.JsonReader}.
+ *
+ * <p>Values are read token by token without building a tree, which keeps decoding of the small
+ * command frames cheap. Unlike the framework class it has no Android dependency, so the protocol
+ * code can be unit tested and benchmarked on the JVM.
+ */
+public final class JsonPullParser {
+
+    public enum Token {
+        BEGIN_OBJECT,
+        END_OBJECT,
+        BEGIN_ARRAY,
+        END_ARRAY,
+        NAME,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL,
+        END_DOCUMENT
+    }
+
+    public static final class MalformedJsonException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+
+    // Scope stack values.
+    private static final int EMPTY_OBJECT = 1;
+    private static final int NONEMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int EMPTY_ARRAY = 4;
+    private static final int NONEMPTY_ARRAY = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private final String in;
+    private final int end;
+    private int pos;
+    private int[] stack = new int[16];
+    private int stackSize = 0;
+    private Token peeked;
+    private int valueStart;
+
+    public JsonPullParser(String in) {
+        this(in, 0, in.length());
+    }
+
+    public JsonPullParser(String in, int start, int end) {
+        this.in = in;
+        this.pos = start;
+        this.end = end;
+        push(EMPTY_DOCUMENT);
+    }
+
+    public Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = advance();
+        }
+        return peeked;
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        stackSize--;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readString();
+    }
+
+    /** Returns a string value; numbers and booleans are returned as their literal text. */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            peeked = null;
+            return readString();
+        }
+        if (token == Token.NUMBER || token == Token.BOOLEAN) {
+            peeked = null;
+            return readLiteral();
+        }
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    public long nextLong() throws IOException {
+        String literal = nextNumberLiteral();
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            // "1e3", "5.0", or a quoted value that may not be a number at all.
+            double value = parseDouble(literal);
+            if (value != (long) value) {
+                throw syntaxError("Expected a long but was " + literal);
+            }
+            return (long) value;
+        }
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw syntaxError("Expected an int but was " + value);
+        }
+        return (int) value;
+    }
+
+    public double nextDouble() throws IOException {
+        return parseDouble(nextNumberLiteral());
+    }
+
+    private double parseDouble(String literal) throws MalformedJsonException {
+        try {
+            return Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Malformed number " + literal);
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        boolean value = in.charAt(pos) == 't';
+        pos += value ? 4 : 5;
+        return value;
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        pos += 4;
+    }
+
+    /** Skips the next value, including any nested objects or arrays. */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                case STRING:
+                case NUMBER:
+                case BOOLEAN:
+                    nextString();
+                    break;
+                case NULL:
+                    nextNull();
+                    break;
+                default:
+                    throw syntaxError("Unexpected end of input");
+            }
+        } while (depth != 0);
+    }
+
+    /**
+     * Skips the next value and returns its raw JSON text, so a part of the document can be
+     * decoded later with its own parser once the surrounding fields are known.
+     */
+    public String skipValueRaw() throws IOException {
+        peek();
+        int start = valueStart;
+        skipValue();
+        return in.substring(start, pos);
+    }
+
+    private String nextNumberLiteral() throws IOException {
+        Token token = peek();
+        if (token == Token.NUMBER) {
+            peeked = null;
+            return readLiteral();
+        }
+        if (token == Token.STRING) {
+            peeked = null;
+            return readString();
+        }
+        throw syntaxError("Expected a number but was " + token);
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+        if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY
+                || token == Token.END_OBJECT || token == Token.END_ARRAY) {
+            pos++;
+        }
+    }
+
+    // Positions pos at the start of the next token and classifies it, updating the scope stack.
+    private Token advance() throws IOException {
+        int scope = stack[stackSize - 1];
+        if (scope == EMPTY_ARRAY || scope == NONEMPTY_ARRAY) {
+            char c = nextNonWhitespace();
+            if (c == ']') {
+                return Token.END_ARRAY;
+            }
+            if (scope == NONEMPTY_ARRAY) {
+                if (c != ',') {
+                    throw syntaxError("Unterminated array");
+                }
+                pos++;
+            }
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            char c = nextNonWhitespace();
+            if (c == '}') {
+                return Token.END_OBJECT;
+            }
+            if (scope == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+                pos++;
+                c = nextNonWhitespace();
+            }
+            if (c != '"') {
+                throw syntaxError("Expected name");
+            }
+            stack[stackSize - 1] = DANGLING_NAME;
+            return Token.NAME;
+        } else if (scope == DANGLING_NAME) {
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+            pos++;
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else {
+            skipWhitespace();
+            if (pos < end) {
+                throw syntaxError("Trailing data");
+            }
+            return Token.END_DOCUMENT;
+        }
+
+        char c = nextNonWhitespace();
+        valueStart = pos;
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+                expectLiteral("true");
+                return Token.BOOLEAN;
+            case 'f':
+                expectLiteral("false");
+                return Token.BOOLEAN;
+            case 'n':
+                expectLiteral("null");
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + c + "'");
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        if (!in.startsWith(literal, pos) || pos + literal.length() > end) {
+            throw syntaxError("Expected " + literal);
+        }
+    }
+
+    // Reads a quoted string starting at pos, which points at the opening quote.
+    private String readString() throws IOException {
+        pos++;
+        int start = pos;
+        StringBuilder builder = null;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c == '"') {
+                String value = builder == null
+                        ? in.substring(start, pos)
+                        : builder.append(in, start, pos).toString();
+                pos++;
+                return value;
+            }
+            if (c == '\\') {
+                if (builder == null) {
+                    builder = new StringBuilder(Math.max(16, (pos - start) * 2));
+                }
+                builder.append(in, start, pos);
+                pos++;
+                builder.append(readEscape());
+                start = pos;
+            } else if (c < 0x20) {
+                throw syntaxError("Unescaped control character");
+            } else {
+                pos++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private char readEscape() throws IOException {
+        if (pos >= end) {
+            throw syntaxError("Unterminated escape sequence");
+        }
+        char c = in.charAt(pos++);
+        switch (c) {
+            case 'u':
+                if (pos + 4 > end) {
+                    throw syntaxError("Unterminated escape sequence");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(in.charAt(pos++), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Malformed \\u escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+                return c;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    // Reads an unquoted number or boolean literal starting at pos.
+    private String readLiteral() throws MalformedJsonException {
+        int start = pos;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+                break;
+            }
+            pos++;
+        }
+        String literal = in.substring(start, pos);
+        char first = literal.charAt(0);
+        if ((first == '-' || (first >= '0' && first <= '9')) && !isNumber(literal)) {
+            throw syntaxError("Malformed number " + literal);
+        }
+        return literal;
+    }
+
+    // -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+    private static boolean isNumber(String literal) {
+        int i = 0;
+        int length = literal.length();
+        if (i < length && literal.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && literal.charAt(i) == '0') {
+            i++;
+        } else {
+            int digits = skipDigits(literal, i);
+            if (digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        if (i < length && literal.charAt(i) == '.') {
+            int digits = skipDigits(literal, i + 1);
+            if (digits == i + 1) {
+                return false;
+            }
+            i = digits;
+        }
+        if (i < length && (literal.charAt(i) == 'e' || literal.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (literal.charAt(i) == '+' || literal.charAt(i) == '-')) {
+                i++;
+            }
+            int digits = skipDigits(literal, i);
+            if (digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(String literal, int i) {
+        while (i < literal.length() && literal.charAt(i) >= '0' && literal.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private char nextNonWhitespace() throws IOException {
+        skipWhitespace();
+        if (pos >= end) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return in.charAt(pos);
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message + " at offset " + pos);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.marcus;
+
+/**
+ * Streaming JSON writer into a {@link StringBuilder}, the counterpart of {@link JsonPullParser}.
+ * Commas and nesting are tracked by the writer; callers only emit names and values.
+ */
+public final class JsonStreamWriter {
+
+    private final StringBuilder out;
+    // One bit per nesting level: whether the current container already has an element.
+    private long nonEmpty = 0;
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonStreamWriter() {
+        this(new StringBuilder(128));
+    }
+
+    public JsonStreamWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    public JsonStreamWriter beginObject() {
+        open('{');
+        return this;
+    }
+
+    public JsonStreamWriter endObject() {
+        close('}');
+        return this;
+    }
+
+    public JsonStreamWriter beginArray() {
+        open('[');
+        return this;
+    }
+
+    public JsonStreamWriter endArray() {
+        close(']');
+        return this;
+    }
+
+    public JsonStreamWriter name(String name) {
+        if (afterName) {
+            throw new IllegalStateException("Name without a value");
+        }
+        separator();
+        quote(out, name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    /** Writes a string value, or {@code null} if {@code value} is null. */
+    public JsonStreamWriter value(String value) {
+        separator();
+        if (value == null) {
+            out.append("null");
+        } else {
+            quote(out, value);
+        }
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) {
+        separator();
+        out.append(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        separator();
+        out.append(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) {
+        separator();
+        out.append(value);
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() {
+        separator();
+        out.append("null");
+        return this;
+    }
+
+    /** Writes pre-encoded JSON verbatim as the next value. */
+    public JsonStreamWriter rawValue(String json) {
+        separator();
+        out.append(json);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void open(char bracket) {
+        if (depth == 63) {
+            throw new IllegalStateException("Nesting too deep");
+        }
+        separator();
+        out.append(bracket);
+        depth++;
+        nonEmpty &= ~(1L << depth);
+    }
+
+    private void close(char bracket) {
+        if (depth == 0 || afterName) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        depth--;
+        out.append(bracket);
+    }
+
+    private void separator() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        long bit = 1L << depth;
+        if ((nonEmpty & bit) != 0) {
+            out.append(',');
+        }
+        nonEmpty |= bit;
+    }
+
+    /** Appends {@code value} as a quoted JSON string. */
+    public static void quote(StringBuilder out, String value) {
+        out.append('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '\n') {
+                replacement = "\\n";
+            } else if (c == '\r') {
+                replacement = "\\r";
+            } else if (c == '\t') {
+                replacement = "\\t";
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                replacement = String.format("\\u%04x", (int) c);
+            } else {
+                continue;
+            }
+            out.append(value, start, i).append(replacement);
+            start = i + 1;
+        }
+        out.append(value, start, length).append('"');
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.marcus;
+
+import java.text.Normalizer;
+
+/**
+ * Normalizes spoken and displayed names (app labels, contact names) into a canonical lookup key:
+ * lower case, letters and digits only, single spaces between words.
+ *
+ * <p>Accents are folded away ("José" -> "jose"), a few letters without a decomposition are
+ * transliterated ("ß" -> "ss", "ø" -> "o") and Devanagari is romanized, so a name typed in one
+ * script still matches what speech recognition returns in another.
+ */
+public final class NameNormalizer {
+
+    // Devanagari consonants U+0915..U+0939, romanized with the inherent vowel left off.
+    private static final String[] DEVANAGARI_CONSONANTS = {
+            "k", "kh", "g", "gh", "n", "ch", "chh", "j", "jh", "n", "t", "th", "d", "dh", "n",
+            "t", "th", "d", "dh", "n", "n", "p", "ph", "b", "bh", "m", "y", "r", "r", "l", "l", "l",
+            "v", "sh", "sh", "s", "h"
+    };
+    // Independent vowels U+0904..U+0914.
+    private static final String[] DEVANAGARI_VOWELS = {
+            "e", "a", "aa", "i", "ee", "u", "oo", "ri", "li", "e", "e", "e", "ai", "o", "o", "o", "au"
+    };
+    // Dependent vowel signs U+093E..U+094C.
+    private static final String[] DEVANAGARI_VOWEL_SIGNS = {
+            "aa", "i", "ee", "u", "oo", "ri", "ri", "e", "e", "e", "ai", "o", "o", "o", "au"
+    };
+
+    private NameNormalizer() {
+    }
+
+    public static String normalize(CharSequence name) {
+        if (name == null) {
+            return "";
+        }
+        CharSequence folded = needsFolding(name) ? fold(name) : name;
+        StringBuilder out = new StringBuilder(folded.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                out.append(Character.toLowerCase(c));
+            } else if (c != '\'' && c != '\u2019' && Character.getType(c) != Character.NON_SPACING_MARK) {
+                // Apostrophes are dropped without splitting the word ("what's" -> "whats").
+                pendingSpace = true;
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean needsFolding(CharSequence name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 0x7F) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Strips combining marks after canonical decomposition and transliterates what is left.
+    private static CharSequence fold(CharSequence name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length() + 8);
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (c >= 0x0900 && c <= 0x097F) {
+                i = romanizeDevanagari(decomposed, i, out);
+                continue;
+            }
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            switch (Character.toLowerCase(c)) {
+                case '\u00DF':
+                    out.append("ss");
+                    break;
+                case '\u00E6':
+                    out.append("ae");
+                    break;
+                case '\u0153':
+                    out.append("oe");
+                    break;
+                case '\u00F8':
+                    out.append('o');
+                    break;
+                case '\u0111':
+                case '\u00F0':
+                    out.append('d');
+                    break;
+                case '\u0142':
+                    out.append('l');
+                    break;
+                case '\u00FE':
+                    out.append("th");
+                    break;
+                case '\u0131':
+                    out.append('i');
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+        return out;
+    }
+
+    // Romanizes one Devanagari character at index i and returns the last index consumed.
+    private static int romanizeDevanagari(String text, int i, StringBuilder out) {
+        char c = text.charAt(i);
+        if (c >= 0x0915 && c <= 0x0939) {
+            out.append(DEVANAGARI_CONSONANTS[c - 0x0915]);
+            char next = i + 1 < text.length() ? text.charAt(i + 1) : 0;
+            if (next == '\u093C' && i + 2 < text.length()) {
+                // Nukta: keep the base consonant.
+                next = text.charAt(i + 2);
+                i++;
+            }
+            if (next >= 0x093E && next <= 0x094C) {
+                out.append(DEVANAGARI_VOWEL_SIGNS[next - 0x093E]);
+                return i + 1;
+            }
+            if (next == '\u094D') {
+                // Virama: no inherent vowel.
+                return i + 1;
+            }
+            out.append('a');
+            return i;
+        }
+        if (c >= 0x0904 && c <= 0x0914) {
+            out.append(DEVANAGARI_VOWELS[c - 0x0904]);
+        } else if (c == '\u0902' || c == '\u0901') {
+            out.append('n');
+        } else if (c == '\u0903') {
+            out.append('h');
+        } else if (c >= 0x0966 && c <= 0x096F) {
+            out.append((char) ('0' + (c - 0x0966)));
+        } else if (c == '\u0964' || c == '\u0965') {
+            out.append(' ');
+        }
+        return i;
+    }
+}
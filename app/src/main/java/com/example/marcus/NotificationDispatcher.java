@@ -0,0 +1,142 @@
+package com.example.marcus;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts status notifications, one per {@link Category}, bundled under a single group. Updates go
+ * through a {@link NotificationThrottle} so a burst of commands turns into a few coalesced posts,
+ * and each category's builder is kept and reused rather than rebuilt per message. Posting happens
+ * on a private thread so callers never block on NotificationManager.
+ */
+class NotificationDispatcher {
+
+    private static final String TAG = "NotificationDispatcher";
+    private static final String GROUP_KEY = "com.example.marcus.STATUS";
+    private static final int SUMMARY_ID = 100;
+    private static final int CATEGORY_ID_BASE = 101;
+    private static final long COALESCE_WINDOW_MS = 300;
+    // The platform drops posts above 5 per second per app; stay below it.
+    private static final int BURST = 4;
+    private static final double POSTS_PER_SECOND = 4;
+    private static final int MAX_LINES = 5;
+
+    enum Category {
+        CALL("Calls", 2),
+        MESSAGE("Messages", 2),
+        CONTACTS("Contacts", 1),
+        AUDIO("Audio", 0),
+        APPS("Apps", 0),
+        PERMISSION("Permissions", 3),
+        ERROR("Errors", 3);
+
+        final String title;
+        final int priority;
+
+        Category(String title, int priority) {
+            this.title = title;
+            this.priority = priority;
+        }
+    }
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final String channelId;
+    private final NotificationThrottle<Category> throttle =
+            new NotificationThrottle<>(COALESCE_WINDOW_MS, BURST, POSTS_PER_SECOND, MAX_LINES);
+    // Only touched on the dispatcher thread.
+    private final Map<Category, NotificationCompat.Builder> builders = new EnumMap<>(Category.class);
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Runnable drain = this::drain;
+    private boolean summaryPosted;
+
+    NotificationDispatcher(Context context, NotificationManager notificationManager, String channelId) {
+        this.context = context;
+        this.notificationManager = notificationManager;
+        this.channelId = channelId;
+        thread = new HandlerThread("notifications");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Queues {@code message} as the latest status for {@code category}. Safe from any thread. */
+    void post(Category category, String message) {
+        throttle.offer(category, category.priority, message, SystemClock.uptimeMillis());
+        handler.post(this::schedule);
+    }
+
+    void shutdown() {
+        thread.quitSafely();
+    }
+
+    private void schedule() {
+        long now = SystemClock.uptimeMillis();
+        long wake = throttle.nextWakeMs(now);
+        handler.removeCallbacks(drain);
+        if (wake >= 0) {
+            handler.postAtTime(drain, wake);
+        }
+    }
+
+    private void drain() {
+        List<NotificationThrottle.Update<Category>> ready = throttle.poll(SystemClock.uptimeMillis());
+        for (NotificationThrottle.Update<Category> update : ready) {
+            notificationManager.notify(CATEGORY_ID_BASE + update.getKey().ordinal(), build(update));
+        }
+        if (!ready.isEmpty() && !summaryPosted) {
+            notificationManager.notify(SUMMARY_ID, new NotificationCompat.Builder(context, channelId)
+                    .setContentTitle("Marcus Assists")
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setGroup(GROUP_KEY)
+                    .setGroupSummary(true)
+                    .setOnlyAlertOnce(true)
+                    .build());
+            summaryPosted = true;
+        }
+        if (throttle.getCoalescedCount() > 0) {
+            Log.d(TAG, "Posted " + ready.size() + ", coalesced so far " + throttle.getCoalescedCount());
+        }
+        schedule();
+    }
+
+    private Notification build(NotificationThrottle.Update<Category> update) {
+        Category category = update.getKey();
+        NotificationCompat.Builder builder = builders.get(category);
+        if (builder == null) {
+            builder = new NotificationCompat.Builder(context, channelId)
+                    .setContentTitle(category.title)
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setPriority(category.priority > 1
+                            ? NotificationCompat.PRIORITY_HIGH : NotificationCompat.PRIORITY_DEFAULT)
+                    .setGroup(GROUP_KEY)
+                    .setAutoCancel(true);
+            builders.put(category, builder);
+        }
+        builder.setContentText(update.getMessage())
+                .setWhen(System.currentTimeMillis())
+                .setNumber(update.getCount());
+        List<String> lines = update.getLines();
+        if (lines.size() > 1) {
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+            for (String line : lines) {
+                style.addLine(line);
+            }
+            builder.setStyle(style);
+        } else {
+            builder.setStyle(null);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.marcus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides when status notifications are posted. Updates for the same key arriving within the
+ * coalescing window collapse into one post carrying the latest message and a few recent lines;
+ * posts are paced by a token bucket kept under the platform's per-app enqueue limit, so excess
+ * updates wait instead of being silently dropped by the system. When tokens are scarce, higher
+ * priority keys go first.
+ */
+public final class NotificationThrottle<K> {
+
+    /** One pending post. */
+    public static final class Update<K> {
+        private final K key;
+        private final int priority;
+        private final long dueMs;
+        private final List<String> lines = new ArrayList<>();
+        private String message;
+        private int count;
+
+        Update(K key, int priority, long dueMs) {
+            this.key = key;
+            this.priority = priority;
+            this.dueMs = dueMs;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /** The latest message. */
+        public String getMessage() {
+            return message;
+        }
+
+        /** Recent distinct messages, oldest first, ending with {@link #getMessage()}. */
+        public List<String> getLines() {
+            return Collections.unmodifiableList(lines);
+        }
+
+        /** How many updates were folded into this post. */
+        public int getCount() {
+            return count;
+        }
+    }
+
+    private final Map<K, Update<K>> pending = new LinkedHashMap<>();
+    private final long coalesceWindowMs;
+    private final double burst;
+    private final double postsPerSecond;
+    private final int maxLines;
+
+    private double tokens;
+    private long lastRefillMs = -1;
+    private long coalesced;
+
+    public NotificationThrottle(long coalesceWindowMs, int burst, double postsPerSecond, int maxLines) {
+        if (coalesceWindowMs < 0 || burst <= 0 || postsPerSecond <= 0 || maxLines <= 0) {
+            throw new IllegalArgumentException("Invalid throttle settings");
+        }
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.burst = burst;
+        this.postsPerSecond = postsPerSecond;
+        this.maxLines = maxLines;
+        this.tokens = burst;
+    }
+
+    public synchronized void offer(K key, int priority, String message, long nowMs) {
+        Update<K> update = pending.get(key);
+        if (update == null) {
+            update = new Update<>(key, priority, nowMs + coalesceWindowMs);
+            pending.put(key, update);
+        } else {
+            coalesced++;
+        }
+        update.message = message;
+        update.count++;
+        List<String> lines = update.lines;
+        if (lines.isEmpty() || !lines.get(lines.size() - 1).equals(message)) {
+            lines.add(message);
+            if (lines.size() > maxLines) {
+                lines.remove(0);
+            }
+        }
+    }
+
+    /** Removes and returns the updates that are due and fit in the rate limit, most important first. */
+    public synchronized List<Update<K>> poll(long nowMs) {
+        refill(nowMs);
+        List<Update<K>> due = new ArrayList<>();
+        for (Update<K> update : pending.values()) {
+            if (update.dueMs <= nowMs) {
+                due.add(update);
+            }
+        }
+        if (due.isEmpty() || tokens < 1) {
+            return Collections.emptyList();
+        }
+        Collections.sort(due, (a, b) -> a.priority != b.priority
+                ? Integer.compare(b.priority, a.priority)
+                : Long.compare(a.dueMs, b.dueMs));
+        List<Update<K>> ready = new ArrayList<>();
+        for (Iterator<Update<K>> it = due.iterator(); it.hasNext() && tokens >= 1; ) {
+            Update<K> update = it.next();
+            pending.remove(update.key);
+            ready.add(update);
+            tokens -= 1;
+        }
+        return ready;
+    }
+
+    /** When {@link #poll} should next be called, or -1 if nothing is pending. */
+    public synchronized long nextWakeMs(long nowMs) {
+        if (pending.isEmpty()) {
+            return -1;
+        }
+        long earliestDue = Long.MAX_VALUE;
+        for (Update<K> update : pending.values()) {
+            earliestDue = Math.min(earliestDue, update.dueMs);
+        }
+        if (earliestDue > nowMs) {
+            return earliestDue;
+        }
+        refill(nowMs);
+        if (tokens >= 1) {
+            return nowMs;
+        }
+        return nowMs + (long) Math.ceil((1 - tokens) * 1000 / postsPerSecond);
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /** Updates folded into an already pending post since creation. */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    private void refill(long nowMs) {
+        if (lastRefillMs >= 0 && nowMs > lastRefillMs) {
+            tokens = Math.min(burst, tokens + (nowMs - lastRefillMs) * postsPerSecond / 1000);
+        }
+        if (nowMs > lastRefillMs) {
+            lastRefillMs = nowMs;
+        }
+    }
+}
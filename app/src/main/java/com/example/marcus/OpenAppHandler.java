@@ -0,0 +1,87 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.content.Intent;
+import android.util.Log;
+
+/** Launches an installed app by spoken name, with explicit intents for a few system apps. */
+class OpenAppHandler implements CommandHandler {
+
+    private static final String TAG = "OpenAppHandler";
+
+    private final AssistantService service;
+
+    OpenAppHandler(AssistantService service) {
+        this.service = service;
+    }
+
+    @Override
+    public CommandResult handle(Command command, CommandTrace trace) {
+        String appName = ((Command.OpenApp) command).getAppName();
+        AppIndex appIndex = service.getAppIndex();
+        AppIndex.Entry entry;
+
+        // Check for common system apps with explicit intents
+        switch (appName.toLowerCase()) {
+            case "camera":
+                if (!service.hasPermission(Manifest.permission.CAMERA)) {
+                    return service.requestPermission(Manifest.permission.CAMERA,
+                            "Camera permission is required to open the camera.");
+                }
+                Intent cameraIntent = new Intent("android.media.action.IMAGE_CAPTURE");
+                if (cameraIntent.resolveActivity(service.getPackageManager()) == null) {
+                    return CommandResult.failed("No camera app");
+                }
+                cameraIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                service.fireOnMain(trace, () -> service.startActivity(cameraIntent));
+                Log.d(TAG, "Camera launched successfully.");
+                return CommandResult.ok("Camera launched");
+
+            case "phone":
+                Intent phoneIntent = new Intent(Intent.ACTION_DIAL);
+                phoneIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                service.fireOnMain(trace, () -> service.startActivity(phoneIntent));
+                Log.d(TAG, "Phone dialer launched successfully.");
+                return CommandResult.ok("Phone dialer launched");
+
+            case "chrome":
+                entry = appIndex.getByPackage("com.android.chrome");
+                break;
+
+            default:
+                // The server sends exact package names once it has the synced app catalog.
+                entry = isPackageName(appName) ? appIndex.getByPackage(appName) : null;
+                break;
+        }
+
+        // Fallback to the installed app index
+        if (entry == null) {
+            entry = appIndex.resolve(appName);
+        }
+        trace.mark(CommandTrace.Checkpoint.LOOKED_UP);
+
+        // Launch the app from its cached launch intent
+        if (entry != null) {
+            try {
+                Intent launchIntent = entry.createLaunchIntent();
+                service.fireOnMain(trace, () -> service.startActivity(launchIntent));
+                Log.d(TAG, entry.getLabel() + " (" + entry.getPackageName() + ") launched successfully.");
+                return CommandResult.ok(entry.getLabel() + " launched");
+            } catch (Exception e) {
+                Log.e(TAG, "Error launching " + appName + ".", e);
+                service.showNotification(NotificationDispatcher.Category.APPS,
+                        "Error handling " + appName + " request.");
+                return CommandResult.failed("Error launching " + appName);
+            }
+        } else {
+            Log.e(TAG, "App not found: " + appName);
+            service.showNotification(NotificationDispatcher.Category.APPS, "App not found: " + appName);
+            return CommandResult.failed("App not found: " + appName);
+        }
+    }
+
+    // e.g. "com.whatsapp": dotted, no spaces.
+    private static boolean isPackageName(String name) {
+        return name.indexOf('.') > 0 && name.indexOf(' ') < 0;
+    }
+}
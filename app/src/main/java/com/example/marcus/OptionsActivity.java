@@ -17,6 +17,7 @@ public class OptionsActivity extends AppCompatActivity {
         Button accountButton = findViewById(R.id.accountButton);
         Button logoutButton = findViewById(R.id.logoutButton);
         Button instructionButton = findViewById(R.id.instructionButton);
+        Button diagnosticsButton = findViewById(R.id.diagnosticsButton);
         Button closeButton = findViewById(R.id.closeButton);
 
         accountButton.setOnClickListener(new View.OnClickListener() {
@@ -46,6 +47,15 @@ public class OptionsActivity extends AppCompatActivity {
             }
         });
 
+        diagnosticsButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                // Start DiagnosticsActivity when the "Diagnostics" button is clicked
+                Intent intent = new Intent(OptionsActivity.this, DiagnosticsActivity.class);
+                startActivity(intent);
+            }
+        });
+
         closeButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
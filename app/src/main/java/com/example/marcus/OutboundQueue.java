@@ -0,0 +1,472 @@
+package com.example.marcus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded store-and-forward queue for outbound WebSocket messages.
+ *
+ * <p>Messages are kept in memory up to {@code maxMemoryBytes}; beyond that they are appended to a
+ * small on-disk journal that never grows past {@code maxJournalBytes}, and once the journal is in
+ * use every new message goes there too, so the queue stays FIFO. When both are full the
+ * {@link BackpressurePolicy} decides what happens. The consumer drains the queue in batches through
+ * {@link #flush(BatchSender)}; a batch is removed as soon as the sender accepts it, which for the
+ * WebSocket means its frames were handed to the client's write queue, not that they reached the
+ * server.
+ *
+ * <p>The journal survives process death: its header records how far it has been consumed, and a
+ * new queue over the same file resumes from there.
+ */
+public final class OutboundQueue {
+
+    public enum BackpressurePolicy {
+        /** Evict the oldest queued messages to make room. */
+        DROP_OLDEST,
+        /** Wait up to the configured timeout for room, then reject. */
+        BLOCK,
+        /** Refuse the new message immediately. */
+        REJECT
+    }
+
+    /** Sends one batch; returns {@code false} (or throws) if it could not be sent and must be kept. */
+    public interface BatchSender {
+        boolean send(List<String> batch) throws Exception;
+    }
+
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_OVERHEAD_BYTES = 4;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ArrayDeque<byte[]> memory = new ArrayDeque<>();
+    private final Journal journal;
+    private final long maxMemoryBytes;
+    private final long maxJournalBytes;
+    private final int maxBatchMessages;
+    private final long maxBatchBytes;
+    private final BackpressurePolicy policy;
+    private final long blockTimeoutMs;
+
+    private long memoryBytes = 0;
+    private long droppedCount = 0;
+    private long rejectedCount = 0;
+
+    public OutboundQueue(File journalFile, long maxMemoryBytes, long maxJournalBytes, int maxBatchMessages,
+                         long maxBatchBytes, BackpressurePolicy policy, long blockTimeoutMs) throws IOException {
+        if (maxMemoryBytes <= 0 || maxJournalBytes < 0 || maxBatchMessages <= 0 || maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("Invalid queue limits");
+        }
+        this.journal = new Journal(journalFile, maxJournalBytes);
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxJournalBytes = maxJournalBytes;
+        this.maxBatchMessages = maxBatchMessages;
+        this.maxBatchBytes = maxBatchBytes;
+        this.policy = policy;
+        this.blockTimeoutMs = blockTimeoutMs;
+        lock.lock();
+        try {
+            refillFromJournal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues {@code message}. Returns {@code false} if it was rejected, or if the BLOCK policy timed
+     * out waiting for room.
+     */
+    public boolean offer(String message) throws IOException {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxMemoryBytes && bytes.length + RECORD_OVERHEAD_BYTES > maxJournalBytes) {
+            lock.lock();
+            try {
+                rejectedCount++;
+            } finally {
+                lock.unlock();
+            }
+            return false;
+        }
+        lock.lock();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+            while (!tryPlace(bytes)) {
+                switch (policy) {
+                    case DROP_OLDEST:
+                        if (!dropOldest()) {
+                            rejectedCount++;
+                            return false;
+                        }
+                        break;
+                    case BLOCK:
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            rejectedCount++;
+                            return false;
+                        }
+                        try {
+                            spaceAvailable.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            rejectedCount++;
+                            return false;
+                        }
+                        break;
+                    default:
+                        rejectedCount++;
+                        return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends queued messages in batches of at most {@code maxBatchMessages} / {@code maxBatchBytes}
+     * until the queue is empty or the sender fails. Returns the number of messages sent.
+     */
+    public int flush(BatchSender sender) throws IOException {
+        flushLock.lock();
+        try {
+            int sent = 0;
+            while (true) {
+                List<byte[]> batch = peekBatch();
+                if (batch.isEmpty()) {
+                    return sent;
+                }
+                List<String> messages = new ArrayList<>(batch.size());
+                for (byte[] bytes : batch) {
+                    messages.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                boolean accepted;
+                try {
+                    accepted = sender.send(messages);
+                } catch (Exception e) {
+                    accepted = false;
+                }
+                if (!accepted) {
+                    return sent;
+                }
+                commit(batch);
+                sent += batch.size();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return memory.size() + journal.recordCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public long getMemoryBytes() {
+        lock.lock();
+        try {
+            return memoryBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getJournalBytes() {
+        lock.lock();
+        try {
+            return journal.pendingBytes();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            journal.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Memory while the journal is empty and memory has room, else the journal tail if it has room.
+    private boolean tryPlace(byte[] bytes) throws IOException {
+        if (journal.recordCount == 0 && memoryBytes + bytes.length <= maxMemoryBytes) {
+            memory.addLast(bytes);
+            memoryBytes += bytes.length;
+            return true;
+        }
+        if (journal.pendingBytes() + bytes.length + RECORD_OVERHEAD_BYTES <= maxJournalBytes) {
+            journal.append(bytes);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean dropOldest() throws IOException {
+        byte[] dropped = memory.pollFirst();
+        if (dropped != null) {
+            memoryBytes -= dropped.length;
+        } else if (journal.recordCount > 0) {
+            journal.read();
+        } else {
+            return false;
+        }
+        droppedCount++;
+        refillFromJournal();
+        return true;
+    }
+
+    // Moves journal records into memory while they fit, oldest first.
+    private void refillFromJournal() throws IOException {
+        while (journal.recordCount > 0 && memoryBytes + journal.peekLength() <= maxMemoryBytes) {
+            byte[] bytes = journal.read();
+            memory.addLast(bytes);
+            memoryBytes += bytes.length;
+        }
+        if (journal.needsReset()) {
+            journal.reset();
+        }
+    }
+
+    private List<byte[]> peekBatch() throws IOException {
+        lock.lock();
+        try {
+            refillFromJournal();
+            List<byte[]> batch = new ArrayList<>(Math.min(memory.size(), maxBatchMessages));
+            long batchBytes = 0;
+            for (byte[] bytes : memory) {
+                if (batch.size() == maxBatchMessages
+                        || (!batch.isEmpty() && batchBytes + bytes.length > maxBatchBytes)) {
+                    break;
+                }
+                batch.add(bytes);
+                batchBytes += bytes.length;
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Removes a sent batch; messages evicted by DROP_OLDEST in the meantime are already gone.
+    private void commit(List<byte[]> batch) throws IOException {
+        lock.lock();
+        try {
+            for (byte[] bytes : batch) {
+                if (memory.peekFirst() == bytes) {
+                    memory.pollFirst();
+                    memoryBytes -= bytes.length;
+                }
+            }
+            refillFromJournal();
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record file used as a ring: a header [long capacity][long readPos][long usedBytes], then at
+     * most {@code capacity} bytes of [int length][bytes] records that wrap around at the end, so
+     * the file never grows past the header plus the journal limit however long the queue stays
+     * offline.
+     */
+    private static final class Journal {
+        private final RandomAccessFile file;
+        private final byte[] lengthBytes = new byte[RECORD_OVERHEAD_BYTES];
+        private long capacity;
+        private long readPos;
+        private long usedBytes;
+        private int recordCount;
+        private boolean written;
+
+        Journal(File path, long capacity) throws IOException {
+            File parent = path.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Cannot create " + parent);
+            }
+            file = new RandomAccessFile(path, "rw");
+            this.capacity = capacity;
+            List<byte[]> leftover = load(capacity);
+            if (leftover == null) {
+                return;
+            }
+            // Written with another limit: replay the records into a fresh ring, oldest first.
+            reset();
+            for (byte[] bytes : leftover) {
+                if (usedBytes + RECORD_OVERHEAD_BYTES + bytes.length > capacity) {
+                    break;
+                }
+                append(bytes);
+            }
+        }
+
+        // Picks up the records left over from a previous process, dropping a torn last record.
+        // Returns them if the ring was written with a different capacity, else null.
+        private List<byte[]> load(long wantedCapacity) throws IOException {
+            long length = file.length();
+            if (length < HEADER_BYTES) {
+                reset();
+                return null;
+            }
+            file.seek(0);
+            long storedCapacity = file.readLong();
+            readPos = file.readLong();
+            long storedUsed = file.readLong();
+            if (storedCapacity <= 0 || length > HEADER_BYTES + storedCapacity || readPos < 0
+                    || readPos >= storedCapacity || storedUsed < 0 || storedUsed > storedCapacity) {
+                reset();
+                return null;
+            }
+            capacity = storedCapacity;
+            usedBytes = 0;
+            while (usedBytes + RECORD_OVERHEAD_BYTES <= storedUsed) {
+                int recordLength = readInt(advance(readPos, usedBytes));
+                if (recordLength < 0 || usedBytes + RECORD_OVERHEAD_BYTES + recordLength > storedUsed) {
+                    break;
+                }
+                usedBytes += RECORD_OVERHEAD_BYTES + recordLength;
+                recordCount++;
+            }
+            written = true;
+            if (capacity == wantedCapacity) {
+                return null;
+            }
+            List<byte[]> records = new ArrayList<>(recordCount);
+            while (recordCount > 0) {
+                records.add(read());
+            }
+            capacity = wantedCapacity;
+            return records;
+        }
+
+        long pendingBytes() {
+            return usedBytes;
+        }
+
+        void append(byte[] bytes) throws IOException {
+            long writePos = advance(readPos, usedBytes);
+            writeInt(writePos, bytes.length);
+            writeAt(advance(writePos, RECORD_OVERHEAD_BYTES), bytes);
+            usedBytes += RECORD_OVERHEAD_BYTES + bytes.length;
+            recordCount++;
+            written = true;
+            writeHeader();
+        }
+
+        int peekLength() throws IOException {
+            return readInt(readPos);
+        }
+
+        byte[] read() throws IOException {
+            byte[] bytes = new byte[readInt(readPos)];
+            readAt(advance(readPos, RECORD_OVERHEAD_BYTES), bytes);
+            readPos = advance(readPos, RECORD_OVERHEAD_BYTES + bytes.length);
+            usedBytes -= RECORD_OVERHEAD_BYTES + bytes.length;
+            recordCount--;
+            writeHeader();
+            return bytes;
+        }
+
+        /** Whether the file holds anything beyond an empty header, i.e. {@link #reset} would shrink it. */
+        boolean needsReset() {
+            return recordCount == 0 && written;
+        }
+
+        void reset() throws IOException {
+            readPos = 0;
+            usedBytes = 0;
+            recordCount = 0;
+            written = false;
+            file.setLength(HEADER_BYTES);
+            writeHeader();
+        }
+
+        void close() throws IOException {
+            file.close();
+        }
+
+        private void writeHeader() throws IOException {
+            file.seek(0);
+            file.writeLong(capacity);
+            file.writeLong(readPos);
+            file.writeLong(usedBytes);
+        }
+
+        private long advance(long pos, long bytes) {
+            long next = pos + bytes;
+            return next >= capacity ? next - capacity : next;
+        }
+
+        private int readInt(long pos) throws IOException {
+            readAt(pos, lengthBytes);
+            return (lengthBytes[0] & 0xff) << 24 | (lengthBytes[1] & 0xff) << 16
+                    | (lengthBytes[2] & 0xff) << 8 | (lengthBytes[3] & 0xff);
+        }
+
+        private void writeInt(long pos, int value) throws IOException {
+            lengthBytes[0] = (byte) (value >>> 24);
+            lengthBytes[1] = (byte) (value >>> 16);
+            lengthBytes[2] = (byte) (value >>> 8);
+            lengthBytes[3] = (byte) value;
+            writeAt(pos, lengthBytes);
+        }
+
+        // The two halves of a range that wraps past the end of the ring.
+        private void writeAt(long pos, byte[] bytes) throws IOException {
+            int first = (int) Math.min(bytes.length, capacity - pos);
+            file.seek(HEADER_BYTES + pos);
+            file.write(bytes, 0, first);
+            if (first < bytes.length) {
+                file.seek(HEADER_BYTES);
+                file.write(bytes, first, bytes.length - first);
+            }
+        }
+
+        private void readAt(long pos, byte[] bytes) throws IOException {
+            int first = (int) Math.min(bytes.length, capacity - pos);
+            file.seek(HEADER_BYTES + pos);
+            file.readFully(bytes, 0, first);
+            if (first < bytes.length) {
+                file.seek(HEADER_BYTES);
+                file.readFully(bytes, first, bytes.length - first);
+            }
+        }
+    }
+}
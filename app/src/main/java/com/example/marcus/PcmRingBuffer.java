@@ -0,0 +1,68 @@
+package com.example.marcus;
+
+/**
+ * Fixed-size byte ring for captured PCM, allocated once per recorder. Safe for one writer thread
+ * and one reader thread without locking. When the reader falls behind, the writer drops the
+ * newest bytes rather than overwrite ones not yet sent, so what does reach the server stays
+ * contiguous up to the gap.
+ */
+public final class PcmRingBuffer {
+
+    private final byte[] buffer;
+    // Total bytes ever written and read; their difference is the fill level.
+    private volatile long writePosition;
+    private volatile long readPosition;
+    private long droppedBytes;
+
+    public PcmRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        buffer = new byte[capacity];
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public int available() {
+        return (int) (writePosition - readPosition);
+    }
+
+    /** Copies in as much of {@code src} as fits; returns the byte count written. Writer thread only. */
+    public int write(byte[] src, int offset, int length) {
+        int free = buffer.length - available();
+        int count = Math.min(length, free);
+        droppedBytes += length - count;
+        long position = writePosition;
+        int start = (int) (position % buffer.length);
+        int first = Math.min(count, buffer.length - start);
+        System.arraycopy(src, offset, buffer, start, first);
+        System.arraycopy(src, offset + first, buffer, 0, count - first);
+        writePosition = position + count;
+        return count;
+    }
+
+    /** Copies up to {@code length} bytes out; returns the byte count read. Reader thread only. */
+    public int read(byte[] dst, int offset, int length) {
+        int count = Math.min(length, available());
+        long position = readPosition;
+        int start = (int) (position % buffer.length);
+        int first = Math.min(count, buffer.length - start);
+        System.arraycopy(buffer, start, dst, offset, first);
+        System.arraycopy(buffer, 0, dst, offset + first, count - first);
+        readPosition = position + count;
+        return count;
+    }
+
+    /** Empties the ring for reuse by the next recording; neither thread may be using it. */
+    public void clear() {
+        readPosition = writePosition;
+        droppedBytes = 0;
+    }
+
+    /** Bytes refused because the ring was full. Writer thread only. */
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+}
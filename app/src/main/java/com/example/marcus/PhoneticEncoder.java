@@ -0,0 +1,214 @@
+package com.example.marcus;
+
+/**
+ * Metaphone-style phonetic keys for contact names.
+ *
+ * <p>Vowels after the first letter are dropped and consonants are mapped to a small set of sound
+ * classes, so spellings that speech recognition commonly confuses share a key: "Sanika" and
+ * "Sonika" both encode to {@code SNK}, "Sunita" and "Sunitha" to {@code SNT}. Compared with the
+ * classic Metaphone rules, "th" and the aspirated consonants of romanized Indian names ("bh",
+ * "dh", "kh", ...) fold into their plain stop, and "v"/"w" share a class.
+ *
+ * <p>Input is expected to be {@link NameNormalizer normalized}; anything other than a-z is
+ * treated as a word break.
+ */
+public final class PhoneticEncoder {
+
+    private PhoneticEncoder() {
+    }
+
+    /** Encodes every word of {@code normalized} and joins the keys with single spaces. */
+    public static String encode(String normalized) {
+        StringBuilder out = new StringBuilder(normalized.length());
+        int start = 0;
+        for (int i = 0; i <= normalized.length(); i++) {
+            if (i == normalized.length() || !isLetter(normalized.charAt(i))) {
+                if (i > start) {
+                    int before = out.length();
+                    if (before > 0) {
+                        out.append(' ');
+                    }
+                    if (!encodeWord(normalized, start, i, out) && before > 0) {
+                        out.setLength(before);
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        return out.toString();
+    }
+
+    /** Encodes a single word; returns an empty string if nothing in it is encodable. */
+    public static String encodeWord(String word) {
+        StringBuilder out = new StringBuilder(word.length());
+        encodeWord(word, 0, word.length(), out);
+        return out.toString();
+    }
+
+    // Appends the key for word[start, end) to out; returns false if nothing was appended.
+    private static boolean encodeWord(String word, int start, int end, StringBuilder out) {
+        int begin = out.length();
+        int i = start;
+
+        // Silent or simplified leading letter pairs.
+        if (end - start >= 2) {
+            char c0 = word.charAt(start);
+            char c1 = word.charAt(start + 1);
+            if ((c0 == 'k' || c0 == 'g' || c0 == 'p') && c1 == 'n' || c0 == 'w' && c1 == 'r') {
+                i++;
+            } else if (c0 == 'w' && c1 == 'h') {
+                out.append('F');
+                i += 2;
+            }
+        }
+        if (i < end && word.charAt(i) == 'x' && i == start) {
+            out.append('S');
+            i++;
+        }
+
+        char last = 0;
+        for (; i < end; i++) {
+            char c = word.charAt(i);
+            char next = i + 1 < end ? word.charAt(i + 1) : 0;
+            char code;
+            int skip = 0;
+            switch (c) {
+                case 'a':
+                case 'e':
+                case 'i':
+                case 'o':
+                case 'u':
+                    code = i == start ? 'A' : 0;
+                    break;
+                case 'b':
+                    // Final "mb" is silent; "bh" is an aspirated b.
+                    if (i == end - 1 && last == 'M') {
+                        code = 0;
+                    } else {
+                        code = 'B';
+                        skip = next == 'h' ? 1 : 0;
+                    }
+                    break;
+                case 'c':
+                    if (next == 'h') {
+                        code = 'X';
+                        skip = i + 2 < end && word.charAt(i + 2) == 'h' ? 2 : 1;
+                    } else if (next == 'i' || next == 'e' || next == 'y') {
+                        code = 'S';
+                    } else {
+                        code = 'K';
+                        skip = next == 'k' ? 1 : 0;
+                    }
+                    break;
+                case 'd':
+                    code = 'T';
+                    skip = next == 'h' ? 1 : 0;
+                    break;
+                case 'f':
+                    code = 'F';
+                    break;
+                case 'g':
+                    if (next == 'h') {
+                        code = 'K';
+                        skip = 1;
+                    } else if (next == 'n' && i + 2 == end) {
+                        code = 0;
+                    } else if (next == 'e' || next == 'i' || next == 'y') {
+                        code = 'J';
+                    } else {
+                        code = 'K';
+                    }
+                    break;
+                case 'h':
+                    // Only pronounced at the start of a word before a vowel.
+                    code = i == start && isVowel(next) ? 'H' : 0;
+                    break;
+                case 'j':
+                    code = 'J';
+                    skip = next == 'h' ? 1 : 0;
+                    break;
+                case 'k':
+                case 'q':
+                    code = 'K';
+                    skip = next == 'h' ? 1 : 0;
+                    break;
+                case 'l':
+                    code = 'L';
+                    break;
+                case 'm':
+                    code = 'M';
+                    break;
+                case 'n':
+                    code = 'N';
+                    break;
+                case 'p':
+                    if (next == 'h') {
+                        code = 'F';
+                        skip = 1;
+                    } else {
+                        code = 'P';
+                    }
+                    break;
+                case 'r':
+                    code = 'R';
+                    break;
+                case 's':
+                    if (next == 'h') {
+                        code = 'X';
+                        skip = 1;
+                    } else if (next == 'c' && i + 2 < end && word.charAt(i + 2) == 'h') {
+                        out.append('S');
+                        code = 'K';
+                        skip = 2;
+                    } else {
+                        code = 'S';
+                    }
+                    break;
+                case 't':
+                    if (next == 'i' && i + 2 < end && (word.charAt(i + 2) == 'a' || word.charAt(i + 2) == 'o')) {
+                        code = 'X';
+                    } else {
+                        code = 'T';
+                        skip = next == 'h' ? 1 : 0;
+                    }
+                    break;
+                case 'v':
+                    code = 'F';
+                    break;
+                case 'w':
+                    code = isVowel(next) ? 'F' : 0;
+                    break;
+                case 'x':
+                    out.append('K');
+                    code = 'S';
+                    break;
+                case 'y':
+                    code = isVowel(next) ? 'Y' : 0;
+                    break;
+                case 'z':
+                    code = 'S';
+                    break;
+                default:
+                    code = 0;
+                    break;
+            }
+            // Doubled letters and repeated sound classes collapse into one code.
+            if (code != 0 && code != last) {
+                out.append(code);
+            }
+            if (code != 0 || isVowel(c)) {
+                last = code;
+            }
+            i += skip;
+        }
+        return out.length() > begin;
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u';
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records from the microphone on its own thread and streams the PCM over the assistant's
+ * WebSocket as it is captured, through an {@link AudioStreamer}. Started and stopped by tapping
+ * the floating bubble; a recording also stops on its own after {@link #MAX_RECORDING_MS}. The
+ * caller has to be a foreground service of type {@code microphone} before {@link #start()}.
+ *
+ * <p>Each recording has its own stop flag, so a recording that is still winding down after
+ * {@link #stop()} can neither be revived by the next {@link #start()} nor end it. The ring buffer
+ * is allocated once and shared, so a new recording waits for the previous capture thread to exit.
+ */
+class PushToTalkRecorder {
+
+    private static final String TAG = "PushToTalkRecorder";
+    static final int SAMPLE_RATE = 16_000;
+    private static final int BYTES_PER_MS = SAMPLE_RATE * 2 / 1000;
+    // Small reads keep latency low; chunks are what goes on the wire.
+    private static final int READ_BYTES = 20 * BYTES_PER_MS;
+    private static final int CHUNK_BYTES = 100 * BYTES_PER_MS;
+    private static final int RING_BYTES = 1000 * BYTES_PER_MS;
+    static final long MAX_RECORDING_MS = 15_000;
+    // A stopped capture thread exits after its current read, which takes at most READ_BYTES of audio.
+    private static final long PREVIOUS_EXIT_TIMEOUT_MS = 200;
+
+    private final Context context;
+    private final WebSocketClientManager webSocketClientManager;
+    private final AudioStreamer.Sink sink;
+    private final Runnable onStopped;
+    private final PcmRingBuffer ring = new PcmRingBuffer(RING_BYTES);
+    // The running recording's flag; true until it is stopped, null once its thread has exited.
+    private final AtomicReference<AtomicBoolean> current = new AtomicReference<>();
+    private Thread captureThread;
+    private int nextStreamId = 1;
+
+    /** {@code onStopped} runs on the recording thread whenever a recording ends, for any reason. */
+    PushToTalkRecorder(Context context, WebSocketClientManager webSocketClientManager, Runnable onStopped) {
+        this.context = context.getApplicationContext();
+        this.webSocketClientManager = webSocketClientManager;
+        this.onStopped = onStopped;
+        this.sink = new AudioStreamer.Sink() {
+            @Override
+            public boolean sendText(String frame) {
+                return webSocketClientManager.send(frame);
+            }
+
+            @Override
+            public boolean sendBinary(byte[] frame) {
+                return webSocketClientManager.sendBinary(frame);
+            }
+        };
+    }
+
+    boolean hasPermission() {
+        return ContextCompat.checkSelfPermission(context, Manifest.permission.RECORD_AUDIO)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    boolean isRecording() {
+        AtomicBoolean recording = current.get();
+        return recording != null && recording.get();
+    }
+
+    /** Starts a recording; returns false if one is running, permission is missing or the server is offline. */
+    synchronized boolean start() {
+        if (isRecording() || !hasPermission()) {
+            return false;
+        }
+        if (webSocketClientManager.getConnectionState() != WebSocketClientManager.ConnectionState.CONNECTED) {
+            Log.w(TAG, "Not connected; not recording");
+            return false;
+        }
+        if (!awaitPreviousCapture()) {
+            Log.w(TAG, "Previous recording still shutting down; not recording");
+            return false;
+        }
+        ring.clear();
+        AudioStreamer streamer = new AudioStreamer(sink, nextStreamId++, SAMPLE_RATE, CHUNK_BYTES, ring,
+                Config.AUDIO_STREAM_DEFLATE);
+        AtomicBoolean recording = new AtomicBoolean(true);
+        current.set(recording);
+        captureThread = new Thread(() -> record(streamer, recording), "push-to-talk");
+        captureThread.start();
+        return true;
+    }
+
+    void stop() {
+        AtomicBoolean recording = current.get();
+        if (recording != null) {
+            recording.set(false);
+        }
+    }
+
+    // The ring is shared, so the last capture thread must be gone before the next one starts.
+    private boolean awaitPreviousCapture() {
+        if (captureThread == null) {
+            return true;
+        }
+        try {
+            captureThread.join(PREVIOUS_EXIT_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !captureThread.isAlive();
+    }
+
+    @SuppressLint("MissingPermission") // Checked in start().
+    private void record(AudioStreamer streamer, AtomicBoolean recording) {
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord audioRecord = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, Math.max(minBuffer, 4 * READ_BYTES));
+        try {
+            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                Log.e(TAG, "AudioRecord failed to initialize");
+                return;
+            }
+            if (!streamer.start()) {
+                // The server never opened the stream; its chunks would go nowhere.
+                Log.w(TAG, "Stream " + streamer.getStreamId() + " start refused");
+                return;
+            }
+            byte[] readBuffer = new byte[READ_BYTES];
+            long startedAt = SystemClock.elapsedRealtime();
+            audioRecord.startRecording();
+            while (recording.get() && SystemClock.elapsedRealtime() - startedAt < MAX_RECORDING_MS) {
+                int read = audioRecord.read(readBuffer, 0, readBuffer.length);
+                if (read < 0) {
+                    Log.e(TAG, "AudioRecord read failed: " + read);
+                    break;
+                }
+                streamer.write(readBuffer, 0, read);
+            }
+            audioRecord.stop();
+            streamer.finish();
+            Log.d(TAG, "Stream " + streamer.getStreamId() + ": " + streamer.getChunksSent() + " chunks, "
+                    + streamer.getBytesIn() + " bytes captured, " + streamer.getBytesOut() + " sent, "
+                    + streamer.getFramesRefused() + " refused");
+        } finally {
+            audioRecord.release();
+            recording.set(false);
+            // Only this recording's own state; a newer one has replaced it if it differs.
+            current.compareAndSet(recording, null);
+            onStopped.run();
+        }
+    }
+}
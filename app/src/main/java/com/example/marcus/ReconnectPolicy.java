@@ -0,0 +1,60 @@
+package com.example.marcus;
+
+import java.util.Random;
+
+/**
+ * Capped exponential backoff with jitter and a retry budget for the WebSocket supervisor.
+ *
+ * <p>Delays use "equal jitter": half of the capped exponential delay is fixed and the other half
+ * is random. A fleet of devices that lost the server at the same moment therefore spreads its
+ * reconnects over the window instead of retrying in lockstep, while no device ever retries
+ * immediately.
+ */
+public final class ReconnectPolicy {
+
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final double multiplier;
+    private final int maxAttempts;
+    private final Random random;
+
+    public ReconnectPolicy(long initialDelayMs, long maxDelayMs, double multiplier, int maxAttempts, Random random) {
+        if (initialDelayMs <= 0 || maxDelayMs < initialDelayMs || multiplier < 1.0 || maxAttempts < 0) {
+            throw new IllegalArgumentException("Invalid reconnect policy");
+        }
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.multiplier = multiplier;
+        this.maxAttempts = maxAttempts;
+        this.random = random;
+    }
+
+    /** 1 s doubling up to 2 min, 30 attempts per outage. */
+    public static ReconnectPolicy defaultPolicy() {
+        return new ReconnectPolicy(1000, 120_000, 2.0, 30, new Random());
+    }
+
+    /** Whether attempt number {@code attempt} (0-based) is still within the budget. */
+    public boolean hasBudget(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /** Upper bound of the delay before attempt {@code attempt}, without jitter. */
+    public long cappedDelayMs(int attempt) {
+        double delay = initialDelayMs * Math.pow(multiplier, Math.min(attempt, 62));
+        return (long) Math.min(delay, maxDelayMs);
+    }
+
+    /** Randomized delay before attempt {@code attempt}, in {@code [capped / 2, capped]}. */
+    public long nextDelayMs(int attempt) {
+        long capped = cappedDelayMs(attempt);
+        long half = capped / 2;
+        synchronized (random) {
+            return half + (long) (random.nextDouble() * (capped - half + 1));
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
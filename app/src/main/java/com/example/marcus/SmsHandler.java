@@ -0,0 +1,51 @@
+package com.example.marcus;
+
+import android.Manifest;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+/** Sends a text message to a contact looked up by name. */
+class SmsHandler implements CommandHandler {
+
+    private static final String TAG = "SmsHandler";
+
+    private final AssistantService service;
+
+    SmsHandler(AssistantService service) {
+        this.service = service;
+    }
+
+    @Override
+    public CommandResult handle(Command command, CommandTrace trace) {
+        Command.Sms sms = (Command.Sms) command;
+        String contactName = sms.getContactName();
+        String message = sms.getMessage();
+
+        // Check if permissions are granted
+        if (!service.hasPermission(Manifest.permission.READ_CONTACTS)) {
+            return service.requestPermission(Manifest.permission.READ_CONTACTS,
+                    "Contacts permission is required to send a message.");
+        }
+        if (!service.hasPermission(Manifest.permission.SEND_SMS)) {
+            return service.requestPermission(Manifest.permission.SEND_SMS,
+                    "SMS permission is required to send a message.");
+        }
+
+        // Look the phone number up in the shared contact index
+        ContactIndex.Contact contact = service.getContactDirectory().resolve(contactName);
+        trace.mark(CommandTrace.Checkpoint.LOOKED_UP);
+        if (contact != null && contact.getPrimaryNumber() != null) {
+            // Send the SMS
+            String number = contact.getPrimaryNumber();
+            service.fireOnMain(trace, () -> SmsManager.getDefault().sendTextMessage(number, null, message, null, null));
+            Log.d(TAG, "SMS sent to " + contact.getDisplayName() + ": " + message);
+            service.showNotification(NotificationDispatcher.Category.MESSAGE,
+                    "SMS sent to " + contact.getDisplayName());
+            return CommandResult.ok("SMS sent to " + contact.getDisplayName());
+        } else {
+            Log.e(TAG, "Contact not found: " + contactName);
+            service.showNotification(NotificationDispatcher.Category.MESSAGE, "Contact not found: " + contactName);
+            return CommandResult.failed("Contact not found: " + contactName);
+        }
+    }
+}
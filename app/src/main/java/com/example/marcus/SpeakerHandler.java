@@ -0,0 +1,53 @@
+package com.example.marcus;
+
+import android.util.Log;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Turns the speakerphone on or off through the service's {@link AudioRouteController}. During a
+ * call the result waits for the route change to be confirmed; before one, the request is left
+ * pending and its outcome is reported by notification when the call connects.
+ */
+class SpeakerHandler implements CommandHandler {
+
+    private static final String TAG = "SpeakerHandler";
+    // A little past the controller's own deadline, which always settles the request first.
+    private static final long RESULT_TIMEOUT_MS = AudioRouteStateMachine.ROUTE_CONFIRM_MS + 500;
+
+    private final AssistantService service;
+
+    SpeakerHandler(AssistantService service) {
+        this.service = service;
+    }
+
+    @Override
+    public CommandResult handle(Command command, CommandTrace trace) {
+        boolean on = ((Command.Speaker) command).isOn();
+        AudioRouteController controller = service.getAudioRouteController();
+        if (controller == null) {
+            Log.e(TAG, "AudioManager is null.");
+            service.showNotification(NotificationDispatcher.Category.AUDIO, "Failed to set speakerphone.");
+            return CommandResult.failed("Failed to set speakerphone");
+        }
+
+        boolean inCall = service.getCallState() == CallStateMonitor.State.OFFHOOK;
+        Future<CommandResult> result = controller.request(on);
+        trace.mark(CommandTrace.Checkpoint.FIRED);
+        if (!inCall && on) {
+            return CommandResult.ok("Speakerphone will turn on when the call connects");
+        }
+        try {
+            return result.get(RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CommandResult.failed("Interrupted while setting speakerphone");
+        } catch (ExecutionException | TimeoutException e) {
+            Log.e(TAG, "Speakerphone result unavailable", e);
+            return CommandResult.failed("Failed to set speakerphone");
+        }
+    }
+}
@@ -3,16 +3,36 @@ package com.example.marcus;
 import android.content.Intent;
 import android.media.MediaPlayer;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.widget.ImageView;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the logo while {@link StartupOrchestrator} warms the app up, and moves on to
+ * {@link WelcomeActivity} as soon as the server connection is up. The index builds and the splash
+ * sound carry on in the background.
+ */
 public class SplashActivity extends AppCompatActivity {
 
-    private MediaPlayer splashSound;
+    private static final String TAG = "SplashActivity";
+    // Never keep the splash up longer than the old fixed delay.
+    private static final long READY_TIMEOUT_MS = 3000;
+
+    // The sound outlives the splash; held here so the player is not collected mid-play.
+    private static MediaPlayer splashSound;
+
+    private ExecutorService startupWorkers;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -23,28 +43,83 @@ public class SplashActivity extends AppCompatActivity {
         Animation fadeInAnimation = AnimationUtils.loadAnimation(this, R.anim.fade_in);
         logoImageView.startAnimation(fadeInAnimation);
 
-        splashSound = MediaPlayer.create(this, R.raw.splash_sound2);
-        splashSound.start();
+        startupWorkers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        new StartupOrchestrator()
+                .critical("connection", this::connect)
+                .background("apps", () -> AppIndex.getInstance(this).warmUp())
+                .background("contacts", () -> ContactDirectory.getInstance(this).warmUp())
+                .background("sound", this::playSplashSound)
+                .start(startupWorkers, READY_TIMEOUT_MS, ContextCompat.getMainExecutor(this), this::onReady);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Lets running warm-up tasks finish, then lets the threads go.
+        startupWorkers.shutdown();
+    }
 
-        new Handler().postDelayed(() -> {
-            Intent intent = new Intent(SplashActivity.this, WelcomeActivity.class);
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-            startActivity(intent);
-            finish();
+    // Starts the service that owns the connection and waits for the handshake.
+    private void connect() throws InterruptedException {
+        AssistantService.start(this);
+        CountDownLatch connected = new CountDownLatch(1);
+        EventBus.Subscription subscription = WebSocketClientManager.getInstance().subscribe(
+                WebSocketClientManager.CONNECTION_STATE, EventBus.DIRECT, state -> {
+                    if (state == WebSocketClientManager.ConnectionState.CONNECTED) {
+                        connected.countDown();
+                    }
+                });
+        try {
+            connected.await(READY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } finally {
+            subscription.cancel();
+        }
+    }
 
+    // Decoding happens here, off the main thread; the player releases itself when done.
+    private void playSplashSound() {
+        MediaPlayer player = MediaPlayer.create(getApplicationContext(), R.raw.splash_sound2);
+        if (player == null) {
+            return;
+        }
+        player.setOnCompletionListener(SplashActivity::releaseSplashSound);
+        player.setOnErrorListener((mp, what, extra) -> {
+            releaseSplashSound(mp);
+            return true;
+        });
+        synchronized (SplashActivity.class) {
             if (splashSound != null) {
-                splashSound.release();
+                // Already playing from an earlier launch.
+                player.release();
+                return;
+            }
+            splashSound = player;
+        }
+        player.start();
+    }
+
+    private static void releaseSplashSound(MediaPlayer player) {
+        synchronized (SplashActivity.class) {
+            if (splashSound == player) {
                 splashSound = null;
             }
-        }, 3000);
+        }
+        player.release();
     }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (splashSound != null) {
-            splashSound.release();
-            splashSound = null;
+    private void onReady(StartupOrchestrator.Trace trace) {
+        Log.d(TAG, "Startup " + trace.format()
+                + "\n  process age " + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis()) + " ms");
+        if (isFinishing() || isDestroyed()) {
+            return;
         }
+        Intent intent = new Intent(SplashActivity.this, WelcomeActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+        finish();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+package com.example.marcus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the cold-start warm-up tasks in parallel and reports readiness as soon as every critical
+ * task has finished, or when the ready timeout expires, whichever comes first. Non-critical tasks
+ * keep running in the background after that.
+ *
+ * <p>Each launch produces a {@link Trace} with per-task timings; time-to-ready is also recorded
+ * in a process-wide histogram shown in {@link DiagnosticsActivity}.
+ */
+public final class StartupOrchestrator {
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    public interface Listener {
+        void onReady(Trace trace);
+    }
+
+    private static final LatencyHistogram timeToReady = new LatencyHistogram();
+    private static volatile Trace lastTrace;
+
+    /** Timing of one task, relative to {@link #start}. */
+    public static final class TaskRecord {
+        private final String name;
+        private final boolean critical;
+        private volatile long startNanos = -1;
+        private volatile long endNanos = -1;
+        private volatile Throwable error;
+
+        TaskRecord(String name, boolean critical) {
+            this.name = name;
+            this.critical = critical;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isCritical() {
+            return critical;
+        }
+
+        public boolean isFinished() {
+            return endNanos >= 0;
+        }
+
+        /** Run time in nanoseconds, or -1 if the task has not finished. */
+        public long getDurationNanos() {
+            return endNanos >= 0 ? endNanos - startNanos : -1;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+    }
+
+    public static final class Trace {
+        private final List<TaskRecord> tasks;
+        private final long readyNanos;
+        private final boolean timedOut;
+
+        Trace(List<TaskRecord> tasks, long readyNanos, boolean timedOut) {
+            this.tasks = tasks;
+            this.readyNanos = readyNanos;
+            this.timedOut = timedOut;
+        }
+
+        public List<TaskRecord> getTasks() {
+            return tasks;
+        }
+
+        public long getReadyNanos() {
+            return readyNanos;
+        }
+
+        /** Whether readiness was forced by the timeout while a critical task was still running. */
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        public String format() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.ROOT, "ready in %.1f ms%s", readyNanos / 1e6,
+                    timedOut ? " (timed out)" : ""));
+            for (TaskRecord task : tasks) {
+                out.append(String.format(Locale.ROOT, "%n  %-12s %s ", task.name, task.critical ? "*" : " "));
+                long duration = task.getDurationNanos();
+                out.append(duration >= 0 ? String.format(Locale.ROOT, "%.1f ms", duration / 1e6) : "running");
+                if (task.error != null) {
+                    out.append(" failed: ").append(task.error);
+                }
+            }
+            return out.toString();
+        }
+
+        @Override
+        public String toString() {
+            return format();
+        }
+    }
+
+    private static final class Entry {
+        final TaskRecord record;
+        final Task task;
+
+        Entry(TaskRecord record, Task task) {
+            this.record = record;
+            this.task = task;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final AtomicBoolean ready = new AtomicBoolean();
+    private long startNanos;
+
+    /** Adds a task whose completion gates readiness. */
+    public StartupOrchestrator critical(String name, Task task) {
+        entries.add(new Entry(new TaskRecord(name, true), task));
+        return this;
+    }
+
+    /** Adds a task that warms something up in the background without delaying readiness. */
+    public StartupOrchestrator background(String name, Task task) {
+        entries.add(new Entry(new TaskRecord(name, false), task));
+        return this;
+    }
+
+    /**
+     * Starts every task on {@code workers}, which must be able to run them all at once, and calls
+     * {@code listener} on {@code callbackExecutor} exactly once. A failing task counts as finished.
+     */
+    public void start(Executor workers, long readyTimeoutMs, Executor callbackExecutor, Listener listener) {
+        startNanos = System.nanoTime();
+        int criticalCount = 0;
+        List<TaskRecord> records = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            records.add(entry.record);
+            if (entry.record.critical) {
+                criticalCount++;
+            }
+        }
+        List<TaskRecord> taskRecords = Collections.unmodifiableList(records);
+        CountDownLatch criticalDone = new CountDownLatch(criticalCount);
+
+        for (Entry entry : entries) {
+            workers.execute(() -> {
+                entry.record.startNanos = System.nanoTime() - startNanos;
+                try {
+                    entry.task.run();
+                } catch (Exception e) {
+                    entry.record.error = e;
+                } finally {
+                    entry.record.endNanos = System.nanoTime() - startNanos;
+                    if (entry.record.critical) {
+                        criticalDone.countDown();
+                    }
+                }
+            });
+        }
+        workers.execute(() -> {
+            boolean finished;
+            try {
+                finished = criticalDone.await(readyTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finished = false;
+            }
+            if (!ready.compareAndSet(false, true)) {
+                return;
+            }
+            long readyNanos = System.nanoTime() - startNanos;
+            Trace trace = new Trace(taskRecords, readyNanos, !finished);
+            timeToReady.recordNanos(readyNanos);
+            lastTrace = trace;
+            callbackExecutor.execute(() -> listener.onReady(trace));
+        });
+    }
+
+    public static LatencyHistogram getTimeToReady() {
+        return timeToReady;
+    }
+
+    /** The trace of the most recent launch in this process, or {@code null}. */
+    public static Trace getLastTrace() {
+        return lastTrace;
+    }
+}
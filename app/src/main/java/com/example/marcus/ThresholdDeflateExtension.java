@@ -0,0 +1,172 @@
+package com.example.marcus;
+
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.exceptions.InvalidFrameException;
+import org.java_websocket.framing.ContinuousFrame;
+import org.java_websocket.framing.ControlFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * permessage-deflate (RFC 7692) that leaves messages below a size threshold uncompressed. Short
+ * command and result frames gain nothing from deflate and would only pay for it in CPU, while
+ * contact syncs, app lists and metric exports shrink several times over. The extension allows
+ * mixing: a message without the RSV1 bit is simply not compressed.
+ *
+ * <p>Every outgoing and incoming frame is counted in a shared {@link Stats}, with its size before
+ * and after and the time spent compressing, for tuning the threshold.
+ */
+public class ThresholdDeflateExtension extends PerMessageDeflateExtension {
+
+    /** Counters shared by every connection made from one configured extension. */
+    public static final class Stats {
+        private final AtomicLong compressedFrames = new AtomicLong();
+        private final AtomicLong bypassedFrames = new AtomicLong();
+        private final AtomicLong bytesBeforeCompression = new AtomicLong();
+        private final AtomicLong bytesAfterCompression = new AtomicLong();
+        private final AtomicLong bypassedBytes = new AtomicLong();
+        private final AtomicLong inflatedFrames = new AtomicLong();
+        private final LatencyHistogram deflateTime = new LatencyHistogram();
+        private final LatencyHistogram inflateTime = new LatencyHistogram();
+
+        public long getCompressedFrames() {
+            return compressedFrames.get();
+        }
+
+        public long getBypassedFrames() {
+            return bypassedFrames.get();
+        }
+
+        /** Compressed size over original size for the frames that were compressed; 1 if none were. */
+        public double getRatio() {
+            long before = bytesBeforeCompression.get();
+            return before == 0 ? 1 : (double) bytesAfterCompression.get() / before;
+        }
+
+        public LatencyHistogram getDeflateTime() {
+            return deflateTime;
+        }
+
+        public LatencyHistogram getInflateTime() {
+            return inflateTime;
+        }
+
+        public void reset() {
+            compressedFrames.set(0);
+            bypassedFrames.set(0);
+            bytesBeforeCompression.set(0);
+            bytesAfterCompression.set(0);
+            bypassedBytes.set(0);
+            inflatedFrames.set(0);
+            deflateTime.reset();
+            inflateTime.reset();
+        }
+
+        public String format() {
+            return String.format(Locale.ROOT, "deflated=%d (%d -> %d bytes, ratio %.2f, p50=%d us p99=%d us)"
+                            + " bypassed=%d (%d bytes) inflated=%d (p50=%d us)",
+                    compressedFrames.get(), bytesBeforeCompression.get(), bytesAfterCompression.get(), getRatio(),
+                    deflateTime.getPercentile(50), deflateTime.getPercentile(99),
+                    bypassedFrames.get(), bypassedBytes.get(),
+                    inflatedFrames.get(), inflateTime.getPercentile(50));
+        }
+    }
+
+    private final int thresholdBytes;
+    private final Stats stats;
+    // Continuation frames follow the first frame of their message, which alone carries RSV1.
+    private boolean compressingMessage;
+    private boolean inflatingMessage;
+
+    public ThresholdDeflateExtension(int thresholdBytes) {
+        this(thresholdBytes, new Stats());
+    }
+
+    private ThresholdDeflateExtension(int thresholdBytes, Stats stats) {
+        this.thresholdBytes = thresholdBytes;
+        this.stats = stats;
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void encodeFrame(Framedata inputFrame) {
+        if (!(inputFrame instanceof DataFrame)) {
+            return;
+        }
+        int size = inputFrame.getPayloadData().remaining();
+        if (!(inputFrame instanceof ContinuousFrame)) {
+            compressingMessage = size >= thresholdBytes;
+        }
+        if (!compressingMessage) {
+            stats.bypassedFrames.incrementAndGet();
+            stats.bypassedBytes.addAndGet(size);
+            return;
+        }
+        long start = System.nanoTime();
+        super.encodeFrame(inputFrame);
+        stats.deflateTime.recordNanos(System.nanoTime() - start);
+        stats.compressedFrames.incrementAndGet();
+        stats.bytesBeforeCompression.addAndGet(size);
+        stats.bytesAfterCompression.addAndGet(inputFrame.getPayloadData().remaining());
+    }
+
+    /**
+     * The base class inflates every data frame once the extension is negotiated (and rejects
+     * frames without RSV1 in {@link #isFrameValid}), but a peer may send any message uncompressed;
+     * only frames of a message that started with RSV1 are inflated.
+     */
+    @Override
+    public void decodeFrame(Framedata inputFrame) throws InvalidDataException {
+        if (!(inputFrame instanceof DataFrame)) {
+            return;
+        }
+        if (!(inputFrame instanceof ContinuousFrame)) {
+            inflatingMessage = inputFrame.isRSV1();
+        }
+        if (!inflatingMessage) {
+            return;
+        }
+        long start = System.nanoTime();
+        super.decodeFrame(inputFrame);
+        stats.inflateTime.recordNanos(System.nanoTime() - start);
+        stats.inflatedFrames.incrementAndGet();
+    }
+
+    /** Like the base class, except that a message's first frame may leave RSV1 clear. */
+    @Override
+    public void isFrameValid(Framedata inputFrame) throws InvalidDataException {
+        boolean rsv23 = inputFrame.isRSV2() || inputFrame.isRSV3();
+        if (inputFrame instanceof ContinuousFrame && (inputFrame.isRSV1() || rsv23)) {
+            throw new InvalidFrameException("RSV bits must not be set on continuation frames");
+        }
+        if (inputFrame instanceof DataFrame && rsv23) {
+            throw new InvalidFrameException("RSV2 and RSV3 must not be set");
+        }
+        if (inputFrame instanceof ControlFrame && (inputFrame.isRSV1() || rsv23)) {
+            throw new InvalidFrameException("RSV bits must not be set on control frames");
+        }
+    }
+
+    /** Each connection gets its own compressor state but reports into the same stats. */
+    @Override
+    public IExtension copyInstance() {
+        return new ThresholdDeflateExtension(thresholdBytes, stats);
+    }
+
+    @Override
+    public String toString() {
+        return "ThresholdDeflateExtension{threshold=" + thresholdBytes + "}";
+    }
+}
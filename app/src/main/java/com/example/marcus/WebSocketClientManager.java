@@ -2,85 +2,372 @@ package com.example.marcus;
 
 import android.util.Log;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ServerHandshake;
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class WebSocketClientManager {
 
     private static final String TAG = "WebSocketClientManager";
-    private static WebSocketClient webSocketClient;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final long HANDSHAKE_TIMEOUT_MS = 15_000;
+    private static final int CONNECTION_LOST_TIMEOUT_SECONDS = 30;
+    private static final String JOURNAL_FILE_NAME = "outbound-queue.journal";
+    private static final int MAX_BATCH_MESSAGES = 32;
+    private static final long MAX_BATCH_BYTES = 64 * 1024;
+    // Lets a burst of sends accumulate into a single batch.
+    private static final long FLUSH_LINGER_MS = 10;
     private static WebSocketClientManager instance;
-    private WebSocketConnectionListener listener;
 
-    public interface WebSocketConnectionListener {
-        void onConnected();
-        void onCommandReceived(String command);
+    /** Connection state changes; new subscribers receive the current state first. */
+    public static final EventBus.Topic<ConnectionState> CONNECTION_STATE = EventBus.Topic.sticky("connection-state");
+    /** Text frames received from the server. */
+    public static final EventBus.Topic<String> COMMANDS = EventBus.Topic.of("commands");
+    /** Outbound messages once they have been handed to the socket client for writing. */
+    public static final EventBus.Topic<String> ACKS = EventBus.Topic.of("acks");
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "websocket-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String serverUri;
+    private final ReconnectPolicy reconnectPolicy;
+    private final EventBus events = new EventBus();
+    // Template for each connection's extension, which shares its stats. Servers without
+    // permessage-deflate just leave it unnegotiated.
+    private final ThresholdDeflateExtension deflateExtension =
+            new ThresholdDeflateExtension(Config.WEBSOCKET_DEFLATE_THRESHOLD_BYTES);
+
+    private volatile WebSocketClient webSocketClient;
+    private ConnectionState state = ConnectionState.DISCONNECTED;
+    private boolean shouldReconnect = false;
+    private int reconnectAttempt = 0;
+    private ScheduledFuture<?> pendingReconnect;
+    private ScheduledFuture<?> handshakeWatchdog;
+
+    private File journalDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private OutboundQueue outboundQueue;
+    private boolean flushScheduled = false;
+
+    public enum ConnectionState {
+        DISCONNECTED,
+        CONNECTING,
+        CONNECTED,
+        WAITING_TO_RECONNECT,
+        // The reconnect budget is spent; only an explicit connect() tries again, which
+        // AssistantService makes whenever it is started or a network comes up.
+        GAVE_UP
     }
 
-    private WebSocketClientManager() {
-        // Private constructor to enforce singleton pattern
+    /** Creates an unshared manager, e.g. one pointed at a local test server. The app uses {@link #getInstance()}. */
+    WebSocketClientManager(String serverUri, ReconnectPolicy reconnectPolicy) {
+        this.serverUri = serverUri;
+        this.reconnectPolicy = reconnectPolicy;
+        events.publish(CONNECTION_STATE, state);
     }
 
-    public static WebSocketClientManager getInstance() {
+    public static synchronized WebSocketClientManager getInstance() {
         if (instance == null) {
-            instance = new WebSocketClientManager();
+            instance = new WebSocketClientManager(Config.WEBSOCKET_SERVER_URI, ReconnectPolicy.defaultPolicy());
         }
         return instance;
     }
 
-    public void setWebSocketConnectionListener(WebSocketConnectionListener listener) {
-        this.listener = listener;
+    /**
+     * Subscribes to {@code topic}. Events are handed to {@code executor}, so the socket's read
+     * thread never waits for a subscriber; use {@link EventBus#DIRECT} only for handlers that
+     * return immediately.
+     */
+    public <T> EventBus.Subscription subscribe(EventBus.Topic<T> topic, Executor executor,
+                                               EventBus.Subscriber<? super T> subscriber) {
+        return events.subscribe(topic, executor, subscriber);
+    }
+
+    /** Where the outbound queue spills to disk. Must be called before the first {@link #send}. */
+    public synchronized void setJournalDirectory(File directory) {
+        if (outboundQueue == null) {
+            journalDirectory = directory;
+        }
+    }
+
+    public synchronized ConnectionState getConnectionState() {
+        return state;
+    }
+
+    /**
+     * Connects and keeps the connection up, reconnecting with backoff after failures. Does nothing
+     * if a connection is already open or being opened.
+     */
+    public synchronized void connect() {
+        shouldReconnect = true;
+        if (state == ConnectionState.CONNECTING || state == ConnectionState.CONNECTED) {
+            return;
+        }
+        reconnectAttempt = 0;
+        cancelPendingReconnect();
+        openSocket();
     }
 
-    public void connect() {
+    private synchronized void openSocket() {
+        pendingReconnect = null;
+        if (!shouldReconnect || state == ConnectionState.CONNECTING || state == ConnectionState.CONNECTED) {
+            return;
+        }
         URI uri;
         try {
-            uri = new URI(Config.WEBSOCKET_SERVER_URI);
+            uri = new URI(serverUri);
         } catch (URISyntaxException e) {
-            e.printStackTrace();
+            Log.e(TAG, "Invalid server URI: " + serverUri, e);
+            setState(ConnectionState.GAVE_UP);
             return;
         }
 
-        webSocketClient = new WebSocketClient(uri) {
+        WebSocketClient client = createClient(uri);
+        client.setConnectionLostTimeout(CONNECTION_LOST_TIMEOUT_SECONDS);
+        webSocketClient = client;
+        setState(ConnectionState.CONNECTING);
+        client.connect();
+
+        // The connect timeout only covers the TCP connect; also bound the handshake.
+        handshakeWatchdog = scheduler.schedule(() -> {
+            if (client == webSocketClient && !client.isOpen()) {
+                Log.w(TAG, "WebSocket handshake timed out");
+                client.close();
+            }
+        }, HANDSHAKE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private WebSocketClient createClient(URI uri) {
+        return new WebSocketClient(uri, createDraft(), null, CONNECT_TIMEOUT_MS) {
             @Override
             public void onOpen(ServerHandshake handshakedata) {
-                Log.d(TAG, "WebSocket Connected");
-                if (listener != null) {
-                    listener.onConnected();
+                if (!isCurrent(this)) {
+                    return;
                 }
-                webSocketClient.send("Hello from Android!");
+                Log.d(TAG, "WebSocket Connected");
+                onSocketOpen();
+                WebSocketClientManager.this.send("Hello from Android!");
+                scheduleFlush();
             }
 
             @Override
             public void onMessage(String message) {
                 Log.d(TAG, "Received: " + message);
-                if (listener != null) {
-                    listener.onCommandReceived(message);
+                if (isCurrent(this)) {
+                    events.publish(COMMANDS, message);
                 }
             }
 
             @Override
             public void onClose(int code, String reason, boolean remote) {
-                Log.d(TAG, "WebSocket Closed: " + reason);
+                Log.d(TAG, "WebSocket Closed: " + code + " " + reason);
+                if (isCurrent(this)) {
+                    onSocketClosed();
+                }
             }
 
             @Override
             public void onError(Exception ex) {
+                // A close callback follows, which schedules the reconnect.
                 Log.e(TAG, "WebSocket Error: " + ex.getMessage(), ex);
             }
         };
+    }
+
+    private Draft createDraft() {
+        if (!Config.WEBSOCKET_DEFLATE) {
+            return new Draft_6455();
+        }
+        // A fresh copy per connection, so no compressor state outlives its socket.
+        return new Draft_6455(Collections.singletonList(deflateExtension.copyInstance()));
+    }
+
+    /** Compression counters for this manager's connections, whether or not deflate was negotiated. */
+    public ThresholdDeflateExtension.Stats getCompressionStats() {
+        return deflateExtension.getStats();
+    }
+
+    private boolean isCurrent(WebSocketClient client) {
+        return client == webSocketClient;
+    }
 
-        webSocketClient.connect();
+    private synchronized void onSocketOpen() {
+        reconnectAttempt = 0;
+        cancelHandshakeWatchdog();
+        setState(ConnectionState.CONNECTED);
+    }
+
+    private synchronized void onSocketClosed() {
+        cancelHandshakeWatchdog();
+        if (!shouldReconnect) {
+            setState(ConnectionState.DISCONNECTED);
+            return;
+        }
+        if (!reconnectPolicy.hasBudget(reconnectAttempt)) {
+            Log.e(TAG, "Giving up after " + reconnectAttempt + " reconnect attempts");
+            setState(ConnectionState.GAVE_UP);
+            return;
+        }
+        long delayMs = reconnectPolicy.nextDelayMs(reconnectAttempt++);
+        Log.d(TAG, "Reconnecting in " + delayMs + " ms (attempt " + reconnectAttempt + ")");
+        setState(ConnectionState.WAITING_TO_RECONNECT);
+        pendingReconnect = scheduler.schedule(this::openSocket, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void setState(ConnectionState newState) {
+        if (state == newState) {
+            return;
+        }
+        state = newState;
+        events.publish(CONNECTION_STATE, newState);
+    }
+
+    private void cancelPendingReconnect() {
+        if (pendingReconnect != null) {
+            pendingReconnect.cancel(false);
+            pendingReconnect = null;
+        }
+    }
+
+    private void cancelHandshakeWatchdog() {
+        if (handshakeWatchdog != null) {
+            handshakeWatchdog.cancel(false);
+            handshakeWatchdog = null;
+        }
+    }
+
+    /**
+     * Queues {@code message} for delivery. Messages sent while offline are buffered (spilling to
+     * disk past a memory threshold) and delivered in order once the socket is open. Returns
+     * {@code false} if the backpressure policy refused the message.
+     */
+    public boolean send(String message) {
+        OutboundQueue queue = getOutboundQueue();
+        if (queue == null) {
+            return false;
+        }
+        boolean queued;
+        try {
+            queued = queue.offer(message);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to queue outbound message", e);
+            return false;
+        }
+        if (!queued) {
+            Log.w(TAG, "Outbound queue full, message rejected (" + Config.OUTBOUND_QUEUE_POLICY + ")");
+        }
+        scheduleFlush();
+        return queued;
+    }
+
+    /**
+     * Sends a binary frame after everything already queued. Binary frames carry live data, so they
+     * are not buffered while offline: returns {@code false} unless the socket is connected.
+     */
+    public boolean sendBinary(byte[] frame) {
+        synchronized (this) {
+            if (state != ConnectionState.CONNECTED) {
+                return false;
+            }
+        }
+        // Runs on the flush thread, after a flush, so it cannot overtake a queued text frame.
+        scheduler.execute(() -> {
+            flush();
+            WebSocketClient client = webSocketClient;
+            if (client != null && client.isOpen()) {
+                client.send(frame);
+            }
+        });
+        return true;
+    }
+
+    private synchronized OutboundQueue getOutboundQueue() {
+        if (outboundQueue == null) {
+            try {
+                outboundQueue = new OutboundQueue(new File(journalDirectory, JOURNAL_FILE_NAME),
+                        Config.OUTBOUND_QUEUE_MEMORY_BYTES, Config.OUTBOUND_QUEUE_JOURNAL_BYTES,
+                        MAX_BATCH_MESSAGES, MAX_BATCH_BYTES, Config.OUTBOUND_QUEUE_POLICY,
+                        Config.OUTBOUND_QUEUE_BLOCK_TIMEOUT_MS);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to open outbound queue journal", e);
+            }
+        }
+        return outboundQueue;
+    }
+
+    private synchronized void scheduleFlush() {
+        if (flushScheduled || state != ConnectionState.CONNECTED) {
+            return;
+        }
+        flushScheduled = true;
+        scheduler.schedule(this::flush, FLUSH_LINGER_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+        OutboundQueue queue = getOutboundQueue();
+        if (queue == null) {
+            return;
+        }
+        try {
+            int sent = queue.flush(this::sendBatch);
+            if (sent > 0) {
+                Log.d(TAG, "Flushed " + sent + " queued messages, " + queue.size() + " still queued");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to flush outbound queue", e);
+        }
+    }
+
+    // Hands the whole batch to the client as a single socket write. The queue drops the batch once
+    // it is enqueued there, so frames still unwritten at a disconnect are lost.
+    private boolean sendBatch(List<String> batch) {
+        WebSocketClient client = webSocketClient;
+        if (client == null || !client.isOpen()) {
+            return false;
+        }
+        List<Framedata> frames = new ArrayList<>(batch.size());
+        for (String message : batch) {
+            frames.addAll(client.getDraft().createFrames(message, true));
+        }
+        client.sendFrame(frames);
+        if (events.hasSubscribers(ACKS)) {
+            for (String message : batch) {
+                events.publish(ACKS, message);
+            }
+        }
+        return true;
     }
 
-    public void disconnect() {
-        if (webSocketClient != null) {
-            webSocketClient.close();
+    public synchronized void disconnect() {
+        shouldReconnect = false;
+        cancelPendingReconnect();
+        cancelHandshakeWatchdog();
+        WebSocketClient client = webSocketClient;
+        webSocketClient = null;
+        if (client != null) {
+            client.close();
         }
+        setState(ConnectionState.DISCONNECTED);
     }
 
     public WebSocketClient getWebSocketClient() {
         return webSocketClient;
     }
-}
\ No newline at end of file
+}
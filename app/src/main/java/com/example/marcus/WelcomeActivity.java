@@ -5,10 +5,12 @@ import android.os.Bundle;
 import android.widget.Button;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 
-public class WelcomeActivity extends AppCompatActivity implements WebSocketClientManager.WebSocketConnectionListener {
+public class WelcomeActivity extends AppCompatActivity {
 
     private WebSocketClientManager webSocketClientManager;
+    private EventBus.Subscription stateSubscription;
     private Button signUpButton;
     private Button loginButton;
     private boolean isConnected = false;
@@ -45,30 +47,27 @@ public class WelcomeActivity extends AppCompatActivity implements WebSocketClien
         });
 
         webSocketClientManager = WebSocketClientManager.getInstance();
-        webSocketClientManager.setWebSocketConnectionListener(this);
-        webSocketClientManager.connect();
+        stateSubscription = webSocketClientManager.subscribe(WebSocketClientManager.CONNECTION_STATE,
+                ContextCompat.getMainExecutor(this), this::onConnectionStateChanged);
+        // The service owns the connection and keeps it alive after this screen is gone.
+        AssistantService.start(this);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        webSocketClientManager.disconnect();
+        // The connection is shared with the rest of the app; only stop observing it.
+        stateSubscription.cancel();
     }
 
-    @Override
-    public void onConnected() {
-        runOnUiThread(() -> {
-            isConnected = true;
-            // Enable the buttons when connected
-            signUpButton.setEnabled(true);
-            loginButton.setEnabled(true);
-            Toast.makeText(WelcomeActivity.this, "Connected to server", Toast.LENGTH_SHORT).show();
-        });
-    }
-
-    @Override
-    public void onCommandReceived(String command) {
-        // Handle commands if necessary
-        // If not needed, leave empty
+    private void onConnectionStateChanged(WebSocketClientManager.ConnectionState state) {
+        if (state != WebSocketClientManager.ConnectionState.CONNECTED || isConnected) {
+            return;
+        }
+        isConnected = true;
+        // Enable the buttons when connected
+        signUpButton.setEnabled(true);
+        loginButton.setEnabled(true);
+        Toast.makeText(WelcomeActivity.this, "Connected to server", Toast.LENGTH_SHORT).show();
     }
 }
\ No newline at end of file
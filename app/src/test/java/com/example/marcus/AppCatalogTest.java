@@ -0,0 +1,95 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AppCatalogTest {
+
+    private static AppCatalog.App app(String packageName, String label, long version) {
+        return new AppCatalog.App(packageName, label, version, "v" + version);
+    }
+
+    private static String arg(String frame, String name) throws IOException {
+        return CommandEnvelope.decode(frame).getStringArg(name);
+    }
+
+    @Test
+    public void firstSyncIsFullThenOnlyChangesAreSent() throws IOException {
+        AppCatalog catalog = new AppCatalog();
+        catalog.replaceAll(Arrays.asList(app("com.a", "Alpha", 1), app("com.b", "Beta", 1), app("com.c", "Gamma", 1)));
+        List<String> frames = new ArrayList<>();
+
+        assertTrue(catalog.sync(frames::add, false, false) > 0);
+        assertEquals(AppCatalog.MODE_FULL, arg(frames.get(0), "mode"));
+        assertTrue(frames.get(0).contains("com.c"));
+        String fullHash = arg(frames.get(0), "hash");
+
+        // Nothing changed: nothing to send, unless the server should see the hash anyway.
+        assertEquals(0, catalog.sync(frames::add, false, false));
+        assertTrue(catalog.sync(frames::add, false, true) > 0);
+        assertEquals(AppCatalog.MODE_DIFF, arg(frames.get(1), "mode"));
+        assertEquals(fullHash, arg(frames.get(1), "base"));
+        assertEquals(fullHash, arg(frames.get(1), "hash"));
+
+        catalog.put(app("com.b", "Beta", 2));
+        catalog.remove("com.c");
+        catalog.put(app("com.d", "Delta", 1));
+        assertTrue(catalog.sync(frames::add, false, false) > 0);
+        String diff = frames.get(2);
+        assertEquals(AppCatalog.MODE_DIFF, arg(diff, "mode"));
+        assertEquals(fullHash, arg(diff, "base"));
+        assertEquals(catalog.getHash(), arg(diff, "hash"));
+        assertFalse(diff.contains("com.a"));
+        assertTrue(diff.contains("\"com.b\""));
+        assertTrue(diff.contains("\"com.d\""));
+        assertTrue(diff.contains("\"removed\":[\"com.c\"]"));
+    }
+
+    @Test
+    public void hashDependsOnContentNotOrder() {
+        AppCatalog forward = new AppCatalog();
+        forward.replaceAll(Arrays.asList(app("com.a", "Alpha", 1), app("com.b", "Beta", 1)));
+        AppCatalog reverse = new AppCatalog();
+        reverse.put(app("com.b", "Beta", 1));
+        reverse.put(app("com.a", "Alpha", 1));
+        assertEquals(forward.getHash(), reverse.getHash());
+
+        String before = forward.getHash();
+        forward.put(app("com.a", "Alpha", 2));
+        assertNotEquals(before, forward.getHash());
+        forward.put(app("com.a", "Alpha", 1));
+        assertEquals(before, forward.getHash());
+        forward.remove("com.b");
+        forward.remove("com.a");
+        assertEquals(new AppCatalog().getHash(), forward.getHash());
+
+        assertNotEquals(new AppCatalog.App("com.a", "ab", 1, "c").getHash(),
+                new AppCatalog.App("com.a", "a", 1, "bc").getHash());
+        assertNotEquals(new AppCatalog.App("com.a", "A", 1, null).getHash(),
+                new AppCatalog.App("com.a", "A", 1, "").getHash());
+    }
+
+    @Test
+    public void refusedFrameForcesFullResend() throws IOException {
+        AppCatalog catalog = new AppCatalog();
+        catalog.replaceAll(Collections.singletonList(app("com.a", "Alpha", 1)));
+        List<String> frames = new ArrayList<>();
+        catalog.sync(frames::add, false, false);
+
+        catalog.put(app("com.b", "Beta", 1));
+        assertEquals(-1, catalog.sync(frame -> false, false, false));
+        assertFalse(catalog.hasSynced());
+
+        assertTrue(catalog.sync(frames::add, false, false) > 0);
+        assertEquals(AppCatalog.MODE_FULL, arg(frames.get(1), "mode"));
+        assertTrue(frames.get(1).contains("com.a"));
+        assertTrue(frames.get(1).contains("com.b"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AudioRouteStateMachineTest {
+
+    /** Records what the machine asked for; the route only changes when the test says so. */
+    private static final class FakeRouter implements AudioRouteStateMachine.Router, AudioRouteStateMachine.Listener {
+        final List<String> events = new ArrayList<>();
+        boolean speakerActive;
+        boolean available = true;
+
+        @Override
+        public boolean apply(boolean speaker) {
+            events.add("apply " + speaker);
+            return available;
+        }
+
+        @Override
+        public boolean isSpeakerActive() {
+            return speakerActive;
+        }
+
+        @Override
+        public void release() {
+            events.add("release");
+        }
+
+        @Override
+        public void onRouted(boolean speaker) {
+            events.add("routed " + speaker);
+        }
+
+        @Override
+        public void onFailed(boolean speaker, String reason) {
+            events.add("failed " + reason);
+        }
+    }
+
+    @Test
+    public void waitsForCallThenConfirmsFromRouteEvent() {
+        FakeRouter router = new FakeRouter();
+        AudioRouteStateMachine machine = new AudioRouteStateMachine(router, router);
+
+        machine.request(true, 0);
+        assertEquals(AudioRouteStateMachine.State.WAITING_FOR_CALL, machine.getState());
+        assertTrue(router.events.isEmpty());
+
+        machine.onCallStateChanged(CallStateMonitor.State.OFFHOOK, 4000);
+        assertEquals(AudioRouteStateMachine.State.SWITCHING, machine.getState());
+        assertEquals(4000 + AudioRouteStateMachine.ROUTE_CONFIRM_MS, machine.getDeadlineMs());
+
+        router.speakerActive = true;
+        machine.onRouteChanged(true);
+        assertEquals(AudioRouteStateMachine.State.ROUTED, machine.getState());
+        assertEquals(-1, machine.getDeadlineMs());
+
+        machine.onCallStateChanged(CallStateMonitor.State.IDLE, 9000);
+        assertEquals(AudioRouteStateMachine.State.IDLE, machine.getState());
+        assertEquals(Arrays.asList("apply true", "routed true", "release"), router.events);
+    }
+
+    @Test
+    public void synchronousRouteSucceedsWithoutEvent() {
+        FakeRouter router = new FakeRouter();
+        router.speakerActive = true;
+        AudioRouteStateMachine machine = new AudioRouteStateMachine(router, router);
+        machine.onCallStateChanged(CallStateMonitor.State.OFFHOOK, 0);
+
+        machine.request(true, 10);
+        assertEquals(AudioRouteStateMachine.State.ROUTED, machine.getState());
+        assertTrue(router.events.contains("routed true"));
+    }
+
+    @Test
+    public void deadlineFailsMissingEvents() {
+        FakeRouter router = new FakeRouter();
+        AudioRouteStateMachine machine = new AudioRouteStateMachine(router, router);
+        machine.request(true, 0);
+        machine.onDeadline(AudioRouteStateMachine.CALL_WAIT_MS - 1);
+        assertEquals(AudioRouteStateMachine.State.WAITING_FOR_CALL, machine.getState());
+        machine.onDeadline(AudioRouteStateMachine.CALL_WAIT_MS);
+        assertTrue(router.events.contains("failed No active call"));
+
+        machine.onCallStateChanged(CallStateMonitor.State.OFFHOOK, 70_000);
+        machine.request(true, 70_000);
+        machine.onDeadline(70_000 + AudioRouteStateMachine.ROUTE_CONFIRM_MS);
+        assertTrue(router.events.contains("failed Audio route did not change"));
+        assertEquals(AudioRouteStateMachine.State.IDLE, machine.getState());
+    }
+
+    @Test
+    public void unavailableRouteAndHangUpFail() {
+        FakeRouter router = new FakeRouter();
+        router.available = false;
+        AudioRouteStateMachine machine = new AudioRouteStateMachine(router, router);
+        machine.onCallStateChanged(CallStateMonitor.State.OFFHOOK, 0);
+        machine.request(true, 0);
+        assertTrue(router.events.contains("failed Audio route unavailable"));
+
+        router.available = true;
+        machine.request(true, 100);
+        machine.onCallStateChanged(CallStateMonitor.State.IDLE, 200);
+        assertTrue(router.events.contains("failed Call ended before the route changed"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.marcus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streams synthetic PCM through a real {@link WebSocketClientManager} to {@link LoopbackServer}
+ * and checks the server can reassemble exactly what was captured, chunk by chunk.
+ */
+public class AudioStreamerLoopbackTest {
+
+    private static final int SAMPLE_RATE = 16_000;
+    private static final int READ_BYTES = 640;
+    private static final int CHUNK_BYTES = 3200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LoopbackServer server;
+    private WebSocketClientManager manager;
+    private AudioStreamer.Sink sink;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+        server.startAndWait();
+        manager = new WebSocketClientManager(server.getUri(), new ReconnectPolicy(20, 200, 2.0, 20, new Random(1)));
+        manager.setJournalDirectory(folder.getRoot());
+        // The server sees the socket before the client's onOpen; binary frames need CONNECTED.
+        CountDownLatch connected = new CountDownLatch(1);
+        EventBus.Subscription subscription = manager.subscribe(WebSocketClientManager.CONNECTION_STATE,
+                EventBus.DIRECT, state -> {
+                    if (state == WebSocketClientManager.ConnectionState.CONNECTED) {
+                        connected.countDown();
+                    }
+                });
+        manager.connect();
+        assertTrue(server.awaitConnections(1, 5000));
+        assertTrue(connected.await(5, TimeUnit.SECONDS));
+        subscription.cancel();
+        sink = new AudioStreamer.Sink() {
+            @Override
+            public boolean sendText(String frame) {
+                return manager.send(frame);
+            }
+
+            @Override
+            public boolean sendBinary(byte[] frame) {
+                return manager.sendBinary(frame);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.disconnect();
+        server.shutdown();
+    }
+
+    @Test
+    public void rawStreamArrivesIntact() throws Exception {
+        stream(false);
+    }
+
+    @Test
+    public void deflatedStreamArrivesIntact() throws Exception {
+        stream(true);
+    }
+
+    private void stream(boolean deflate) throws Exception {
+        // 1.23 s of a 440 Hz tone with a little noise, so chunks end on a partial one.
+        byte[] pcm = syntheticPcm(1230);
+        AudioStreamer streamer = new AudioStreamer(sink, 7, SAMPLE_RATE, CHUNK_BYTES, 4 * CHUNK_BYTES, deflate);
+        assertTrue(streamer.start());
+        for (int offset = 0; offset < pcm.length; offset += READ_BYTES) {
+            streamer.write(pcm, offset, Math.min(READ_BYTES, pcm.length - offset));
+        }
+        streamer.finish();
+
+        assertEquals(CommandEnvelope.TYPE_AUDIO_START, nextEnvelope().getType());
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int sequence = 0;
+        boolean compressedAny = false;
+        AudioFrameCodec.Frame frame;
+        do {
+            byte[] bytes = server.takeBinary(5000);
+            assertNotNull("missing chunk " + sequence, bytes);
+            frame = AudioFrameCodec.decode(bytes);
+            assertEquals(7, frame.getStreamId());
+            assertEquals(sequence++, frame.getSequence());
+            compressedAny |= frame.isCompressed();
+            received.write(frame.getPcm());
+        } while (!frame.isLast());
+        CommandEnvelope end = nextEnvelope();
+        assertEquals(CommandEnvelope.TYPE_AUDIO_END, end.getType());
+
+        assertArrayEquals(pcm, received.toByteArray());
+        assertEquals(pcm.length / CHUNK_BYTES + 1, sequence);
+        assertEquals(sequence, streamer.getChunksSent());
+        assertEquals(0, streamer.getFramesRefused());
+        assertEquals(deflate, compressedAny);
+    }
+
+    private CommandEnvelope nextEnvelope() throws InterruptedException, IOException {
+        while (true) {
+            String message = server.takeMessage(5000);
+            assertNotNull(message);
+            if (message.startsWith("{")) {
+                return CommandEnvelope.decode(message);
+            }
+            // Skip the plain-text greeting sent on connect.
+        }
+    }
+
+    private static byte[] syntheticPcm(int millis) {
+        int samples = SAMPLE_RATE * millis / 1000;
+        byte[] pcm = new byte[samples * 2];
+        Random random = new Random(42);
+        for (int i = 0; i < samples; i++) {
+            short sample = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE) + random.nextGaussian() * 200);
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CommandEnvelopeTest {
+
+    @Test
+    public void decodesFieldsInAnyOrder() throws IOException {
+        CommandEnvelope envelope = CommandEnvelope.decode(
+                "{\"args\":{\"extra\":[1,{\"x\":null}],\"text\":\"call \\\"Mom\\\"\"},"
+                        + "\"ts\":1700000000123,\"unknown\":true,\"type\":\"command\",\"id\":\"c-42\"}");
+        assertEquals("c-42", envelope.getId());
+        assertEquals(CommandEnvelope.TYPE_COMMAND, envelope.getType());
+        assertEquals(1700000000123L, envelope.getTimestamp());
+        assertEquals("call \"Mom\"", envelope.getText());
+        assertNull(envelope.getStringArg("missing"));
+        assertEquals(-1, envelope.getLongArg("missing", -1));
+        assertEquals(1, CommandEnvelope.decode("{\"type\":\"contactSync\",\"args\":{\"mode\":\"x\",\"ack\":1}}")
+                .getLongArg("ack", -1));
+    }
+
+    @Test
+    public void bareStringsAreLegacyCommands() throws IOException {
+        CommandEnvelope envelope = CommandEnvelope.decode("  open youtube \n");
+        assertNull(envelope.getId());
+        assertEquals(CommandEnvelope.TYPE_COMMAND, envelope.getType());
+        assertEquals("open youtube", envelope.getText());
+    }
+
+    @Test
+    public void malformedFramesAreRejected() {
+        String[] frames = {
+                "{\"id\":\"1\",\"type\":\"command\"",
+                "{\"id\":\"1\"}",
+                "{\"type\":\"command\",\"args\":\"call mom\"}",
+                "{\"type\":\"command\"} trailing",
+                "{\"type\":\"comm\\qand\"}",
+                "{\"type\":\"command\",\"ts\":\"abc\"}",
+                "{\"type\":\"command\",\"ts\":12x}",
+                "{\"type\":\"command\",\"ts\":-}",
+                "{\"type\":\"command\",\"ts\":01}",
+                "{\"type\":\"command\",\"ts\":1e400}",
+        };
+        for (String frame : frames) {
+            try {
+                CommandEnvelope.decode(frame);
+                fail("Expected failure for " + frame);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void resultFrameRoundTrips() throws IOException {
+        CommandTrace trace = CommandTrace.start();
+        trace.mark(CommandTrace.Checkpoint.PARSED);
+        trace.mark(CommandTrace.Checkpoint.DISPATCHED);
+        trace.mark(CommandTrace.Checkpoint.COMPLETED);
+        String frame = CommandEnvelope.encodeResult("c-7", Command.Type.SMS,
+                CommandResult.failed("Contact not found: \u092e\u093e\u0901\n"), trace);
+        CommandEnvelope result = CommandEnvelope.decode(frame);
+        assertEquals("c-7", result.getId());
+        assertEquals(CommandEnvelope.TYPE_RESULT, result.getType());
+        assertEquals("failed", result.getStringArg("status"));
+        assertEquals("Contact not found: \u092e\u093e\u0901\n", result.getStringArg("message"));
+        assertEquals("SMS", result.getStringArg("command"));
+
+        JsonPullParser parser = result.openArgs();
+        parser.beginObject();
+        long queueUs = -1;
+        long totalUs = -1;
+        boolean hasLookup = false;
+        while (parser.hasNext()) {
+            if (!parser.nextName().equals("timing")) {
+                parser.skipValue();
+                continue;
+            }
+            parser.beginObject();
+            while (parser.hasNext()) {
+                String name = parser.nextName();
+                if (name.equals("queueUs")) {
+                    queueUs = parser.nextLong();
+                } else if (name.equals("totalUs")) {
+                    totalUs = parser.nextLong();
+                } else {
+                    hasLookup |= name.equals("lookupUs");
+                    parser.skipValue();
+                }
+            }
+            parser.endObject();
+        }
+        parser.endObject();
+        assertTrue(queueUs >= 0);
+        assertTrue(totalUs >= queueUs);
+        // Stages the command never reached are left out.
+        assertFalse(hasLookup);
+    }
+
+    @Test
+    public void writerTracksSeparators() {
+        String json = new JsonStreamWriter().beginObject()
+                .name("a").beginArray().value(1).value("two").beginObject().endObject().nullValue().endArray()
+                .name("b").value(true)
+                .name("c").value(1.5)
+                .endObject().toString();
+        assertEquals("{\"a\":[1,\"two\",{},null],\"b\":true,\"c\":1.5}", json);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.marcus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CommandExecutorTest {
+
+    private ExecutorService main;
+    private Thread mainThread;
+    private CommandExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        main = Executors.newSingleThreadExecutor();
+        mainThread = main.submit(Thread::currentThread).get();
+        executor = new CommandExecutor(1, 2, main, mainThread);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        main.shutdownNow();
+    }
+
+    @Test
+    public void hopsToMainOnlyForTheAction() throws InterruptedException {
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        AtomicReference<Thread> action = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        assertTrue(executor.execute(() -> {
+            worker.set(Thread.currentThread());
+            action.set(executor.runOnMain(Thread::currentThread));
+            done.countDown();
+        }));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNotSame(mainThread, worker.get());
+        assertSame(mainThread, action.get());
+    }
+
+    @Test
+    public void runsInlineWhenAlreadyOnMain() throws Exception {
+        // Would deadlock if it posted to the single main thread and waited.
+        Thread thread = main.submit(() -> executor.runOnMain(Thread::currentThread)).get(5, TimeUnit.SECONDS);
+        assertSame(mainThread, thread);
+    }
+
+    @Test
+    public void mainThreadExceptionsReachTheWorker() {
+        try {
+            executor.runOnMain(() -> {
+                throw new IllegalArgumentException("no activity");
+            });
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertEquals("no activity", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsWhenTheQueueIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        // One running plus two queued fill the pool.
+        assertTrue(executor.execute(blocker));
+        assertTrue(executor.execute(blocker));
+        assertTrue(executor.execute(blocker));
+        assertFalse(executor.execute(blocker));
+        release.countDown();
+    }
+}
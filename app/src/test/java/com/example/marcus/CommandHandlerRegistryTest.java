@@ -0,0 +1,43 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CommandHandlerRegistryTest {
+
+    @Test
+    public void handlersAreCreatedOnFirstUseOnly() {
+        AtomicInteger created = new AtomicInteger();
+        CommandHandlerRegistry registry = new CommandHandlerRegistry()
+                .register(Command.Type.END_CALL, () -> {
+                    created.incrementAndGet();
+                    return (command, trace) -> CommandResult.ok("ended");
+                });
+        assertFalse(registry.isCreated(Command.Type.END_CALL));
+        assertEquals(0, created.get());
+
+        CommandHandler first = registry.get(Command.Type.END_CALL);
+        CommandHandler second = registry.get(Command.Type.END_CALL);
+        assertSame(first, second);
+        assertEquals(1, created.get());
+        assertTrue(registry.isCreated(Command.Type.END_CALL));
+    }
+
+    @Test
+    public void unregisteredTypesHaveNoHandler() {
+        CommandHandlerRegistry registry = new CommandHandlerRegistry();
+        assertNull(registry.get(Command.Type.INVALID));
+        assertFalse(registry.isCreated(Command.Type.INVALID));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateRegistrationIsRejected() {
+        CommandHandler handler = (command, trace) -> CommandResult.ok("");
+        new CommandHandlerRegistry()
+                .register(Command.Type.CALL, () -> handler)
+                .register(Command.Type.CALL, () -> handler);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CommandParserTest {
+
+    private final CommandParser parser = CommandParser.getDefault();
+
+    @Test
+    public void call_extractsContactName() {
+        Command command = parser.parse("  Call   Sanika Sarode ");
+        assertEquals(Command.Type.CALL, command.getType());
+        assertEquals("Sanika Sarode", ((Command.Call) command).getContactName());
+    }
+
+    @Test
+    public void sms_splitsOnFirstThat() {
+        Command command = parser.parse("SMS mom THAT I think that I am late");
+        assertEquals(Command.Type.SMS, command.getType());
+        Command.Sms sms = (Command.Sms) command;
+        assertEquals("mom", sms.getContactName());
+        assertEquals("I think that I am late", sms.getMessage());
+    }
+
+    @Test
+    public void sms_withoutMessageIsInvalid() {
+        assertEquals(Command.Type.INVALID, parser.parse("sms mom").getType());
+        assertEquals(Command.Type.INVALID, parser.parse("sms mom that").getType());
+        assertEquals(Command.Type.INVALID, parser.parse("sms thatcher").getType());
+    }
+
+    @Test
+    public void addContact_takesTrailingNumber() {
+        Command.AddContact plain = (Command.AddContact) parser.parse("add Sanika Sarode");
+        assertEquals("Sanika Sarode", plain.getContactName());
+        assertEquals(0, plain.getNumbers().length);
+
+        Command.AddContact withNumber = (Command.AddContact) parser.parse("add Sanika Sarode +91 98765-43210");
+        assertEquals("Sanika Sarode", withNumber.getContactName());
+        assertArrayEquals(new String[]{"+919876543210"}, withNumber.getNumbers());
+
+        // Too short to be a phone number, or nothing left for the name.
+        assertEquals("Agent 47", ((Command.AddContact) parser.parse("add Agent 47")).getContactName());
+        assertEquals("9876543210", ((Command.AddContact) parser.parse("add 9876543210")).getContactName());
+    }
+
+    @Test
+    public void phoneNumberTargets() {
+        assertEquals("+15551234567", CommandParser.phoneNumberOrNull("+1 (555) 123-4567"));
+        assertEquals("112", CommandParser.phoneNumberOrNull("112"));
+        assertNull(CommandParser.phoneNumberOrNull("42"));
+        assertNull(CommandParser.phoneNumberOrNull("Agent 47"));
+        assertNull(CommandParser.phoneNumberOrNull(""));
+    }
+
+    @Test
+    public void exactPhrases() {
+        assertSame(Command.EndCall.INSTANCE, parser.parse("end call"));
+        assertSame(Command.EndCall.INSTANCE, parser.parse("Cut  the call"));
+        assertSame(Command.Speaker.ON, parser.parse("speaker on"));
+        assertSame(Command.Speaker.OFF, parser.parse("SPEAKER OFF"));
+        assertEquals(Command.Type.INVALID, parser.parse("speaker on please").getType());
+    }
+
+    @Test
+    public void openApp_acceptsSeveralVerbs() {
+        assertEquals("YouTube", ((Command.OpenApp) parser.parse("open YouTube")).getAppName());
+        assertEquals("maps", ((Command.OpenApp) parser.parse("launch maps")).getAppName());
+        assertEquals("camera", ((Command.OpenApp) parser.parse("start camera")).getAppName());
+    }
+
+    @Test
+    public void shortAndUnknownCommandsAreInvalid() {
+        assertEquals(Command.Type.INVALID, parser.parse("").getType());
+        assertEquals(Command.Type.INVALID, parser.parse("hi").getType());
+        assertEquals(Command.Type.INVALID, parser.parse("call").getType());
+        assertEquals(Command.Type.INVALID, parser.parse("callmom").getType());
+        assertEquals(Command.Type.INVALID, parser.parse(null).getType());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicatePhrasesAreRejected() {
+        new CommandParser.Builder()
+                .exact("end call", Command.EndCall.INSTANCE)
+                .exact("End  Call", Command.EndCall.INSTANCE)
+                .build();
+    }
+
+    @Test
+    public void parseLatency() {
+        String[] commands = {
+                "call mom", "sms dad that on my way", "open whatsapp", "speaker on",
+                "end call", "add Sanika", "launch google maps", "what is the weather"
+        };
+        for (int i = 0; i < 50_000; i++) {
+            parser.parse(commands[i % commands.length]);
+        }
+        int iterations = 200_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parser.parse(commands[i % commands.length]);
+        }
+        long nanosPerParse = (System.nanoTime() - start) / iterations;
+        // Generous bound so the test stays stable on slow CI machines.
+        assertTrue("parse took " + nanosPerParse + " ns", nanosPerParse < 50_000);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CommandPipelineTest {
+
+    private static CommandPipeline decode(String args) throws IOException {
+        return CommandPipeline.decode(CommandEnvelope.decode(
+                "{\"id\":\"p-1\",\"type\":\"pipeline\",\"args\":" + args + "}"));
+    }
+
+    // Runs the pipeline to completion, resuming waits on a separate thread as the service does.
+    private static List<CommandPipeline.StepOutcome> run(CommandPipeline pipeline, CommandPipeline.StepRunner runner,
+                                                         CallStateMonitor callState) throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CompletableFuture<List<CommandPipeline.StepOutcome>> done = new CompletableFuture<>();
+            pipeline.start(CommandParser.getDefault(), runner, callState, scheduler, (task, delayMs) -> {
+                ScheduledFuture<?> future = scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+                return () -> future.cancel(false);
+            }, done::complete);
+            return done.get(5, TimeUnit.SECONDS);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void decodesStepsAndConditions() throws IOException {
+        CommandPipeline pipeline = decode("{\"steps\":[{\"text\":\" call mom \"},"
+                + "{\"text\":\"speaker on\",\"after\":\"offhook\",\"timeoutMs\":999999},"
+                + "{\"text\":\"open youtube\",\"after\":\"any\"},{\"text\":\"end call\"}]}");
+        List<CommandPipeline.Step> steps = pipeline.getSteps();
+        assertEquals(4, steps.size());
+        assertEquals("call mom", steps.get(0).getText());
+        assertEquals(CommandPipeline.Condition.ANY, steps.get(0).getAfter());
+        assertEquals(CommandPipeline.Condition.OFFHOOK, steps.get(1).getAfter());
+        assertEquals(CommandPipeline.MAX_TIMEOUT_MS, steps.get(1).getTimeoutMs());
+        assertEquals(CommandPipeline.Condition.ANY, steps.get(2).getAfter());
+        assertEquals(CommandPipeline.Condition.SUCCESS, steps.get(3).getAfter());
+    }
+
+    @Test
+    public void malformedPipelinesAreRejected() {
+        String[] args = {
+                "{}",
+                "{\"steps\":[]}",
+                "{\"steps\":[{\"after\":\"success\"}]}",
+                "{\"steps\":[{\"text\":\"call mom\",\"after\":\"later\"}]}",
+                "{\"steps\":[{\"text\":\"a\"},{\"text\":\"a\"},{\"text\":\"a\"},{\"text\":\"a\"},"
+                        + "{\"text\":\"a\"},{\"text\":\"a\"},{\"text\":\"a\"},{\"text\":\"a\"},{\"text\":\"a\"}]}",
+        };
+        for (String arg : args) {
+            try {
+                decode(arg);
+                fail("Expected failure for " + arg);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void failedStepSkipsDependentSteps() throws Exception {
+        CommandPipeline pipeline = decode("{\"steps\":[{\"text\":\"call nobody\"},"
+                + "{\"text\":\"speaker on\"},{\"text\":\"open youtube\",\"after\":\"any\"}]}");
+        List<Command.Type> ran = new ArrayList<>();
+        List<CommandPipeline.StepOutcome> outcomes = run(pipeline, command -> {
+            ran.add(command.getType());
+            return command.getType() == Command.Type.CALL
+                    ? CommandResult.failed("Contact not found: nobody")
+                    : CommandResult.ok("done");
+        }, new CallStateMonitor());
+
+        assertEquals(2, ran.size());
+        assertEquals(Command.Type.OPEN_APP, ran.get(1));
+        assertTrue(outcomes.get(1).isSkipped());
+        assertEquals(Command.Type.SPEAKER, outcomes.get(1).getType());
+        CommandResult summary = CommandPipeline.summarize(outcomes);
+        assertEquals(CommandResult.Status.FAILED, summary.getStatus());
+        assertEquals("Step 1 (call nobody): Contact not found: nobody", summary.getMessage());
+    }
+
+    @Test
+    public void offhookStepWaitsForTheCallToConnect() throws Exception {
+        CommandPipeline pipeline = decode("{\"steps\":[{\"text\":\"call mom\"},"
+                + "{\"text\":\"speaker on\",\"after\":\"offhook\",\"timeoutMs\":5000}]}");
+        CallStateMonitor callState = new CallStateMonitor();
+        List<CommandPipeline.StepOutcome> outcomes = run(pipeline, command -> {
+            if (command.getType() == Command.Type.CALL) {
+                Thread connect = new Thread(() -> {
+                    sleep(50);
+                    callState.update(CallStateMonitor.State.OFFHOOK);
+                });
+                connect.start();
+            } else {
+                assertEquals(CallStateMonitor.State.OFFHOOK, callState.getState());
+            }
+            return CommandResult.ok("done");
+        }, callState);
+
+        assertTrue(outcomes.get(1).getWaitNanos() > 0);
+        assertTrue(CommandPipeline.summarize(outcomes).isOk());
+    }
+
+    @Test
+    public void waitingStepReturnsTheThreadAndResumesOnTheCall() throws IOException {
+        CommandPipeline pipeline = decode("{\"steps\":[{\"text\":\"call mom\"},"
+                + "{\"text\":\"speaker on\",\"after\":\"offhook\",\"timeoutMs\":60000}]}");
+        CallStateMonitor callState = new CallStateMonitor();
+        List<Runnable> timeouts = new ArrayList<>();
+        List<List<CommandPipeline.StepOutcome>> finished = new ArrayList<>();
+        pipeline.start(CommandParser.getDefault(), command -> CommandResult.ok("done"), callState,
+                Runnable::run, (task, delayMs) -> {
+                    timeouts.add(task);
+                    return () -> timeouts.remove(task);
+                }, finished::add);
+
+        // start() returned while the second step waits, holding no thread.
+        assertTrue(finished.isEmpty());
+        assertEquals(1, timeouts.size());
+        callState.update(CallStateMonitor.State.OFFHOOK);
+        assertEquals(1, finished.size());
+        assertTrue(CommandPipeline.summarize(finished.get(0)).isOk());
+        assertTrue(timeouts.isEmpty());
+    }
+
+    @Test
+    public void rejectedResumeSkipsTheRest() throws IOException {
+        CommandPipeline pipeline = decode("{\"steps\":[{\"text\":\"call mom\"},"
+                + "{\"text\":\"speaker on\",\"after\":\"offhook\"},{\"text\":\"open youtube\",\"after\":\"any\"}]}");
+        CallStateMonitor callState = new CallStateMonitor();
+        List<List<CommandPipeline.StepOutcome>> finished = new ArrayList<>();
+        pipeline.start(CommandParser.getDefault(), command -> CommandResult.ok("done"), callState,
+                task -> {
+                    throw new RejectedExecutionException("full");
+                }, (task, delayMs) -> () -> {
+                }, finished::add);
+        callState.update(CallStateMonitor.State.OFFHOOK);
+
+        List<CommandPipeline.StepOutcome> outcomes = finished.get(0);
+        assertEquals("Too many pending commands", outcomes.get(1).getResult().getMessage());
+        assertTrue(outcomes.get(2).isSkipped());
+    }
+
+    @Test
+    public void offhookStepTimesOut() throws Exception {
+        CommandPipeline pipeline = decode("{\"steps\":[{\"text\":\"call mom\"},"
+                + "{\"text\":\"speaker on\",\"after\":\"offhook\",\"timeoutMs\":20}]}");
+        List<CommandPipeline.StepOutcome> outcomes = run(pipeline, command -> CommandResult.ok("done"), new CallStateMonitor());
+        assertEquals(CommandResult.Status.FAILED, outcomes.get(1).getResult().getStatus());
+    }
+
+    @Test
+    public void resultFrameListsEveryStep() throws Exception {
+        CommandPipeline pipeline = decode("{\"steps\":[{\"text\":\"call mom\"},{\"text\":\"speaker on\"}]}");
+        List<CommandPipeline.StepOutcome> outcomes = run(pipeline, command -> CommandResult.deferred("Waiting for permission"), new CallStateMonitor());
+        CommandTrace trace = CommandTrace.start();
+        trace.mark(CommandTrace.Checkpoint.COMPLETED);
+        CommandEnvelope frame = CommandEnvelope.decode(CommandEnvelope.encodePipelineResult(
+                "p-1", CommandPipeline.summarize(outcomes), outcomes, trace));
+        assertEquals("p-1", frame.getId());
+        assertEquals("deferred", frame.getStringArg("status"));
+
+        List<String> statuses = new ArrayList<>();
+        JsonPullParser parser = frame.openArgs();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if (!parser.nextName().equals("steps")) {
+                parser.skipValue();
+                continue;
+            }
+            parser.beginArray();
+            while (parser.hasNext()) {
+                parser.beginObject();
+                while (parser.hasNext()) {
+                    if (parser.nextName().equals("status")) {
+                        statuses.add(parser.nextString());
+                    } else {
+                        parser.skipValue();
+                    }
+                }
+                parser.endObject();
+            }
+            parser.endArray();
+        }
+        parser.endObject();
+        assertEquals(2, statuses.size());
+        assertEquals("deferred", statuses.get(0));
+        assertEquals("skipped", statuses.get(1));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
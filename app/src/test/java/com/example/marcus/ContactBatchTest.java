@@ -0,0 +1,79 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ContactBatchTest {
+
+    private static Command.AddContacts decode(String args) throws IOException {
+        return ContactBatch.decode(CommandEnvelope.decode(
+                "{\"id\":\"b-1\",\"type\":\"addContacts\",\"args\":" + args + "}"));
+    }
+
+    @Test
+    public void decodesNamesAndDistinctNumbers() throws IOException {
+        Command.AddContacts batch = decode("{\"contacts\":[{\"name\":\" Mom \",\"numbers\":[\"+911\",\"+911\",\"+912\"]},"
+                + "{\"name\":\"Dad\",\"extra\":true},{\"name\":\"Priya\",\"numbers\":null}]}");
+        List<Command.AddContact> contacts = batch.getContacts();
+        assertEquals(3, contacts.size());
+        assertEquals("Mom", contacts.get(0).getContactName());
+        assertArrayEquals(new String[]{"+911", "+912"}, contacts.get(0).getNumbers());
+        assertEquals(0, contacts.get(1).getNumbers().length);
+        assertEquals(Command.Type.ADD_CONTACTS, batch.getType());
+    }
+
+    @Test
+    public void malformedListsAreRejected() {
+        String[] args = {
+                "{}",
+                "{\"contacts\":[]}",
+                "{\"contacts\":[{\"numbers\":[\"1\"]}]}",
+                "{\"contacts\":[{\"name\":\"A\",\"numbers\":[\"1\",\"2\",\"3\",\"4\",\"5\",\"6\",\"7\",\"8\",\"9\"]}]}",
+        };
+        for (String arg : args) {
+            try {
+                decode(arg);
+                fail("Expected failure for " + arg);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void chunksNeverSplitAContact() {
+        List<Command.AddContact> contacts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            contacts.add(new Command.AddContact("Contact " + i, new String[]{"+91" + i, "+92" + i}));
+        }
+        // Four operations per contact: raw contact, name and two numbers.
+        List<List<Command.AddContact>> chunks = ContactBatch.chunk(contacts, 30);
+        assertEquals(15, chunks.size());
+        int total = 0;
+        for (List<Command.AddContact> chunk : chunks) {
+            int operations = 0;
+            for (Command.AddContact contact : chunk) {
+                operations += ContactBatch.operationCount(contact);
+            }
+            assertTrue(operations <= 30);
+            total += chunk.size();
+        }
+        assertEquals(100, total);
+        assertSame(contacts.get(7), chunks.get(1).get(0));
+    }
+
+    @Test
+    public void oversizedContactGetsAChunkOfItsOwn() {
+        List<Command.AddContact> contacts = new ArrayList<>();
+        contacts.add(new Command.AddContact("Small"));
+        contacts.add(new Command.AddContact("Large", new String[]{"1", "2", "3", "4"}));
+        List<List<Command.AddContact>> chunks = ContactBatch.chunk(contacts, 4);
+        assertEquals(2, chunks.size());
+        assertEquals("Large", chunks.get(1).get(0).getContactName());
+    }
+}
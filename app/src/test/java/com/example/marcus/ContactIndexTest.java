@@ -0,0 +1,56 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ContactIndexTest {
+
+    private static ContactIndex index() {
+        ContactIndex index = new ContactIndex();
+        index.replaceAll(Arrays.asList(
+                new ContactIndex.Contact(1, "Sanika Sarode", new String[]{"+911111111111"}),
+                new ContactIndex.Contact(2, "Mom", new String[]{"+912222222222", "+913333333333"}),
+                new ContactIndex.Contact(3, "Monika", new String[]{"+914444444444"}),
+                new ContactIndex.Contact(4, "José Álvarez", new String[]{"+34555555555"}),
+                new ContactIndex.Contact(5, "Momin Plumber", new String[]{"+916666666666"})));
+        return index;
+    }
+
+    @Test
+    public void exactAndContainsMatches() {
+        ContactIndex index = index();
+        assertEquals(2, index.find("MOM").getId());
+        assertEquals(1, index.find("sanika").getId());
+        assertEquals(5, index.find("plumber").getId());
+        assertEquals("+912222222222", index.find("mom").getPrimaryNumber());
+    }
+
+    @Test
+    public void spacingAndAccentsAreIgnored() {
+        ContactIndex index = index();
+        assertEquals(1, index.find("sanikasarode").getId());
+        assertEquals(4, index.find("jose alvarez").getId());
+    }
+
+    @Test
+    public void phoneticMatchesTranscriptionSlips() {
+        ContactIndex index = index();
+        assertEquals(1, index.find("Sonika").getId());
+        assertEquals(1, index.find("Sanica Sarod").getId());
+        assertEquals(3, index.find("Monica").getId());
+        assertNull(index.find("Rahul"));
+    }
+
+    @Test
+    public void incrementalUpdates() {
+        ContactIndex index = index();
+        index.put(new ContactIndex.Contact(1, "Sanika S", new String[]{"+917777777777"}));
+        assertEquals("+917777777777", index.find("sanika").getPrimaryNumber());
+        index.remove(3);
+        assertNull(index.find("monika"));
+        assertEquals(4, index.size());
+    }
+}
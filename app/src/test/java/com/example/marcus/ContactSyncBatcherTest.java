@@ -0,0 +1,168 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ContactSyncBatcherTest {
+
+    /** One decoded chunk: the scalar fields plus the ids it carried. */
+    private static final class Chunk {
+        long sync;
+        String mode;
+        long seq;
+        boolean last;
+        final List<Long> upsertIds = new ArrayList<>();
+        final List<String> firstNumbers = new ArrayList<>();
+        final List<Long> deletes = new ArrayList<>();
+        long totalUpserts = -1;
+        long totalDeletes = -1;
+    }
+
+    private static Chunk decode(String frame) throws IOException {
+        CommandEnvelope envelope = CommandEnvelope.decode(frame);
+        assertEquals(CommandEnvelope.TYPE_CONTACT_SYNC, envelope.getType());
+        Chunk chunk = new Chunk();
+        JsonPullParser parser = new JsonPullParser(envelope.getArgsJson());
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "sync":
+                    chunk.sync = parser.nextLong();
+                    break;
+                case "mode":
+                    chunk.mode = parser.nextString();
+                    break;
+                case "seq":
+                    chunk.seq = parser.nextLong();
+                    break;
+                case "last":
+                    chunk.last = parser.nextBoolean();
+                    break;
+                case "upserts":
+                    parser.beginArray();
+                    while (parser.hasNext()) {
+                        parser.beginObject();
+                        String firstNumber = null;
+                        while (parser.hasNext()) {
+                            String name = parser.nextName();
+                            if ("id".equals(name)) {
+                                chunk.upsertIds.add(parser.nextLong());
+                            } else if ("numbers".equals(name)) {
+                                parser.beginArray();
+                                while (parser.hasNext()) {
+                                    String number = parser.nextString();
+                                    if (firstNumber == null) {
+                                        firstNumber = number;
+                                    }
+                                }
+                                parser.endArray();
+                            } else {
+                                parser.skipValue();
+                            }
+                        }
+                        parser.endObject();
+                        chunk.firstNumbers.add(firstNumber);
+                    }
+                    parser.endArray();
+                    break;
+                case "deletes":
+                    parser.beginArray();
+                    while (parser.hasNext()) {
+                        chunk.deletes.add(parser.nextLong());
+                    }
+                    parser.endArray();
+                    break;
+                case "totalUpserts":
+                    chunk.totalUpserts = parser.nextLong();
+                    break;
+                case "totalDeletes":
+                    chunk.totalDeletes = parser.nextLong();
+                    break;
+                default:
+                    parser.skipValue();
+            }
+        }
+        parser.endObject();
+        return chunk;
+    }
+
+    @Test
+    public void splitsIntoBoundedChunksAndMarksTheLast() throws IOException {
+        List<String> frames = new ArrayList<>();
+        ContactSyncBatcher batcher = new ContactSyncBatcher(frames::add, 7, true, 2);
+        for (long id = 1; id <= 5; id++) {
+            assertTrue(batcher.upsert(id, "Contact \"" + id + "\"", new String[]{"+91" + id, "555"}, 1000 + id));
+        }
+        assertTrue(batcher.finish());
+
+        assertEquals(3, frames.size());
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < frames.size(); i++) {
+            Chunk chunk = decode(frames.get(i));
+            assertEquals(7, chunk.sync);
+            assertEquals(ContactSyncBatcher.MODE_FULL, chunk.mode);
+            assertEquals(i, chunk.seq);
+            assertEquals(i == frames.size() - 1, chunk.last);
+            assertTrue(chunk.upsertIds.size() <= 2);
+            ids.addAll(chunk.upsertIds);
+        }
+        assertEquals(5, ids.size());
+        assertEquals(Long.valueOf(5), ids.get(4));
+        Chunk last = decode(frames.get(2));
+        assertEquals("+915", last.firstNumbers.get(0));
+        assertEquals(5, last.totalUpserts);
+        assertEquals(0, last.totalDeletes);
+        assertEquals(3, batcher.getChunksSent());
+    }
+
+    @Test
+    public void deltaMixesUpsertsAndDeletes() throws IOException {
+        List<String> frames = new ArrayList<>();
+        ContactSyncBatcher batcher = new ContactSyncBatcher(frames::add, 8, false, 3);
+        batcher.upsert(42, "Mom", new String[0], 5);
+        batcher.delete(17);
+        batcher.delete(18);
+        batcher.delete(19);
+        assertTrue(batcher.finish());
+
+        assertEquals(2, frames.size());
+        Chunk first = decode(frames.get(0));
+        assertEquals(ContactSyncBatcher.MODE_DELTA, first.mode);
+        assertEquals(1, first.upsertIds.size());
+        assertNull(first.firstNumbers.get(0));
+        assertEquals(2, first.deletes.size());
+        Chunk second = decode(frames.get(1));
+        assertTrue(second.last);
+        assertEquals(1, second.deletes.size());
+        assertEquals(3, second.totalDeletes);
+    }
+
+    @Test
+    public void emptySyncStillSendsTheLastChunk() throws IOException {
+        List<String> frames = new ArrayList<>();
+        ContactSyncBatcher batcher = new ContactSyncBatcher(frames::add, 9, false, 200);
+        assertTrue(batcher.finish());
+        assertTrue(batcher.finish());
+        assertEquals(1, frames.size());
+        Chunk chunk = decode(frames.get(0));
+        assertTrue(chunk.last);
+        assertTrue(chunk.upsertIds.isEmpty());
+        assertTrue(chunk.deletes.isEmpty());
+    }
+
+    @Test
+    public void refusedChunkFailsTheSync() {
+        int[] accepted = {1};
+        ContactSyncBatcher batcher = new ContactSyncBatcher(frame -> accepted[0]-- > 0, 10, true, 1);
+        assertTrue(batcher.upsert(1, "A", new String[]{"1"}, 0));
+        assertFalse(batcher.upsert(2, "B", new String[]{"2"}, 0));
+        assertFalse(batcher.upsert(3, "C", new String[]{"3"}, 0));
+        assertFalse(batcher.finish());
+        assertEquals(2, batcher.getChunksSent());
+    }
+}
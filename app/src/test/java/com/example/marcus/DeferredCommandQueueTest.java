@@ -0,0 +1,52 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DeferredCommandQueueTest {
+
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+    private static final String SMS = "android.permission.SEND_SMS";
+
+    @Test
+    public void burstDuringPromptDrainsInArrivalOrder() {
+        DeferredCommandQueue<String> queue = new DeferredCommandQueue<>(8, 60_000);
+        assertEquals(DeferredCommandQueue.AddResult.FIRST, queue.add(CONTACTS, "call mom", 0));
+        assertEquals(DeferredCommandQueue.AddResult.QUEUED, queue.add(CONTACTS, "call dad", 1));
+        assertEquals(DeferredCommandQueue.AddResult.FIRST, queue.add(SMS, "sms dad that hi", 2));
+        assertEquals(DeferredCommandQueue.AddResult.QUEUED, queue.add(CONTACTS, "sms mom that hi", 3));
+
+        assertEquals(Arrays.asList("call mom", "call dad", "sms mom that hi"), queue.drain(CONTACTS, 10));
+        assertFalse(queue.isWaiting(CONTACTS));
+        assertTrue(queue.isWaiting(SMS));
+        assertEquals(1, queue.size());
+        assertEquals(Collections.emptyList(), queue.drain(CONTACTS, 10));
+    }
+
+    @Test
+    public void capacityIsBounded() {
+        DeferredCommandQueue<String> queue = new DeferredCommandQueue<>(2, 60_000);
+        queue.add(CONTACTS, "a", 0);
+        queue.add(SMS, "b", 0);
+        assertEquals(DeferredCommandQueue.AddResult.REJECTED, queue.add(CONTACTS, "c", 0));
+        queue.drain(SMS, 0);
+        assertEquals(DeferredCommandQueue.AddResult.QUEUED, queue.add(CONTACTS, "c", 0));
+    }
+
+    @Test
+    public void staleCommandsExpireInsteadOfRunning() {
+        DeferredCommandQueue<String> queue = new DeferredCommandQueue<>(8, 1000);
+        queue.add(CONTACTS, "old", 0);
+        queue.add(CONTACTS, "new", 900);
+
+        // Granted too late for the first command.
+        assertEquals(Collections.singletonList("new"), queue.drain(CONTACTS, 1200));
+        assertEquals(Collections.singletonList("old"), queue.expire(1200));
+        assertEquals(0, queue.size());
+        assertFalse(queue.isWaiting(CONTACTS));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EdgeSnapSpringTest {
+
+    @Test
+    public void settlesOnTargetWithinASecond() {
+        EdgeSnapSpring spring = new EdgeSnapSpring(400, 0.85);
+        spring.start(300, 0, 0);
+        int frames = 0;
+        while (spring.step(1.0 / 60) && frames < 600) {
+            frames++;
+        }
+        assertFalse(spring.isRunning());
+        assertEquals(0, spring.getPosition(), 0);
+        assertTrue("took " + frames + " frames", frames < 60);
+    }
+
+    @Test
+    public void longFrameStaysStable() {
+        EdgeSnapSpring spring = new EdgeSnapSpring(400, 0.85);
+        spring.start(0, 0, 1000);
+        // A half-second stall must not blow up the integration.
+        spring.step(0.5);
+        assertTrue(Math.abs(spring.getPosition() - 1000) < 100);
+    }
+
+    @Test
+    public void flingCarriesToFarEdge() {
+        assertEquals(0, EdgeSnapSpring.nearestEdge(100, 100, 1080, 0, 0.15));
+        assertEquals(980, EdgeSnapSpring.nearestEdge(600, 100, 1080, 0, 0.15));
+        // Left of center, but flung right hard enough to cross it.
+        assertEquals(980, EdgeSnapSpring.nearestEdge(300, 100, 1080, 2000, 0.15));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventBusTest {
+
+    private static final EventBus.Topic<String> TEXT = EventBus.Topic.of("text");
+    private static final EventBus.Topic<Integer> STATE = EventBus.Topic.sticky("state");
+
+    @Test
+    public void everySubscriberReceivesEachEvent() {
+        EventBus bus = new EventBus();
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        bus.subscribe(TEXT, EventBus.DIRECT, first::add);
+        EventBus.Subscription subscription = bus.subscribe(TEXT, EventBus.DIRECT, second::add);
+        bus.publish(TEXT, "a");
+        subscription.cancel();
+        bus.publish(TEXT, "b");
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    public void stickyTopicsReplayTheLastEvent() {
+        EventBus bus = new EventBus();
+        bus.publish(STATE, 1);
+        bus.publish(STATE, 2);
+        List<Integer> seen = new ArrayList<>();
+        bus.subscribe(STATE, EventBus.DIRECT, seen::add);
+        bus.publish(STATE, 3);
+        assertEquals(2, (int) seen.get(0));
+        assertEquals(3, (int) seen.get(1));
+
+        List<String> text = new ArrayList<>();
+        bus.publish(TEXT, "missed");
+        bus.subscribe(TEXT, EventBus.DIRECT, text::add);
+        assertTrue(text.isEmpty());
+    }
+
+    @Test
+    public void slowSubscriberDoesNotBlockThePublisher() throws InterruptedException {
+        EventBus bus = new EventBus();
+        ExecutorService slowExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(3);
+        bus.subscribe(TEXT, slowExecutor, event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.countDown();
+        });
+        List<String> fast = new ArrayList<>();
+        bus.subscribe(TEXT, EventBus.DIRECT, fast::add);
+
+        for (int i = 0; i < 3; i++) {
+            bus.publish(TEXT, "event-" + i);
+        }
+        assertEquals(3, fast.size());
+        release.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        slowExecutor.shutdown();
+    }
+
+    @Test
+    public void throwingSubscriberIsIsolated() {
+        EventBus bus = new EventBus();
+        List<String> seen = new ArrayList<>();
+        bus.subscribe(TEXT, EventBus.DIRECT, event -> {
+            throw new IllegalStateException("boom");
+        });
+        bus.subscribe(TEXT, EventBus.DIRECT, seen::add);
+        bus.publish(TEXT, "a");
+        assertEquals(1, seen.size());
+        assertEquals(1, bus.getFailedDeliveries());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameStatsTest {
+
+    private static final long FRAME = 16_666_667L;
+
+    @Test
+    public void longIntervalsCountSkippedFrames() {
+        FrameStats stats = new FrameStats();
+        stats.begin();
+        long t = 1_000_000_000L;
+        stats.onFrame(t);
+        stats.onFrame(t += FRAME);
+        stats.onFrame(t += FRAME + FRAME / 4);
+        stats.onFrame(t += 3 * FRAME);
+        assertEquals(3, stats.getFrames());
+        assertEquals(2, stats.getDroppedFrames());
+    }
+
+    @Test
+    public void gapBetweenSessionsIsNotAFrame() {
+        FrameStats stats = new FrameStats();
+        stats.begin();
+        stats.onFrame(0);
+        stats.onFrame(FRAME);
+        stats.begin();
+        stats.onFrame(10_000_000_000L);
+        assertEquals(1, stats.getFrames());
+        assertEquals(0, stats.getDroppedFrames());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FuzzyMatcherTest {
+
+    private static final String[] LABELS = {
+            "WhatsApp", "YouTube", "YouTube Music", "Google Maps", "Maps.me", "Chrome", "Camera",
+            "Gmail", "Google", "Phone", "Messages", "Spotify", "Instagram", "Settings", "Calculator",
+            "Calendar", "Clock", "Photos", "Play Store", "Netflix"
+    };
+
+    private static FuzzyMatcher<String> matcher(int syntheticLabels) {
+        FuzzyMatcher.Builder<String> builder = FuzzyMatcher.builder();
+        for (String label : LABELS) {
+            builder.add(label, label);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < syntheticLabels; i++) {
+            String label = randomWord(random) + " " + randomWord(random);
+            builder.add(label, label);
+        }
+        return builder.build();
+    }
+
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(7);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    @Test
+    public void spacingAndPunctuationSlips() {
+        FuzzyMatcher<String> matcher = matcher(0);
+        assertEquals("WhatsApp", matcher.best("what's app").getValue());
+        assertEquals("YouTube", matcher.best("you tube").getValue());
+        assertEquals("Play Store", matcher.best("playstore").getValue());
+    }
+
+    @Test
+    public void misspellingsAndPartialNames() {
+        FuzzyMatcher<String> matcher = matcher(0);
+        assertEquals("WhatsApp", matcher.best("watsapp").getValue());
+        assertEquals("YouTube", matcher.best("youtub").getValue());
+        assertEquals("Google Maps", matcher.best("google map").getValue());
+        assertEquals("YouTube Music", matcher.best("music").getValue());
+        assertEquals("Instagram", matcher.best("insta gram").getValue());
+    }
+
+    @Test
+    public void rankingIsDeterministic() {
+        List<FuzzyMatcher.Match<String>> matches = matcher(0).search("youtube", 5, 0.3);
+        assertEquals("YouTube", matches.get(0).getValue());
+        assertEquals("YouTube Music", matches.get(1).getValue());
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(matches.get(i - 1).getScore() >= matches.get(i).getScore());
+        }
+    }
+
+    @Test
+    public void unrelatedQueriesDoNotMatch() {
+        FuzzyMatcher<String> matcher = matcher(0);
+        assertNull(matcher.best("xylophone"));
+        assertNull(matcher.best(""));
+        assertNull(FuzzyMatcher.<String>builder().build().best("youtube"));
+    }
+
+    @Test
+    public void lookupLatencyWithFiveHundredLabels() {
+        FuzzyMatcher<String> matcher = matcher(500 - LABELS.length);
+        assertEquals(500, matcher.size());
+        String[] queries = {"what's app", "you tube", "google maps", "spotfy", "calender", "netflix"};
+        for (int i = 0; i < 20_000; i++) {
+            matcher.best(queries[i % queries.length]);
+        }
+        int iterations = 50_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertNotNull(matcher.best(queries[i % queries.length]));
+        }
+        long nanosPerLookup = (System.nanoTime() - start) / iterations;
+        assertTrue("lookup took " + nanosPerLookup + " ns", nanosPerLookup < 1_000_000);
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.marcus;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stand-in for the command server, listening on an ephemeral loopback port.
+ *
+ * <p>Replays command frames to the connected client at a fixed rate and can inject disconnects,
+ * latency and malformed frames. It measures command-to-result latency by matching the IDs of
+ * result frames coming back, and the time from each dropped connection to the client's reconnect.
+ */
+final class LoopbackServer extends WebSocketServer {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final ScheduledExecutorService delayed = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "loopback-latency");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LinkedBlockingQueue<String> inbox = new LinkedBlockingQueue<>();
+    private final LinkedBlockingQueue<byte[]> binaryInbox = new LinkedBlockingQueue<>();
+    private final ConcurrentHashMap<String, Long> sentAtNanos = new ConcurrentHashMap<>();
+    private final LatencyHistogram resultLatency = new LatencyHistogram();
+    private final LatencyHistogram reconnectLatency = new LatencyHistogram();
+    private final AtomicLong results = new AtomicLong();
+    // WebSocketServer synchronizes on itself internally, so waiters use their own monitor.
+    private final Object lock = new Object();
+
+    private volatile WebSocket client;
+    private volatile long latencyMs;
+    private long droppedAtNanos;
+    private int connections;
+
+    LoopbackServer() {
+        super(new InetSocketAddress("127.0.0.1", 0));
+        setReuseAddr(true);
+    }
+
+    /** A server on a given port, e.g. one coming back where another was shut down. */
+    LoopbackServer(int port) {
+        super(new InetSocketAddress("127.0.0.1", port));
+        setReuseAddr(true);
+    }
+
+    /** A server that only speaks {@code drafts}, e.g. one offering an extension. */
+    LoopbackServer(List<Draft> drafts) {
+        super(new InetSocketAddress("127.0.0.1", 0), drafts);
+        setReuseAddr(true);
+    }
+
+    /** Starts listening and waits until the port is bound. */
+    void startAndWait() throws InterruptedException {
+        start();
+        if (!started.await(5, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Loopback server did not start");
+        }
+    }
+
+    String getUri() {
+        return "ws://127.0.0.1:" + getPort();
+    }
+
+    void shutdown() throws InterruptedException {
+        delayed.shutdownNow();
+        stop(1000);
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        synchronized (lock) {
+            client = conn;
+            connections++;
+            if (droppedAtNanos != 0) {
+                reconnectLatency.recordNanos(System.nanoTime() - droppedAtNanos);
+                droppedAtNanos = 0;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        synchronized (lock) {
+            if (client == conn) {
+                client = null;
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        try {
+            CommandEnvelope envelope = CommandEnvelope.decode(message);
+            Long sentAt = envelope.getId() != null ? sentAtNanos.remove(envelope.getId()) : null;
+            if (sentAt != null && CommandEnvelope.TYPE_RESULT.equals(envelope.getType())) {
+                resultLatency.recordNanos(System.nanoTime() - sentAt);
+                synchronized (lock) {
+                    results.incrementAndGet();
+                    lock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            // Not a frame we track; still visible through the inbox.
+        }
+        inbox.add(message);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        byte[] frame = new byte[message.remaining()];
+        message.get(frame);
+        binaryInbox.add(frame);
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        // Client-side failures are what the tests look at; the server just keeps going.
+    }
+
+    /** Waits until {@code count} client connections have been opened in total. */
+    boolean awaitConnections(int count, long timeoutMs) throws InterruptedException {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (connections < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /** Waits until {@code count} result frames for replayed commands have come back in total. */
+    boolean awaitResults(long count, long timeoutMs) throws InterruptedException {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (results.get() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /** Delays every frame sent to the client by {@code latencyMs}, like a slow network. */
+    void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Sends {@code frames} in order at {@code framesPerSecond}. The clock for command-to-result
+     * latency starts when a frame is due, before any injected latency. Returns the nanoseconds the
+     * replay took.
+     */
+    long replay(List<String> frames, double framesPerSecond) {
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / framesPerSecond);
+        long start = System.nanoTime();
+        for (int i = 0; i < frames.size(); i++) {
+            long due = start + i * periodNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String frame = frames.get(i);
+            String id = idOf(frame);
+            if (id != null) {
+                sentAtNanos.put(id, System.nanoTime());
+            }
+            send(frame);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Sends one frame to the connected client, after the injected latency. */
+    void send(String frame) {
+        long delay = latencyMs;
+        if (delay <= 0) {
+            sendNow(frame);
+        } else {
+            delayed.schedule(() -> sendNow(frame), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sendNow(String frame) {
+        WebSocket conn = client;
+        if (conn != null && conn.isOpen()) {
+            conn.send(frame);
+        }
+    }
+
+    /** Cuts the client off without a close handshake, as a dropped network would. */
+    void dropClient() {
+        WebSocket conn;
+        synchronized (lock) {
+            conn = client;
+            if (conn == null) {
+                return;
+            }
+            droppedAtNanos = System.nanoTime();
+        }
+        conn.closeConnection(CloseFrame.ABNORMAL_CLOSE, "injected disconnect");
+    }
+
+    /** Next message received from the client, or {@code null} on timeout. */
+    String takeMessage(long timeoutMs) throws InterruptedException {
+        return inbox.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Next binary frame received from the client, or {@code null} on timeout. */
+    byte[] takeBinary(long timeoutMs) throws InterruptedException {
+        return binaryInbox.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    LatencyHistogram getResultLatency() {
+        return resultLatency;
+    }
+
+    LatencyHistogram getReconnectLatency() {
+        return reconnectLatency;
+    }
+
+    long getResultCount() {
+        return results.get();
+    }
+
+    /**
+     * Loads a recorded command stream from the test resources: one frame per line, with blank
+     * lines and lines starting with {@code #} skipped. Frames are kept verbatim, malformed ones
+     * included.
+     */
+    static List<String> loadRecording(String resource) throws IOException {
+        InputStream in = LoopbackServer.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("No recording " + resource);
+        }
+        List<String> frames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    frames.add(line);
+                }
+            }
+        }
+        return frames;
+    }
+
+    private static String idOf(String frame) {
+        try {
+            return CommandEnvelope.decode(frame).getId();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotificationThrottleTest {
+
+    @Test
+    public void updatesWithinWindowCoalesce() {
+        NotificationThrottle<String> throttle = new NotificationThrottle<>(300, 4, 4, 5);
+        throttle.offer("audio", 0, "Speakerphone enabled.", 0);
+        throttle.offer("audio", 0, "Speakerphone state: enabled", 100);
+        throttle.offer("audio", 0, "Speakerphone state: enabled", 200);
+
+        assertTrue(throttle.poll(299).isEmpty());
+        assertEquals(300, throttle.nextWakeMs(250));
+
+        List<NotificationThrottle.Update<String>> ready = throttle.poll(300);
+        assertEquals(1, ready.size());
+        assertEquals("Speakerphone state: enabled", ready.get(0).getMessage());
+        assertEquals(Arrays.asList("Speakerphone enabled.", "Speakerphone state: enabled"), ready.get(0).getLines());
+        assertEquals(3, ready.get(0).getCount());
+        assertEquals(2, throttle.getCoalescedCount());
+        assertEquals(-1, throttle.nextWakeMs(300));
+    }
+
+    @Test
+    public void rateLimitDefersAndPrefersHigherPriority() {
+        NotificationThrottle<String> throttle = new NotificationThrottle<>(0, 2, 2, 5);
+        throttle.offer("apps", 0, "App not found", 0);
+        throttle.offer("contacts", 1, "Contact added", 0);
+        throttle.offer("error", 3, "Invalid command", 0);
+
+        List<NotificationThrottle.Update<String>> first = throttle.poll(0);
+        assertEquals(2, first.size());
+        assertEquals("error", first.get(0).getKey());
+        assertEquals("contacts", first.get(1).getKey());
+
+        // Bucket is empty: the remaining post waits for one token at 2 per second.
+        assertTrue(throttle.poll(100).isEmpty());
+        assertEquals(500, throttle.nextWakeMs(100));
+        List<NotificationThrottle.Update<String>> second = throttle.poll(500);
+        assertEquals(1, second.size());
+        assertEquals("apps", second.get(0).getKey());
+    }
+
+    @Test
+    public void linesAreBounded() {
+        NotificationThrottle<String> throttle = new NotificationThrottle<>(1000, 1, 1, 2);
+        throttle.offer("sms", 0, "a", 0);
+        throttle.offer("sms", 0, "b", 1);
+        throttle.offer("sms", 0, "c", 2);
+        assertEquals(Arrays.asList("b", "c"), throttle.poll(1000).get(0).getLines());
+    }
+}
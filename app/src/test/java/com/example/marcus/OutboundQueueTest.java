@@ -0,0 +1,158 @@
+package com.example.marcus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OutboundQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OutboundQueue queue(File journal, long memoryBytes, long journalBytes,
+                                OutboundQueue.BackpressurePolicy policy) throws IOException {
+        return new OutboundQueue(journal, memoryBytes, journalBytes, 4, 1024, policy, 50);
+    }
+
+    private static List<String> drain(OutboundQueue queue, List<Integer> batchSizes) throws IOException {
+        List<String> out = new ArrayList<>();
+        queue.flush(batch -> {
+            batchSizes.add(batch.size());
+            out.addAll(batch);
+            return true;
+        });
+        return out;
+    }
+
+    @Test
+    public void spillsToJournalAndStaysInOrder() throws IOException {
+        OutboundQueue queue = queue(folder.newFile(), 20, 1024, OutboundQueue.BackpressurePolicy.REJECT);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(queue.offer("message-" + i));
+        }
+        assertTrue(queue.getJournalBytes() > 0);
+        assertEquals(10, queue.size());
+
+        List<Integer> batchSizes = new ArrayList<>();
+        List<String> sent = drain(queue, batchSizes);
+        assertEquals(10, sent.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("message-" + i, sent.get(i));
+        }
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.getJournalBytes());
+    }
+
+    @Test
+    public void batchesAreCoalescedUpToTheLimit() throws IOException {
+        OutboundQueue queue = queue(folder.newFile(), 4096, 0, OutboundQueue.BackpressurePolicy.REJECT);
+        for (int i = 0; i < 10; i++) {
+            queue.offer("m" + i);
+        }
+        List<Integer> batchSizes = new ArrayList<>();
+        drain(queue, batchSizes);
+        assertEquals(3, batchSizes.size());
+        assertEquals(4, (int) batchSizes.get(0));
+        assertEquals(2, (int) batchSizes.get(2));
+    }
+
+    @Test
+    public void failedBatchesAreKept() throws IOException {
+        OutboundQueue queue = queue(folder.newFile(), 4096, 0, OutboundQueue.BackpressurePolicy.REJECT);
+        queue.offer("a");
+        queue.offer("b");
+        assertEquals(0, queue.flush(batch -> false));
+        assertEquals(0, queue.flush(batch -> {
+            throw new IllegalStateException("socket closed");
+        }));
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.flush(batch -> true));
+    }
+
+    @Test
+    public void rejectPolicyRefusesWhenFull() throws IOException {
+        OutboundQueue queue = queue(folder.newFile(), 4, 0, OutboundQueue.BackpressurePolicy.REJECT);
+        assertTrue(queue.offer("abcd"));
+        assertFalse(queue.offer("e"));
+        assertEquals(1, queue.getRejectedCount());
+    }
+
+    @Test
+    public void dropOldestEvictsHead() throws IOException {
+        OutboundQueue queue = queue(folder.newFile(), 4, 0, OutboundQueue.BackpressurePolicy.DROP_OLDEST);
+        queue.offer("ab");
+        queue.offer("cd");
+        assertTrue(queue.offer("ef"));
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(2, drain(queue, new ArrayList<>()).size());
+    }
+
+    @Test
+    public void blockPolicyTimesOutWithoutRoom() throws IOException {
+        OutboundQueue queue = queue(folder.newFile(), 4, 0, OutboundQueue.BackpressurePolicy.BLOCK);
+        queue.offer("abcd");
+        long start = System.nanoTime();
+        assertFalse(queue.offer("e"));
+        assertTrue(System.nanoTime() - start >= 40_000_000L);
+    }
+
+    @Test
+    public void journalSurvivesRestart() throws IOException {
+        File journal = folder.newFile();
+        OutboundQueue queue = queue(journal, 8, 1024, OutboundQueue.BackpressurePolicy.REJECT);
+        for (int i = 0; i < 5; i++) {
+            queue.offer("msg" + i);
+        }
+        queue.close();
+
+        // Messages that never left memory are lost with the process; journaled ones are replayed.
+        OutboundQueue reopened = queue(journal, 8, 1024, OutboundQueue.BackpressurePolicy.REJECT);
+        List<String> sent = drain(reopened, new ArrayList<>());
+        assertEquals(3, sent.size());
+        assertEquals("msg2", sent.get(0));
+        assertEquals("msg4", sent.get(2));
+    }
+
+    @Test
+    public void journalFileStaysWithinItsLimitWhileOffline() throws IOException {
+        File journal = folder.newFile();
+        OutboundQueue queue = queue(journal, 64, 4096, OutboundQueue.BackpressurePolicy.DROP_OLDEST);
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(queue.offer("message-" + i));
+        }
+        assertTrue(journal.length() <= 4096 + 24);
+        queue.close();
+
+        // The ring has wrapped many times; what is left replays in order after a restart.
+        OutboundQueue reopened = queue(journal, 64, 4096, OutboundQueue.BackpressurePolicy.DROP_OLDEST);
+        List<String> sent = drain(reopened, new ArrayList<>());
+        assertFalse(sent.isEmpty());
+        assertEquals("message-99999", sent.get(sent.size() - 1));
+        int first = Integer.parseInt(sent.get(0).substring("message-".length()));
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals("message-" + (first + i), sent.get(i));
+        }
+    }
+
+    @Test
+    public void journalWrittenWithAnotherLimitIsReplayed() throws IOException {
+        File journal = folder.newFile();
+        OutboundQueue queue = queue(journal, 8, 1024, OutboundQueue.BackpressurePolicy.REJECT);
+        for (int i = 0; i < 5; i++) {
+            queue.offer("msg" + i);
+        }
+        queue.close();
+
+        OutboundQueue reopened = queue(journal, 8, 2048, OutboundQueue.BackpressurePolicy.REJECT);
+        List<String> sent = drain(reopened, new ArrayList<>());
+        assertEquals(3, sent.size());
+        assertEquals("msg2", sent.get(0));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void wrapsAroundWithoutLosingOrder() {
+        PcmRingBuffer ring = new PcmRingBuffer(8);
+        byte[] out = new byte[8];
+        for (int round = 0; round < 5; round++) {
+            byte[] in = {(byte) round, 1, 2, 3, 4};
+            assertEquals(5, ring.write(in, 0, in.length));
+            assertEquals(5, ring.read(out, 0, out.length));
+            assertEquals(round, out[0]);
+            assertEquals(4, out[4]);
+        }
+        assertEquals(0, ring.available());
+    }
+
+    @Test
+    public void fullRingDropsNewestBytes() {
+        PcmRingBuffer ring = new PcmRingBuffer(4);
+        assertEquals(4, ring.write(new byte[]{1, 2, 3, 4, 5, 6}, 0, 6));
+        assertEquals(2, ring.getDroppedBytes());
+        byte[] out = new byte[4];
+        ring.read(out, 0, 4);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, out);
+
+        ring.write(new byte[]{7, 8, 9, 10, 11}, 0, 5);
+        ring.clear();
+        assertEquals(0, ring.available());
+        assertEquals(0, ring.getDroppedBytes());
+        assertEquals(4, ring.write(new byte[]{1, 2, 3, 4}, 0, 4));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PhoneticEncoderTest {
+
+    private static String key(String name) {
+        return PhoneticEncoder.encode(NameNormalizer.normalize(name));
+    }
+
+    @Test
+    public void vowelSlipsShareAKey() {
+        assertEquals("SNK", key("Sanika"));
+        assertEquals(key("Sanika"), key("Sonika"));
+        assertEquals(key("Sunita"), key("Sunitha"));
+        assertEquals(key("Mohammed"), key("Muhammad"));
+    }
+
+    @Test
+    public void commonConsonantVariantsShareAKey() {
+        assertEquals(key("Vikas"), key("Wikas"));
+        assertEquals(key("Bhavna"), key("Bavna"));
+        assertEquals(key("Stephen"), key("Steven"));
+        assertEquals(key("Catherine"), key("Kathryn"));
+    }
+
+    @Test
+    public void wordsAreEncodedSeparately() {
+        assertEquals("SNK SRT", key("Sanika Sarode"));
+        assertEquals("", key("!!"));
+    }
+
+    @Test
+    public void normalizerFoldsAccentsAndScripts() {
+        assertEquals("jose muller", NameNormalizer.normalize("José Müller"));
+        assertEquals("strasse", NameNormalizer.normalize("Straße"));
+        assertEquals("saanikaa", NameNormalizer.normalize("सानिका"));
+        assertEquals(key("Sanika"), key("सानिका"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.marcus;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReconnectPolicyTest {
+
+    @Test
+    public void delaysGrowExponentiallyUpToTheCap() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 30_000, 2.0, 10, new Random(1));
+        assertEquals(1000, policy.cappedDelayMs(0));
+        assertEquals(2000, policy.cappedDelayMs(1));
+        assertEquals(16_000, policy.cappedDelayMs(4));
+        assertEquals(30_000, policy.cappedDelayMs(5));
+        assertEquals(30_000, policy.cappedDelayMs(1000));
+    }
+
+    @Test
+    public void jitterStaysWithinHalfAndFullDelay() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 30_000, 2.0, 10, new Random(7));
+        for (int attempt = 0; attempt < 8; attempt++) {
+            long capped = policy.cappedDelayMs(attempt);
+            for (int i = 0; i < 100; i++) {
+                long delay = policy.nextDelayMs(attempt);
+                assertTrue(delay >= capped / 2 && delay <= capped);
+            }
+        }
+    }
+
+    @Test
+    public void devicesDoNotRetryInLockstep() {
+        Set<Long> delays = new HashSet<>();
+        for (int device = 0; device < 50; device++) {
+            delays.add(new ReconnectPolicy(1000, 60_000, 2.0, 10, new Random()).nextDelayMs(3));
+        }
+        assertTrue(delays.size() > 40);
+    }
+
+    @Test
+    public void budgetIsEnforced() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 30_000, 2.0, 3, new Random());
+        assertTrue(policy.hasBudget(2));
+        assertFalse(policy.hasBudget(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidSettings() {
+        new ReconnectPolicy(0, 1000, 2.0, 3, new Random());
+    }
+}
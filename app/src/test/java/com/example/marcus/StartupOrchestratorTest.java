@@ -0,0 +1,75 @@
+package com.example.marcus;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class StartupOrchestratorTest {
+
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    private StartupOrchestrator.Trace awaitReady(StartupOrchestrator orchestrator, long timeoutMs)
+            throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(1);
+        AtomicReference<StartupOrchestrator.Trace> result = new AtomicReference<>();
+        orchestrator.start(workers, timeoutMs, EventBus.DIRECT, trace -> {
+            result.set(trace);
+            ready.countDown();
+        });
+        assertTrue(ready.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    @Test
+    public void readyAsSoonAsCriticalTasksFinish() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        StartupOrchestrator orchestrator = new StartupOrchestrator()
+                .critical("fast", () -> { })
+                .background("slow", release::await);
+
+        StartupOrchestrator.Trace trace = awaitReady(orchestrator, 5000);
+        assertFalse(trace.isTimedOut());
+        assertTrue(trace.getTasks().get(0).isFinished());
+        // The background task does not hold readiness back.
+        assertFalse(trace.getTasks().get(1).isFinished());
+        release.countDown();
+    }
+
+    @Test
+    public void timeoutForcesReadiness() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        StartupOrchestrator orchestrator = new StartupOrchestrator()
+                .critical("stuck", release::await);
+
+        StartupOrchestrator.Trace trace = awaitReady(orchestrator, 50);
+        assertTrue(trace.isTimedOut());
+        assertTrue(trace.getReadyNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertSame(trace, StartupOrchestrator.getLastTrace());
+        release.countDown();
+    }
+
+    @Test
+    public void failingTaskStillCountsAsFinished() throws InterruptedException {
+        StartupOrchestrator orchestrator = new StartupOrchestrator()
+                .critical("broken", () -> {
+                    throw new IllegalStateException("no index");
+                });
+
+        StartupOrchestrator.Trace trace = awaitReady(orchestrator, 5000);
+        assertFalse(trace.isTimedOut());
+        assertTrue(trace.getTasks().get(0).getError() instanceof IllegalStateException);
+        assertTrue(trace.format().contains("failed"));
+    }
+}
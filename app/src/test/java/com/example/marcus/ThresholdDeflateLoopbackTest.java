@@ -0,0 +1,95 @@
+package com.example.marcus;
+
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Negotiates permessage-deflate between {@link WebSocketClientManager} and a {@link LoopbackServer}
+ * offering it, and checks that small frames bypass compression in both directions while large ones
+ * are compressed, with every message arriving intact.
+ */
+public class ThresholdDeflateLoopbackTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final ThresholdDeflateExtension serverExtension = new ThresholdDeflateExtension(512);
+    private LoopbackServer server;
+    private WebSocketClientManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer(Collections.<Draft>singletonList(
+                new Draft_6455(Collections.singletonList(serverExtension))));
+        server.startAndWait();
+        manager = new WebSocketClientManager(server.getUri(), new ReconnectPolicy(20, 200, 2.0, 20, new Random(1)));
+        manager.setJournalDirectory(folder.getRoot());
+        manager.subscribe(WebSocketClientManager.COMMANDS, Runnable::run, received::add);
+        manager.connect();
+        assertTrue(server.awaitConnections(1, 5000));
+        // The greeting sent on open is short enough to bypass compression.
+        assertEquals("Hello from Android!", server.takeMessage(5000));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.disconnect();
+        server.shutdown();
+    }
+
+    @Test
+    public void largeFramesAreCompressedAndSmallOnesBypass() throws Exception {
+        String small = CommandEnvelope.encode("1", CommandEnvelope.TYPE_COMMAND, 0, "{\"text\":\"call mom\"}");
+        String large = contactList(300);
+        assertTrue(manager.send(small));
+        assertTrue(manager.send(large));
+        assertEquals(small, server.takeMessage(5000));
+        assertEquals(large, server.takeMessage(5000));
+
+        ThresholdDeflateExtension.Stats stats = manager.getCompressionStats();
+        assertEquals(1, stats.getCompressedFrames());
+        assertEquals(2, stats.getBypassedFrames());
+        assertTrue("ratio " + stats.getRatio(), stats.getRatio() < 0.3);
+        assertEquals(1, stats.getDeflateTime().getCount());
+    }
+
+    @Test
+    public void clientInflatesOnlyCompressedMessages() throws Exception {
+        String small = CommandEnvelope.encode("2", CommandEnvelope.TYPE_COMMAND, 0, "{\"text\":\"speaker on\"}");
+        String large = contactList(200);
+        server.send(small);
+        server.send(large);
+        server.send(small);
+        assertEquals(small, received.poll(5, TimeUnit.SECONDS));
+        assertEquals(large, received.poll(5, TimeUnit.SECONDS));
+        assertEquals(small, received.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, serverExtension.getStats().getCompressedFrames());
+        assertEquals(1, manager.getCompressionStats().getInflateTime().getCount());
+    }
+
+    private static String contactList(int count) {
+        JsonStreamWriter args = new JsonStreamWriter();
+        args.beginObject().name("contacts").beginArray();
+        for (int i = 0; i < count; i++) {
+            args.beginObject()
+                    .name("name").value("Contact " + i)
+                    .name("numbers").beginArray().value("+9198765" + String.format("%05d", i)).endArray()
+                    .endObject();
+        }
+        args.endArray().endObject();
+        return CommandEnvelope.encode("bulk", CommandEnvelope.TYPE_ADD_CONTACTS, 0, args.toString());
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.marcus;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives a real {@link WebSocketClientManager} against {@link LoopbackServer}. A subscriber
+ * stands in for the command service and answers every enveloped command with a result frame.
+ */
+public class WebSocketClientManagerLoopbackTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger malformed = new AtomicInteger();
+    private ExecutorService commandThread;
+    private LoopbackServer server;
+    private WebSocketClientManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LoopbackServer();
+        server.startAndWait();
+        manager = new WebSocketClientManager(server.getUri(), new ReconnectPolicy(20, 200, 2.0, 20, new Random(1)));
+        manager.setJournalDirectory(folder.getRoot());
+
+        commandThread = Executors.newSingleThreadExecutor();
+        manager.subscribe(WebSocketClientManager.COMMANDS, commandThread, this::answer);
+        manager.connect();
+        assertTrue(server.awaitConnections(1, 5000));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        manager.disconnect();
+        commandThread.shutdownNow();
+        server.shutdown();
+    }
+
+    private void answer(String frame) {
+        CommandTrace trace = CommandTrace.start();
+        CommandEnvelope envelope;
+        try {
+            envelope = CommandEnvelope.decode(frame);
+        } catch (IOException e) {
+            malformed.incrementAndGet();
+            return;
+        }
+        if (envelope.getId() == null) {
+            return;
+        }
+        trace.mark(CommandTrace.Checkpoint.COMPLETED);
+        manager.send(CommandEnvelope.encodeResult(envelope.getId(), null, CommandResult.ok("done"), trace));
+    }
+
+    private static List<String> commands(String prefix, int count) {
+        List<String> frames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            frames.add(CommandEnvelope.encode(prefix + i, CommandEnvelope.TYPE_COMMAND, System.currentTimeMillis(),
+                    "{\"text\":\"call mom\"}"));
+        }
+        return frames;
+    }
+
+    @Test
+    public void throughputAndResultLatency() throws InterruptedException {
+        int count = 500;
+        long replayNanos = server.replay(commands("t-", count), 5000);
+        assertTrue(server.awaitResults(count, 10_000));
+
+        LatencyHistogram latency = server.getResultLatency();
+        assertEquals(count, latency.getCount());
+        // Bounds are loose; they catch a stall, not a regression of a few milliseconds.
+        assertTrue("replay took " + replayNanos + " ns", replayNanos < 5_000_000_000L);
+        assertTrue(latency.getPercentile(50) <= latency.getPercentile(99));
+        assertTrue(latency.getPercentile(99) <= latency.getMax());
+        assertTrue("slowest result took " + latency.getMax() + " us", latency.getMax() < 10_000_000L);
+    }
+
+    @Test
+    public void recordedSessionWithMalformedFrames() throws Exception {
+        List<String> recording = LoopbackServer.loadRecording("replay/mixed-session.jsonl");
+        server.replay(recording, 200);
+
+        // r-4 is cut off mid-object, so six of the seven IDs get a result.
+        assertTrue(server.awaitResults(6, 5000));
+        assertEquals(2, malformed.get());
+        assertEquals(WebSocketClientManager.ConnectionState.CONNECTED, manager.getConnectionState());
+    }
+
+    @Test
+    public void connectRecoversAfterTheRetryBudgetIsSpent() throws Exception {
+        // Nothing listens on the port once its server is gone, so every attempt fails.
+        LoopbackServer gone = new LoopbackServer();
+        gone.startAndWait();
+        int port = gone.getPort();
+        gone.shutdown();
+
+        WebSocketClientManager outage = new WebSocketClientManager("ws://127.0.0.1:" + port,
+                new ReconnectPolicy(10, 20, 2.0, 2, new Random(1)));
+        outage.setJournalDirectory(folder.newFolder());
+        CountDownLatch gaveUp = new CountDownLatch(1);
+        CountDownLatch connected = new CountDownLatch(1);
+        outage.subscribe(WebSocketClientManager.CONNECTION_STATE, EventBus.DIRECT, state -> {
+            if (state == WebSocketClientManager.ConnectionState.GAVE_UP) {
+                gaveUp.countDown();
+            } else if (state == WebSocketClientManager.ConnectionState.CONNECTED) {
+                connected.countDown();
+            }
+        });
+        LoopbackServer back = new LoopbackServer(port);
+        try {
+            outage.connect();
+            assertTrue(gaveUp.await(5, TimeUnit.SECONDS));
+
+            back.startAndWait();
+            outage.connect();
+            assertTrue(connected.await(5, TimeUnit.SECONDS));
+            assertTrue(back.awaitConnections(1, 5000));
+        } finally {
+            outage.disconnect();
+            back.shutdown();
+        }
+    }
+
+    @Test
+    public void reconnectsAfterDroppedConnectionAndDeliversQueuedMessages() throws InterruptedException {
+        while (server.takeMessage(100) != null) {
+            // Drains the greeting.
+        }
+        server.dropClient();
+        manager.send("sent while offline");
+        assertTrue(server.awaitConnections(2, 5000));
+
+        boolean delivered = false;
+        for (String message; (message = server.takeMessage(2000)) != null; ) {
+            if (message.equals("sent while offline")) {
+                delivered = true;
+                break;
+            }
+        }
+        assertTrue(delivered);
+        assertEquals(1, server.getReconnectLatency().getCount());
+        assertTrue(server.getReconnectLatency().getMax() < 5_000_000L);
+
+        server.replay(commands("after-", 10), 1000);
+        assertTrue(server.awaitResults(10, 5000));
+    }
+
+    @Test
+    public void injectedLatencyShowsUpInResultLatency() throws InterruptedException {
+        server.setLatencyMs(40);
+        server.replay(commands("slow-", 20), 500);
+        assertTrue(server.awaitResults(20, 5000));
+        assertTrue(server.getResultLatency().getPercentile(50) >= TimeUnit.MILLISECONDS.toMicros(40));
+    }
+}
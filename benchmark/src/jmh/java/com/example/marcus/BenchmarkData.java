@@ -0,0 +1,64 @@
+package com.example.marcus;
+
+import java.util.Random;
+
+/** Deterministic fixtures shared by the benchmarks, so every run measures the same inputs. */
+final class BenchmarkData {
+
+    static final String[] COMMANDS = {
+            "call mom", "sms dad that on my way", "open whatsapp", "speaker on",
+            "end call", "add Sanika", "launch google maps", "what is the weather"
+    };
+
+    static final String[] APP_LABELS = {
+            "WhatsApp", "YouTube", "YouTube Music", "Google Maps", "Maps.me", "Chrome", "Camera",
+            "Gmail", "Google", "Phone", "Messages", "Spotify", "Instagram", "Settings", "Calculator",
+            "Calendar", "Clock", "Photos", "Play Store", "Netflix"
+    };
+
+    static final String[] APP_QUERIES = {"what's app", "you tube", "google maps", "spotfy", "calender", "netflix"};
+
+    static final String[] CONTACT_NAMES = {"Mom", "Dad", "Sanika Sarode", "Rahul Sharma", "Priya", "Aditya Kulkarni"};
+
+    static final String[] CONTACT_QUERIES = {"mom", "sanika", "rahul sharma", "aditya kulkarny", "preeya", "nobody"};
+
+    private BenchmarkData() {
+    }
+
+    /** Label list padded to {@code size} with two-word names drawn from a fixed seed. */
+    static String[] appLabels(int size) {
+        String[] labels = new String[Math.max(size, APP_LABELS.length)];
+        System.arraycopy(APP_LABELS, 0, labels, 0, APP_LABELS.length);
+        Random random = new Random(42);
+        for (int i = APP_LABELS.length; i < labels.length; i++) {
+            labels[i] = randomWord(random) + " " + randomWord(random);
+        }
+        return labels;
+    }
+
+    /** Contact index padded to {@code size} contacts with names drawn from a fixed seed. */
+    static ContactIndex contacts(int size) {
+        ContactIndex index = new ContactIndex();
+        Random random = new Random(7);
+        for (int i = 0; i < size; i++) {
+            String name = i < CONTACT_NAMES.length
+                    ? CONTACT_NAMES[i]
+                    : capitalize(randomWord(random)) + " " + capitalize(randomWord(random));
+            index.put(new ContactIndex.Contact(i + 1, name, new String[]{"+9198" + (10_000_000 + i)}));
+        }
+        return index;
+    }
+
+    static String randomWord(Random random) {
+        int length = 3 + random.nextInt(7);
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.marcus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Parsing one transcribed command into a typed {@link Command}. */
+@State(Scope.Thread)
+public class CommandParserBenchmark {
+
+    @Param({"call mom", "sms dad that on my way", "launch google maps", "what is the weather"})
+    public String text;
+
+    private CommandParser parser;
+
+    @Setup
+    public void setUp() {
+        parser = CommandParser.getDefault();
+    }
+
+    @Benchmark
+    public Command parse() {
+        return parser.parse(text);
+    }
+}
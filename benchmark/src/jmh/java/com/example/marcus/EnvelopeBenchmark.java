@@ -0,0 +1,46 @@
+package com.example.marcus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/** Decoding inbound frames and encoding result frames. */
+@State(Scope.Thread)
+public class EnvelopeBenchmark {
+
+    private static final String COMMAND_FRAME =
+            "{\"id\":\"c-42\",\"type\":\"command\",\"ts\":1700000000123,\"args\":{\"text\":\"call mom\"}}";
+    private static final String PIPELINE_FRAME = "{\"id\":\"p-7\",\"type\":\"pipeline\",\"ts\":1700000000123,"
+            + "\"args\":{\"steps\":[{\"text\":\"call mom\"},"
+            + "{\"text\":\"speaker on\",\"after\":\"offhook\",\"timeoutMs\":20000}]}}";
+
+    private CommandTrace trace;
+    private CommandResult result;
+
+    @Setup
+    public void setUp() {
+        trace = CommandTrace.start();
+        for (CommandTrace.Checkpoint checkpoint : CommandTrace.Checkpoint.values()) {
+            trace.mark(checkpoint);
+        }
+        result = CommandResult.ok("Calling Mom");
+    }
+
+    @Benchmark
+    public String decodeCommand() throws IOException {
+        return CommandEnvelope.decode(COMMAND_FRAME).getText();
+    }
+
+    @Benchmark
+    public CommandPipeline decodePipeline() throws IOException {
+        return CommandPipeline.decode(CommandEnvelope.decode(PIPELINE_FRAME));
+    }
+
+    @Benchmark
+    public String encodeResult() {
+        return CommandEnvelope.encodeResult("c-42", Command.Type.CALL, result, trace);
+    }
+}
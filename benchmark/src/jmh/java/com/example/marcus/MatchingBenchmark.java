@@ -0,0 +1,44 @@
+package com.example.marcus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** App-label and contact-name resolution, cycling through a fixed mix of exact, misspelt and missing names. */
+@State(Scope.Thread)
+public class MatchingBenchmark {
+
+    @Param({"100", "500"})
+    public int size;
+
+    private FuzzyMatcher<String> apps;
+    private ContactIndex contacts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        FuzzyMatcher.Builder<String> builder = FuzzyMatcher.builder();
+        for (String label : BenchmarkData.appLabels(size)) {
+            builder.add(label, label);
+        }
+        apps = builder.build();
+        contacts = BenchmarkData.contacts(size);
+    }
+
+    @Benchmark
+    public FuzzyMatcher.Match<String> appLabel() {
+        return apps.best(BenchmarkData.APP_QUERIES[next++ % BenchmarkData.APP_QUERIES.length]);
+    }
+
+    @Benchmark
+    public ContactIndex.Contact contactName() {
+        return contacts.find(BenchmarkData.CONTACT_QUERIES[next++ % BenchmarkData.CONTACT_QUERIES.length]);
+    }
+
+    @Benchmark
+    public String normalize() {
+        return NameNormalizer.normalize(BenchmarkData.APP_QUERIES[next++ % BenchmarkData.APP_QUERIES.length]);
+    }
+}
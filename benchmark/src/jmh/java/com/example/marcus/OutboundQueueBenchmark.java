@@ -0,0 +1,60 @@
+package com.example.marcus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Queueing a burst of result frames and flushing them in batches. The in-memory case never touches
+ * the journal; the spill case overflows memory so most messages go through the journal file.
+ */
+@State(Scope.Thread)
+public class OutboundQueueBenchmark {
+
+    private static final int BURST = 32;
+
+    @Param({"memory", "spill"})
+    public String mode;
+
+    private File directory;
+    private OutboundQueue queue;
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbound-bench").toFile();
+        long memoryBytes = mode.equals("memory") ? 1 << 20 : 512;
+        queue = new OutboundQueue(new File(directory, "outbound.journal"), memoryBytes, 1 << 20, 16,
+                64 * 1024, OutboundQueue.BackpressurePolicy.DROP_OLDEST, 0);
+        message = CommandEnvelope.encodeResult("c-42", Command.Type.CALL, CommandResult.ok("Calling Mom"),
+                CommandTrace.start());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        queue.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public int offerAndFlushBurst() throws IOException {
+        for (int i = 0; i < BURST; i++) {
+            queue.offer(message);
+        }
+        return queue.flush(batch -> true);
+    }
+}